@@ -3,6 +3,10 @@ package com.optoma.meeting;
 import static com.optoma.meeting.AiServiceProxy.KEY_AUDIO_FILE_PATH;
 import static com.optoma.meeting.AiServiceProxy.KEY_CALLBACK;
 import static com.optoma.meeting.AiServiceProxy.KEY_LANGUAGE;
+import static com.optoma.meeting.AiServiceProxy.KEY_SEGMENT_CODEC;
+import static com.optoma.meeting.AiServiceProxy.KEY_SEGMENT_OVERLAP_SECONDS;
+import static com.optoma.meeting.AiServiceProxy.KEY_TEMPO_FACTOR;
+import static com.optoma.meeting.AiServiceProxy.KEY_TRANSCRIPTION_MODE;
 import static com.optoma.meeting.util.DebugConfig.TAG_MM;
 import static com.optoma.meeting.util.DebugConfig.TAG_WITH_CLASS_NAME;
 import static com.optoma.meeting.util.FileUtil.deleteCache;
@@ -19,15 +23,21 @@ import com.optoma.meeting.presenter.SaveTextToFilePresenter;
 import com.optoma.meeting.presenter.SpeechRecognizerPresenter;
 import com.optoma.meeting.presenter.SplitFilePresenter;
 import com.optoma.meeting.presenter.SummaryPresenter;
+import com.optoma.meeting.model.SegmentCodec;
+import com.optoma.meeting.model.TranscriptionMode;
 import com.optoma.meeting.presenter.TranscribePresenter;
 import com.optoma.meeting.state.ProcessState;
+import com.optoma.meeting.util.JobJournal;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
+import io.reactivex.android.schedulers.AndroidSchedulers;
+
 public class AiService extends Service {
 
     private static final String TAG = TAG_WITH_CLASS_NAME ? "AiService" : TAG_MM;
@@ -39,6 +49,17 @@ public class AiService extends Service {
         public void initialize(Bundle params) {
             Log.d(TAG, "AIDL.Stub#initialize params=" + params.size());
             mAiServiceCallback.setProxy((IAiServiceCallback) params.getBinder(KEY_CALLBACK));
+            // Continue the meetings that were interrupted when the service was killed, once the
+            // client can receive their results and errors. The jobs run on the main thread.
+            AndroidSchedulers.mainThread().scheduleDirect(() -> {
+                if (!mJobsResumed) {
+                    mJobsResumed = true;
+                    int resumedJobCount = mTranscribePresenter.resumeJournaledJobs();
+                    if (resumedJobCount > 0) {
+                        Log.d(TAG, "initialize# resumed jobs=" + resumedJobCount);
+                    }
+                }
+            });
         }
 
         @Override
@@ -46,9 +67,24 @@ public class AiService extends Service {
             Log.d(TAG, "AIDL.Stub#startAudioProcessing params=" + params.size());
             mCurrentLanguage = params.getString(KEY_LANGUAGE);
             setState(ProcessState.START_SPLIT);
+            TranscriptionMode transcriptionMode = TranscriptionMode.fromName(
+                    params.getString(KEY_TRANSCRIPTION_MODE), mDefaultTranscriptionMode);
+            // Each segment is transcribed as soon as it is split.
+            File workDir = mTranscribePresenter.uploadAudioAndTranscribe(
+                    mSplitFilePresenter.prepareSegmentStream(), mCurrentLanguage,
+                    transcriptionMode);
+            // The real-time sessions read the segments in WAV only.
+            SegmentCodec segmentCodec = transcriptionMode == TranscriptionMode.REAL_TIME
+                    ? SegmentCodec.PCM
+                    : SegmentCodec.fromName(params.getString(KEY_SEGMENT_CODEC),
+                            mDefaultSegmentCodec);
+            long segmentOverlapMs = params.getInt(KEY_SEGMENT_OVERLAP_SECONDS,
+                    mDefaultSegmentOverlapSeconds) * 1000L;
+            float tempoFactor = params.getFloat(KEY_TEMPO_FACTOR, mDefaultTempoFactor);
             // Put the heavy things to the background thread.
             mExecutors.execute(() ->
-                    mSplitFilePresenter.startSplitFile(params.getString(KEY_AUDIO_FILE_PATH)));
+                    mSplitFilePresenter.startSplitFile(params.getString(KEY_AUDIO_FILE_PATH),
+                            workDir, segmentCodec, segmentOverlapMs, tempoFactor));
         }
 
         @Override
@@ -87,10 +123,22 @@ public class AiService extends Service {
     private SummaryPresenter mSummaryPresenter;
 
     private String mCurrentLanguage;
+    private SegmentCodec mDefaultSegmentCodec;
+    private int mDefaultSegmentOverlapSeconds;
+    private float mDefaultTempoFactor;
+    private TranscriptionMode mDefaultTranscriptionMode;
+    private boolean mJobsResumed;
 
     @Override
     public void onCreate() {
         super.onCreate();
+        mDefaultSegmentCodec = SegmentCodec.fromName(getString(R.string.default_segment_codec),
+                SegmentCodec.PCM);
+        mDefaultSegmentOverlapSeconds = getResources().getInteger(
+                R.integer.segment_overlap_seconds);
+        mDefaultTempoFactor = Float.parseFloat(getString(R.string.default_tempo_factor));
+        mDefaultTranscriptionMode = TranscriptionMode.fromName(
+                getString(R.string.default_transcription_mode), TranscriptionMode.BATCH);
         setupPresenter();
     }
 
@@ -115,10 +163,8 @@ public class AiService extends Service {
                         for (String path : newFileAbsolutePathList) {
                             Log.d(TAG, "new file: " + path + "\n");
                         }
-                        // transcribe
+                        // The segments are already streamed to the transcription.
                         setState(ProcessState.START_TRANSCRIBE);
-                        mTranscribePresenter.uploadAudioAndTranscribe(newFileAbsolutePathList,
-                                mCurrentLanguage);
                     }
 
                     @Override
@@ -133,17 +179,18 @@ public class AiService extends Service {
                 new TranscribePresenter.TranscribeCallback() {
                     @Override
                     public void onTranscribed(String transcribeResult, long timeStamp) {
-                        Log.d(TAG, "onTranscribed -> getAndStoreSummary");
+                        Log.d(TAG, "onTranscribed# length=" + transcribeResult.length());
+                        mAiServiceCallback.onTranscriptReceived(transcribeResult);
                     }
 
                     @Override
-                    public void onAllPartsTranscribed(Map<Integer, String> partNumberToTranscriber,
-                            long timeStamp) {
+                    public void onAllPartsTranscribed(String language, JobJournal journal,
+                            Map<Integer, String> partNumberToTranscriber, long timeStamp) {
                         Log.d(TAG, "onAllPartsTranscribed -> getAndStoreSummary");
                         setState(ProcessState.END_TRANSCRIBE);
                         setState(ProcessState.START_SUMMARY);
-                        mSummaryPresenter.processMultipleConversations(mCurrentLanguage,
-                                partNumberToTranscriber, timeStamp);
+                        mSummaryPresenter.processMultipleConversations(language,
+                                partNumberToTranscriber, timeStamp, journal);
                     }
 
                     @Override
@@ -185,7 +232,7 @@ public class AiService extends Service {
                         setState(ProcessState.END_TEXT_SAVING);
                         setState(ProcessState.START_SUMMARY);
                         mSummaryPresenter.processMultipleConversations(mCurrentLanguage,
-                                partNumberToTranscriber, timeStamp);
+                                partNumberToTranscriber, timeStamp, null);
                     }
 
                     @Override
@@ -216,7 +263,8 @@ public class AiService extends Service {
 
     private void setState(ProcessState state) {
         mAiServiceCallback.onStateChanged(state.name());
-        if (state == ProcessState.IDLE) {
+        // The cache may still hold the copied input of a split of another job.
+        if (state == ProcessState.IDLE && !mSplitFilePresenter.isSplitting()) {
             deleteCache(this);
         }
     }
@@ -59,6 +59,15 @@ public class AiServiceCallbackProxy extends IAiServiceCallback.Stub {
         }
     }
 
+    @Override
+    public void onTranscriptReceived(String text) {
+        try {
+            mAiServiceCallback.onTranscriptReceived(text);
+        } catch (RemoteException e) {
+            Log.w(TAG, "run onTranscriptReceived() but " + e);
+        }
+    }
+
     private static class DefaultAiServiceCallbackProxy extends IAiServiceCallback.Stub {
         @Override
         public void onStateChanged(String state) {
@@ -75,5 +84,9 @@ public class AiServiceCallbackProxy extends IAiServiceCallback.Stub {
         @Override
         public void onSummaryAndActionsReceived(String summary) {
         }
+
+        @Override
+        public void onTranscriptReceived(String text) {
+        }
     }
 }
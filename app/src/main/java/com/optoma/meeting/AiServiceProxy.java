@@ -21,6 +21,14 @@ public class AiServiceProxy extends IAiService.Stub {
 
     public final static String KEY_TEXT = "text";
 
+    public final static String KEY_SEGMENT_CODEC = "segment_codec";
+
+    public final static String KEY_SEGMENT_OVERLAP_SECONDS = "segment_overlap_seconds";
+
+    public final static String KEY_TEMPO_FACTOR = "tempo_factor";
+
+    public final static String KEY_TRANSCRIPTION_MODE = "transcription_mode";
+
     private IAiService mAiService;
 
 
@@ -101,6 +101,15 @@ public class MainActivity extends AppCompatActivity {
                 updateLogText(summary);
             });
         }
+
+        @Override
+        @BinderThread
+        public void onTranscriptReceived(String text) {
+            runOnUiThread(() -> {
+                Log.d(TAG, "onTranscriptReceived#\n" + text);
+                updateLogText(text);
+            });
+        }
     };
 
     private final ActivityResultLauncher<String> mRequestAudioPickPermissionLauncher =
@@ -0,0 +1,546 @@
+package com.optoma.meeting.engine;
+
+import android.util.Log;
+
+import com.microsoft.azure.storage.StorageException;
+import com.optoma.meeting.LogTextCallback;
+import com.optoma.meeting.model.SegmentTranscription;
+import com.optoma.meeting.model.TranscribeBean;
+import com.optoma.meeting.model.TranscribeBody;
+import com.optoma.meeting.model.TranscribeProperties;
+import com.optoma.meeting.model.TranscribeResult;
+import com.optoma.meeting.model.TranscribeValue;
+import com.optoma.meeting.model.Transcript;
+import com.optoma.meeting.model.TranscriptionJob;
+import com.optoma.meeting.network.CognitiveServiceHelper;
+import com.optoma.meeting.network.NetworkServiceHelper;
+import com.optoma.meeting.network.TranscribeResultParser;
+import com.optoma.meeting.network.TranscriptionStatusPoller;
+import com.optoma.meeting.state.SegmentState;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.security.InvalidKeyException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableEmitter;
+import io.reactivex.Scheduler;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+/**
+ * Transcribe the segments with the batch transcription of the speech service: upload each segment
+ * to the blob storage, create a transcription of its URL, poll the transcription until it
+ * succeeds, and download its result file.
+ * <p>
+ * A segment continues from the stage kept in the journal of its job, so a resumed job does not
+ * upload or submit a segment again. The segments are submitted one by one, or all together once
+ * the last one is uploaded. Everything except the uploads and the downloads runs on the main
+ * thread.
+ */
+public class BatchTranscriptionEngine implements TranscriptionEngine {
+
+    private static final String TAG = BatchTranscriptionEngine.class.getSimpleName();
+
+    private static final int UPLOAD_THREAD_COUNT = 4;
+    // The journal of the blocks resumes the failed upload, so a retry is cheap.
+    private static final int UPLOAD_RETRY_COUNT = 3;
+    // The result file of the i-th content URL of a job is named like "contenturl_0.json".
+    private static final Pattern RESULT_FILE_NAME_PATTERN = Pattern.compile("contenturl_(\\d+)");
+    private static final boolean DEBUG = true;
+
+    private final LogTextCallback mLogTextCallback;
+    private final boolean mSingleTranscriptionJob;
+    private final TranscriptionStatusPoller mTranscriptionStatusPoller;
+    private final ExecutorService mUploadExecutor = Executors.newFixedThreadPool(
+            UPLOAD_THREAD_COUNT);
+    private final Scheduler mUploadScheduler = Schedulers.from(mUploadExecutor);
+    private final CompositeDisposable mCompositeDisposable = new CompositeDisposable();
+
+    // The streams of the segments in transcription.
+    private final Map<SegmentTranscription, FlowableEmitter<Transcript>> mEmitters =
+            new HashMap<>();
+    // The polled transcriptions and their jobs.
+    private final Map<String, TranscriptionJob> mTranscriptionIdToJob = new HashMap<>();
+    // The jobs that wait for their uploads to be submitted together.
+    private final Set<TranscriptionJob> mJobsToSubmit = new HashSet<>();
+
+    // For comparing the codecs of the segments.
+    private final AtomicLong mUploadedBytes = new AtomicLong();
+
+    /**
+     * @param singleTranscriptionJob Submit all segments of a job in one transcription after the
+     *                               last upload, instead of one transcription per segment.
+     */
+    public BatchTranscriptionEngine(LogTextCallback logTextCallback,
+            boolean singleTranscriptionJob) {
+        mLogTextCallback = logTextCallback;
+        mSingleTranscriptionJob = singleTranscriptionJob;
+        mTranscriptionStatusPoller = new TranscriptionStatusPoller(
+                new TranscriptionStatusPoller.Callback() {
+                    @Override
+                    public void onRunning(String transcriptionID, String status) {
+                        TranscriptionJob job = mTranscriptionIdToJob.get(transcriptionID);
+                        if (job == null) {
+                            return;
+                        }
+                        if ("Running".equalsIgnoreCase(status)) {
+                            job.moveTo(transcriptionID, SegmentState.RUNNING);
+                        }
+                        String resultLog = "Transcribe " + job.getPartNumbers(transcriptionID)
+                                + " is " + status + "...";
+                        Log.d(TAG, resultLog);
+                        mLogTextCallback.onLogReceived(resultLog);
+                    }
+
+                    @Override
+                    public void onSucceeded(String transcriptionID) {
+                        TranscriptionJob job = mTranscriptionIdToJob.remove(transcriptionID);
+                        if (job == null) {
+                            return;
+                        }
+                        String resultLog = "***** Transcribe "
+                                + job.getPartNumbers(transcriptionID) + " is Ready! " + "*****\n";
+                        Log.d(TAG, resultLog);
+                        mLogTextCallback.onLogReceived(resultLog);
+                        getTranscriber(job, transcriptionID);
+                    }
+
+                    @Override
+                    public void onFailed(String transcriptionID, String status) {
+                        TranscriptionJob job = mTranscriptionIdToJob.remove(transcriptionID);
+                        if (job == null) {
+                            return;
+                        }
+                        // The other parts go on, the failed ones are skipped in the transcript.
+                        fail(job, job.getPartNumbers(transcriptionID),
+                                "the transcription is " + status);
+                    }
+
+                    @Override
+                    public void onPollError(String errorLog) {
+                        // The poller retries it on the next tick.
+                        Log.w(TAG, errorLog);
+                        mLogTextCallback.onLogReceived(errorLog);
+                    }
+                });
+    }
+
+    @Override
+    public Flowable<Transcript> transcribe(TranscriptionJob job, SegmentTranscription segment) {
+        return Flowable.<Transcript>create(emitter -> {
+            mEmitters.put(segment, emitter);
+            emitter.setCancellable(() -> mEmitters.remove(segment));
+            if (segment.getTranscriptionId() != null) {
+                track(job, segment.getTranscriptionId());
+            } else if (segment.getContentUrl() != null) {
+                onUploaded(job, segment);
+            } else if (isEmptyFile(segment.segment.path)) {
+                // An empty segment has nothing to transcribe, and can not be uploaded. It is
+                // settled with an empty transcript, so the later parts are not held back.
+                Log.w(TAG, "transcribe# skip the empty " + segment.segment.path);
+                segment.moveTo(SegmentState.SUBMITTED);
+                emitter.onComplete();
+            } else {
+                uploadAudio(job, segment);
+            }
+        }, BackpressureStrategy.BUFFER);
+    }
+
+    @Override
+    public void onAllSegmentsGiven(TranscriptionJob job) {
+        if (mSingleTranscriptionJob) {
+            mJobsToSubmit.add(job);
+            submitTogetherIfReady(job);
+        }
+    }
+
+    /**
+     * Delete all uploaded segments of the job at once.
+     */
+    @Override
+    public void onJobFinished(TranscriptionJob job) {
+        mJobsToSubmit.remove(job);
+        mTranscriptionIdToJob.values().removeAll(Collections.singleton(job));
+        mCompositeDisposable.add(
+                Completable.create(emitter -> {
+                            try {
+                                job.blobUploadSession.delete();
+                            } catch (Exception e) {
+                                e.printStackTrace();
+                            }
+                            emitter.onComplete();
+                        })
+                        .subscribeOn(Schedulers.io())
+                        .subscribe());
+    }
+
+    @Override
+    public void shutdown() {
+        mCompositeDisposable.dispose();
+        mTranscriptionStatusPoller.stop();
+        mUploadExecutor.shutdown();
+    }
+
+    /**
+     * @return The bytes uploaded so far.
+     */
+    public long getUploadedBytes() {
+        return mUploadedBytes.get();
+    }
+
+    /**
+     * @return The number of the status requests so far.
+     */
+    public int getStatusRequestCount() {
+        return mTranscriptionStatusPoller.getRequestCount();
+    }
+
+    private static boolean isEmptyFile(String path) {
+        File file = new File(path);
+        return file.isFile() && file.length() == 0;
+    }
+
+    private void uploadAudio(TranscriptionJob job, SegmentTranscription segment) {
+        final String absolutePath = segment.segment.path;
+        final int partNumber = segment.segment.partNumber;
+        Log.d(TAG, "uploadAudio: " + absolutePath + "\t partNumber" + partNumber);
+        mCompositeDisposable.add(
+                Completable.create(emitter -> {
+                            try {
+                                File file = new File(absolutePath);
+                                String extension = absolutePath.substring(
+                                        absolutePath.lastIndexOf('.') + 1);
+                                String contentUrl = job.blobUploadSession.upload(file,
+                                        partNumber, extension);
+                                segment.setContentUrl(contentUrl);
+                                job.journal.appendUploaded(partNumber, contentUrl);
+
+                                long uploadedBytes = mUploadedBytes.addAndGet(file.length());
+                                Log.d(TAG, "Upload complete " + job.jobId + "/"
+                                        + partNumber + "." + extension
+                                        + ", total uploaded=" + uploadedBytes + " bytes");
+                            } catch (URISyntaxException | StorageException | InvalidKeyException |
+                                     IOException | InterruptedException e) {
+                                e.printStackTrace();
+                                emitter.onError(e);
+                                return;
+                            }
+                            emitter.onComplete();
+                        })
+                        .retry((retryCount, throwable) -> retryCount <= UPLOAD_RETRY_COUNT
+                                && isTransient(throwable))
+                        .subscribeOn(mUploadScheduler)
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(() -> onUploaded(job, segment), throwable -> {
+                            fail(job, Collections.singletonList(partNumber),
+                                    "fail to upload, " + throwable);
+                            submitTogetherIfReady(job);
+                        }));
+    }
+
+    /**
+     * @return Whether the upload may succeed if it is tried again. A bad key or URL does not.
+     */
+    private static boolean isTransient(Throwable throwable) {
+        return throwable instanceof StorageException || throwable instanceof IOException;
+    }
+
+    private void onUploaded(TranscriptionJob job, SegmentTranscription segment) {
+        if (mSingleTranscriptionJob) {
+            submitTogetherIfReady(job);
+        } else {
+            createSpeechToText(job, Collections.singletonMap(segment.segment.partNumber,
+                    segment.getContentUrl()));
+        }
+    }
+
+    /**
+     * Submit the uploaded segments of the job in one transcription, once all its segments are
+     * given and none of them is still uploading.
+     */
+    private void submitTogetherIfReady(TranscriptionJob job) {
+        if (!mJobsToSubmit.contains(job)) {
+            return;
+        }
+        SortedMap<Integer, String> partNumberToContentUrl = new TreeMap<>();
+        for (SegmentTranscription segment : mEmitters.keySet()) {
+            if (job.getSegment(segment.segment.partNumber) != segment
+                    || segment.getTranscriptionId() != null) {
+                continue;
+            }
+            if (segment.getContentUrl() == null) {
+                // Wait for the upload.
+                return;
+            }
+            partNumberToContentUrl.put(segment.segment.partNumber, segment.getContentUrl());
+        }
+        mJobsToSubmit.remove(job);
+        if (!partNumberToContentUrl.isEmpty()) {
+            createSpeechToText(job, partNumberToContentUrl);
+        }
+    }
+
+    /**
+     * Create and initiate a speech-to-text operation for a specific language using the audio file part.
+     *
+     * @param job                    The job with the target language for the speech recognition.
+     * @param partNumberToContentUrl The read-only URLs of the uploaded audio files by their part
+     *                               numbers (starting from 0), all of them are in one job.
+     */
+    private void createSpeechToText(TranscriptionJob job,
+            Map<Integer, String> partNumberToContentUrl) {
+        final String languageString = job.language;
+        List<Integer> filePartNumbers = new ArrayList<>(partNumberToContentUrl.keySet());
+        List<String> contentUrls = new ArrayList<>(partNumberToContentUrl.values());
+        Log.d(TAG, "createSpeechToText: " + languageString + "\tfilePartNumbers: " + filePartNumbers);
+
+        TranscribeProperties properties = new TranscribeProperties();
+        properties.diarizationEnabled = true;
+        properties.wordLevelTimestampsEnabled = true;
+        properties.punctuationMode = "DictatedAndAutomatic";
+        properties.profanityFilterMode = "Masked";
+        properties.timeToLive = "PT1H";
+
+        if (DEBUG) {
+            Log.d(TAG, "createTranscription: contentUrls: " + contentUrls);
+        }
+
+        TranscribeBody body = new TranscribeBody(contentUrls,
+                properties, languageString, "test");
+        mCompositeDisposable.add(
+                CognitiveServiceHelper.getInstance()
+                        .createTranscription(body)
+                        .subscribeOn(Schedulers.io())
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .timeout(10, TimeUnit.SECONDS)
+                        .subscribe(response -> {
+                            Log.d(TAG, "onResponse: " + response.code());
+                            if (response.code() == 201) {
+                                TranscribeBean result = response.body();
+                                Log.d(TAG, "onResponse: " + result.status);
+                                Log.d(TAG, "onResponse: " + result.links.files);
+                                String[] info = result.links.files.split("/");
+                                String transcriptionID = info[info.length - 2];
+
+                                Log.d(TAG,
+                                        "createTranscription success: " + transcriptionID + ", filePartNumbers: " + filePartNumbers);
+                                job.onSubmitted(transcriptionID, filePartNumbers);
+                                job.journal.appendSubmitted(transcriptionID, filePartNumbers);
+                                track(job, transcriptionID);
+                            } else {
+                                // Any other status, even a success, leaves nothing to track.
+                                fail(job, filePartNumbers, "fail to create the transcription, "
+                                        + getErrorMessage(response));
+                            }
+                        }, throwable -> fail(job, filePartNumbers,
+                                "fail to create the transcription, " + throwable))
+        );
+    }
+
+    /**
+     * Poll the transcription, once for all its segments.
+     */
+    private void track(TranscriptionJob job, String transcriptionID) {
+        if (mTranscriptionIdToJob.containsKey(transcriptionID)) {
+            return;
+        }
+        mTranscriptionIdToJob.put(transcriptionID, job);
+        mTranscriptionStatusPoller.track(transcriptionID,
+                getAudioDurationMs(job, job.getPartNumbers(transcriptionID)));
+    }
+
+    /**
+     * @return The duration of the uploaded audio of the parts, which may be sped up.
+     */
+    private static long getAudioDurationMs(TranscriptionJob job, List<Integer> filePartNumbers) {
+        long durationMs = 0;
+        for (int partNumber : filePartNumbers) {
+            SegmentTranscription segment = job.getSegment(partNumber);
+            if (segment != null) {
+                durationMs += (long) (segment.segment.durationMs / segment.segment.tempoFactor);
+            }
+        }
+        return durationMs;
+    }
+
+    private void getTranscriber(TranscriptionJob job, String transcriptionID) {
+        final List<Integer> filePartNumbers = job.getPartNumbers(transcriptionID);
+        mCompositeDisposable.add(
+                CognitiveServiceHelper.getInstance()
+                        .getTranscriptionFiles(transcriptionID)
+                        .subscribeOn(Schedulers.io())
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .timeout(10, TimeUnit.SECONDS)
+                        .subscribe(response -> {
+                            Log.d(TAG, "onResponse: " + response.code());
+                            if (response.isSuccessful()) {
+                                List<TranscribeValue> valueList = response.body().values;
+                                List<Completable> downloads = new ArrayList<>();
+                                for (int i = 0; i < valueList.size(); i++) {
+                                    if ("Transcription".equalsIgnoreCase(valueList.get(i).kind)) {
+                                        String contentUrl = valueList.get(
+                                                i).links.contentUrl; //smaller one
+                                        Log.d(TAG,
+                                                "getTranscriptionFiles onResponse: contentUrl = " + contentUrl);
+                                        downloads.add(getTranscribedFilesFromUrl(job, contentUrl,
+                                                getPartNumberByFileName(job, transcriptionID,
+                                                        valueList.get(i).name)));
+                                    }
+                                }
+                                // A part without its own result file would wait forever.
+                                mCompositeDisposable.add(Completable.merge(downloads)
+                                        .subscribe(() -> fail(job, filePartNumbers,
+                                                "no result file of the part")));
+                            } else {
+                                fail(job, filePartNumbers, "fail to list the result files, "
+                                        + getErrorMessage(response));
+                            }
+                        }, throwable -> fail(job, filePartNumbers,
+                                "fail to list the result files, " + throwable))
+        );
+    }
+
+    /**
+     * @return The part of the result file by its position in the content URLs, -1 if unknown.
+     */
+    private static int getPartNumberByFileName(TranscriptionJob job, String transcriptionID,
+            String fileName) {
+        List<Integer> partNumbers = job.getPartNumbers(transcriptionID);
+        Matcher matcher = RESULT_FILE_NAME_PATTERN.matcher(fileName != null ? fileName : "");
+        if (!matcher.find()) {
+            return -1;
+        }
+        int index = Integer.parseInt(matcher.group(1));
+        return index < partNumbers.size() ? partNumbers.get(index) : -1;
+    }
+
+    /**
+     * @return The part whose uploaded URL is the source of the result, -1 if unknown.
+     */
+    private static int getPartNumberBySource(TranscriptionJob job, String source) {
+        if (source == null) {
+            return -1;
+        }
+        // The service may drop the SAS token from the source.
+        String sourcePath = stripQuery(source);
+        for (Map.Entry<Integer, String> entry : job.getContentUrls().entrySet()) {
+            if (stripQuery(entry.getValue()).equals(sourcePath)) {
+                return entry.getKey();
+            }
+        }
+        return -1;
+    }
+
+    private static String stripQuery(String url) {
+        int queryIndex = url.indexOf('?');
+        return queryIndex >= 0 ? url.substring(0, queryIndex) : url;
+    }
+
+    /**
+     * Download a result file and end the stream of its part with it.
+     *
+     * @param fallbackPartNumber The part by the name of the result file, used when the source of
+     *                           the result is not one of the uploaded URLs.
+     * @return Completed on the main thread when the part is ended or the result is dropped, it
+     * never fails.
+     */
+    private Completable getTranscribedFilesFromUrl(TranscriptionJob job, String contentUrl,
+            int fallbackPartNumber) {
+        final List<Integer> fallbackPartNumbers = fallbackPartNumber >= 0
+                ? Collections.singletonList(fallbackPartNumber) : Collections.emptyList();
+        return CognitiveServiceHelper.getInstance()
+                .getTranscriptionFilesFromUrl(contentUrl)
+                .subscribeOn(Schedulers.io())
+                .map(BatchTranscriptionEngine::parseTranscribedFile)
+                .timeout(10, TimeUnit.SECONDS)
+                .observeOn(AndroidSchedulers.mainThread())
+                .doOnSuccess(response -> {
+                    Log.d(TAG, "onResponse: " + response.code());
+                    if (!response.isSuccessful()) {
+                        fail(job, fallbackPartNumbers, "fail to download the result, "
+                                + getErrorMessage(response));
+                        return;
+                    }
+                    TranscribeResult transcribeResult = response.body();
+                    int filePartNumber = getPartNumberBySource(job, transcribeResult.source);
+                    if (filePartNumber < 0) {
+                        filePartNumber = fallbackPartNumber;
+                    }
+                    Log.d(TAG, "getTranscriptionFilesFromUrl onResponse: source = "
+                            + transcribeResult.source
+                            + ", filePartNumber = " + filePartNumber);
+                    SegmentTranscription segment = job.getSegment(filePartNumber);
+                    FlowableEmitter<Transcript> emitter = mEmitters.get(segment);
+                    if (emitter == null) {
+                        // The parts left without a result are failed after all downloads.
+                        String errorLog = "unknown source of the result, "
+                                + transcribeResult.source;
+                        Log.w(TAG, errorLog);
+                        mLogTextCallback.onLogReceived(errorLog);
+                        return;
+                    }
+                    segment.setResultTimestamp(transcribeResult.timestamp);
+                    emitter.onNext(transcribeResult.phrases);
+                    emitter.onComplete();
+                })
+                .doOnError(throwable -> fail(job, fallbackPartNumbers,
+                        "fail to download the result, " + throwable))
+                .ignoreElement()
+                .onErrorComplete();
+    }
+
+    /**
+     * Parse the result file as it is downloaded. It runs on the IO thread.
+     */
+    private static Response<TranscribeResult> parseTranscribedFile(
+            Response<ResponseBody> response) throws IOException {
+        if (!response.isSuccessful()) {
+            return Response.error(response.errorBody(), response.raw());
+        }
+        TranscribeResult transcribeResult;
+        try (ResponseBody body = response.body()) {
+            transcribeResult = new TranscribeResultParser(true).parse(body.charStream());
+        }
+        return Response.success(transcribeResult, response.raw());
+    }
+
+    private static String getErrorMessage(Response<?> response) {
+        ResponseBody errorBody = response.errorBody();
+        return errorBody != null ? NetworkServiceHelper.generateErrorToastContent(errorBody)
+                : "code " + response.code();
+    }
+
+    /**
+     * End the streams of the parts with the error.
+     */
+    private void fail(TranscriptionJob job, List<Integer> filePartNumbers, String message) {
+        for (int partNumber : filePartNumbers) {
+            FlowableEmitter<Transcript> emitter = mEmitters.get(job.getSegment(partNumber));
+            if (emitter != null) {
+                emitter.tryOnError(new IOException("part " + partNumber + ", " + message));
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.optoma.meeting.engine;
+
+import android.util.Log;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.microsoft.cognitiveservices.speech.CancellationReason;
+import com.microsoft.cognitiveservices.speech.OutputFormat;
+import com.microsoft.cognitiveservices.speech.PropertyId;
+import com.microsoft.cognitiveservices.speech.ResultReason;
+import com.microsoft.cognitiveservices.speech.SpeechConfig;
+import com.microsoft.cognitiveservices.speech.audio.AudioConfig;
+import com.microsoft.cognitiveservices.speech.transcription.ConversationTranscriber;
+import com.microsoft.cognitiveservices.speech.transcription.ConversationTranscriptionResult;
+import com.optoma.meeting.model.SegmentReady;
+import com.optoma.meeting.model.SegmentTranscription;
+import com.optoma.meeting.model.Transcript;
+import com.optoma.meeting.model.TranscriptionJob;
+import com.optoma.meeting.state.SegmentState;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableEmitter;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Transcribe each split segment with a session of the real-time speech service, instead of
+ * uploading it and polling the batch transcription.
+ * <p>
+ * The session reads the WAV file of the segment and runs a {@link ConversationTranscriber}, so
+ * the phrases have their speakers like the batch diarization. The file is read as fast as the
+ * service accepts it, and each phrase is streamed as soon as it is transcribed, with its words
+ * and its offsets in ticks from the start of the segment, the same as a result file of the batch
+ * transcription.
+ * <p>
+ * A session blocks an IO thread until the end of the file, so the number of the sessions at the
+ * same time is bounded.
+ */
+public class RealtimeTranscriptionEngine implements TranscriptionEngine {
+
+    private static final String TAG = RealtimeTranscriptionEngine.class.getSimpleName();
+
+    // The speakers are named like "Guest-1", the same numbers as the batch diarization.
+    private static final String SPEAKER_PREFIX = "Guest-";
+
+    private final String mSubscriptionKey;
+    private final String mRegion;
+    private final int mSessionCount;
+
+    /**
+     * @param sessionCount The maximum number of the sessions at the same time.
+     */
+    public RealtimeTranscriptionEngine(String subscriptionKey, String region, int sessionCount) {
+        mSubscriptionKey = subscriptionKey;
+        mRegion = region;
+        mSessionCount = sessionCount;
+    }
+
+    /**
+     * @param segmentTranscription A segment in WAV.
+     */
+    @Override
+    public Flowable<Transcript> transcribe(TranscriptionJob job,
+            SegmentTranscription segmentTranscription) {
+        segmentTranscription.moveTo(SegmentState.SUBMITTED);
+        segmentTranscription.moveTo(SegmentState.RUNNING);
+        final String language = job.language;
+        final SegmentReady segment = segmentTranscription.segment;
+        return Flowable.<Transcript>create(sourceEmitter -> {
+            FlowableEmitter<Transcript> emitter = sourceEmitter.serialize();
+            AtomicReference<String> error = new AtomicReference<>();
+            CountDownLatch stopped = new CountDownLatch(1);
+
+            SpeechConfig speechConfig = SpeechConfig.fromSubscription(mSubscriptionKey, mRegion);
+            speechConfig.setSpeechRecognitionLanguage(language);
+            speechConfig.setOutputFormat(OutputFormat.Detailed);
+            speechConfig.requestWordLevelTimestamps();
+            AudioConfig audioConfig = AudioConfig.fromWavFileInput(segment.path);
+            ConversationTranscriber transcriber = new ConversationTranscriber(speechConfig,
+                    audioConfig);
+
+            transcriber.transcribed.addEventListener((o, eventArgs) -> {
+                ConversationTranscriptionResult transcription = eventArgs.getResult();
+                if (transcription.getReason() == ResultReason.RecognizedSpeech) {
+                    Transcript phrase = new Transcript(true);
+                    addPhrase(phrase, transcription);
+                    emitter.onNext(phrase);
+                }
+            });
+            transcriber.canceled.addEventListener((o, eventArgs) -> {
+                if (eventArgs.getReason() == CancellationReason.Error) {
+                    error.compareAndSet(null, eventArgs.getErrorCode() + ": "
+                            + eventArgs.getErrorDetails());
+                }
+                stopped.countDown();
+            });
+            transcriber.sessionStopped.addEventListener((o, eventArgs) -> stopped.countDown());
+            emitter.setCancellable(() -> {
+                error.compareAndSet(null, "disposed");
+                stopped.countDown();
+            });
+
+            try {
+                Log.d(TAG, "transcribe# start part " + segment.partNumber);
+                transcriber.startTranscribingAsync().get();
+                stopped.await();
+                transcriber.stopTranscribingAsync().get();
+            } finally {
+                transcriber.close();
+                audioConfig.close();
+                speechConfig.close();
+            }
+
+            if (error.get() != null) {
+                emitter.tryOnError(new IOException("part " + segment.partNumber + " is "
+                        + "canceled, " + error.get()));
+                return;
+            }
+            Log.d(TAG, "transcribe# end part " + segment.partNumber);
+            emitter.onComplete();
+        }, BackpressureStrategy.BUFFER).subscribeOn(Schedulers.io());
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return mSessionCount;
+    }
+
+    private static void addPhrase(Transcript phrases,
+            ConversationTranscriptionResult transcription) {
+        phrases.addPhrase(toSpeaker(transcription.getSpeakerId()),
+                transcription.getOffset().longValue(), transcription.getDuration().longValue(),
+                transcription.getText());
+        String json = transcription.getProperties().getProperty(
+                PropertyId.SpeechServiceResponse_JsonResult);
+        try {
+            readBestWords(json, phrases);
+        } catch (IOException | IllegalStateException e) {
+            // The phrase is kept without its words, it is then merged by its own timing.
+            Log.w(TAG, "addPhrase# malformed words, " + e);
+        }
+    }
+
+    /**
+     * @return The number of the speaker, or {@link Transcript#UNKNOWN_SPEAKER}.
+     */
+    private static int toSpeaker(String speakerId) {
+        if (speakerId == null || !speakerId.startsWith(SPEAKER_PREFIX)) {
+            return Transcript.UNKNOWN_SPEAKER;
+        }
+        try {
+            return Integer.parseInt(speakerId.substring(SPEAKER_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return Transcript.UNKNOWN_SPEAKER;
+        }
+    }
+
+    /**
+     * Add the words of the best result in the detailed JSON of a phrase, like
+     * {"NBest":[{"Words":[{"Word":"hi","Offset":100,"Duration":200}]}]}.
+     */
+    private static void readBestWords(String json, Transcript phrases) throws IOException {
+        if (json == null || json.isEmpty()) {
+            return;
+        }
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!"NBest".equals(reader.nextName()) || reader.peek() != JsonToken.BEGIN_ARRAY) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                if (reader.hasNext()) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if ("Words".equals(reader.nextName())
+                                && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                            readWords(reader, phrases);
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                }
+                while (reader.hasNext()) {
+                    reader.skipValue();
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        }
+    }
+
+    private static void readWords(JsonReader reader, Transcript phrases) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String word = "";
+            long offsetTicks = 0;
+            long durationTicks = 0;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "Word":
+                        word = reader.nextString();
+                        break;
+                    case "Offset":
+                        offsetTicks = reader.nextLong();
+                        break;
+                    case "Duration":
+                        durationTicks = reader.nextLong();
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+            phrases.addWord(word, offsetTicks, durationTicks);
+        }
+        reader.endArray();
+    }
+}
@@ -0,0 +1,160 @@
+package com.optoma.meeting.engine;
+
+import com.optoma.meeting.model.SegmentReady;
+import com.optoma.meeting.model.SegmentTranscription;
+import com.optoma.meeting.model.Transcript;
+import com.optoma.meeting.model.TranscriptionJob;
+import com.optoma.meeting.state.SegmentState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+
+/**
+ * A stand-in for the speech service that speaks a script, so the split, the merge, the summary
+ * and the files of a job can be profiled without the network. It has no Android dependency and
+ * runs on a plain JVM.
+ * <p>
+ * The script is spoken in turn over the whole recording, one line every phrase interval of the
+ * split input, so the phrases of a segment only depend on where the segment is. Two segments that
+ * overlap have the same phrases in their overlap, like the real service, and the same job always
+ * gives the same transcript. Each segment completes after a fixed latency plus its audio divided
+ * by a real-time factor.
+ */
+public class ScriptedTranscriptionEngine implements TranscriptionEngine {
+
+    // 1 tick = 100 ns
+    private static final long TICKS_PER_MS = 10_000L;
+    // A phrase lasts this share of the interval, the rest is the silence before the next one.
+    private static final float PHRASE_DURATION_RATIO = 0.8f;
+    // The phrases of a segment are streamed in chunks of this size.
+    private static final int CHUNK_SIZE = 8;
+
+    /**
+     * A line of the script.
+     */
+    public static class Line {
+        public final int speaker;
+        public final String text;
+
+        public Line(int speaker, String text) {
+            this.speaker = speaker;
+            this.text = text;
+        }
+
+        /**
+         * @param line "speaker|text", or only the text for an unknown speaker.
+         */
+        public static Line parse(String line) {
+            int separator = line.indexOf('|');
+            if (separator > 0) {
+                try {
+                    return new Line(Integer.parseInt(line.substring(0, separator).trim()),
+                            line.substring(separator + 1).trim());
+                } catch (NumberFormatException e) {
+                    // The whole line is the text.
+                }
+            }
+            return new Line(Transcript.UNKNOWN_SPEAKER, line.trim());
+        }
+    }
+
+    private final List<Line> mScript;
+    private final long mLatencyMs;
+    private final float mRealTimeFactor;
+    private final long mPhraseIntervalMs;
+    private final Scheduler mScheduler;
+
+    /**
+     * @param latencyMs        The fixed delay of each segment.
+     * @param realTimeFactor   The segment also waits its audio divided by it, 0 for no wait.
+     * @param phraseIntervalMs The time of the recording between the starts of two phrases.
+     * @param scheduler        Where the delays are timed and the phrases are emitted.
+     */
+    public ScriptedTranscriptionEngine(List<Line> script, long latencyMs, float realTimeFactor,
+            long phraseIntervalMs, Scheduler scheduler) {
+        if (script.isEmpty()) {
+            throw new IllegalArgumentException("The script is empty");
+        }
+        if (phraseIntervalMs <= 0) {
+            throw new IllegalArgumentException("Invalid phrase interval " + phraseIntervalMs);
+        }
+        mScript = Collections.unmodifiableList(new ArrayList<>(script));
+        mLatencyMs = latencyMs;
+        mRealTimeFactor = realTimeFactor;
+        mPhraseIntervalMs = phraseIntervalMs;
+        mScheduler = scheduler;
+    }
+
+    @Override
+    public Flowable<Transcript> transcribe(TranscriptionJob job,
+            SegmentTranscription segmentTranscription) {
+        segmentTranscription.moveTo(SegmentState.SUBMITTED);
+        segmentTranscription.moveTo(SegmentState.RUNNING);
+        final SegmentReady segment = segmentTranscription.segment;
+        return Flowable.timer(getDelayMs(segment), TimeUnit.MILLISECONDS, mScheduler)
+                .flatMap(ignored -> Flowable.fromIterable(chunk(
+                        generate(mScript, mPhraseIntervalMs, segment), CHUNK_SIZE)));
+    }
+
+    /**
+     * @return How long the segment waits before its phrases.
+     */
+    public long getDelayMs(SegmentReady segment) {
+        long delayMs = mLatencyMs;
+        if (mRealTimeFactor > 0) {
+            delayMs += (long) (segment.durationMs / segment.tempoFactor / mRealTimeFactor);
+        }
+        return delayMs;
+    }
+
+    /**
+     * The phrases of the segment, with the offsets in ticks from the start of its audio, which
+     * is sped up by the tempo factor of the segment.
+     */
+    public static Transcript generate(List<Line> script, long phraseIntervalMs,
+            SegmentReady segment) {
+        Transcript phrases = new Transcript(true);
+        long segmentEndMs = segment.startOffsetMs + segment.durationMs;
+        long phraseDurationMs = (long) (phraseIntervalMs * PHRASE_DURATION_RATIO);
+        // The first phrase of the script that starts in the segment.
+        long index = (segment.startOffsetMs + phraseIntervalMs - 1) / phraseIntervalMs;
+        for (; index * phraseIntervalMs < segmentEndMs; index++) {
+            long startMs = index * phraseIntervalMs;
+            // A phrase at the end of the segment is cut like the audio.
+            long durationMs = Math.min(phraseDurationMs, segmentEndMs - startMs);
+            Line line = script.get((int) (index % script.size()));
+            String[] words = line.text.split("\\s+");
+            phrases.addPhrase(line.speaker, toTicks(startMs - segment.startOffsetMs, segment),
+                    toTicks(durationMs, segment), line.text);
+            for (int i = 0; i < words.length; i++) {
+                long wordStartMs = durationMs * i / words.length;
+                long wordEndMs = durationMs * (i + 1) / words.length;
+                phrases.addWord(words[i],
+                        toTicks(startMs - segment.startOffsetMs + wordStartMs, segment),
+                        toTicks(wordEndMs - wordStartMs, segment));
+            }
+        }
+        return phrases;
+    }
+
+    private static long toTicks(long ms, SegmentReady segment) {
+        return (long) (ms / segment.tempoFactor) * TICKS_PER_MS;
+    }
+
+    private static List<Transcript> chunk(Transcript phrases, int chunkSize) {
+        List<Transcript> chunks = new ArrayList<>();
+        for (int from = 0; from < phrases.size(); from += chunkSize) {
+            Transcript chunk = new Transcript(true);
+            for (int i = from; i < Math.min(from + chunkSize, phrases.size()); i++) {
+                chunk.append(phrases, i);
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,55 @@
+package com.optoma.meeting.engine;
+
+import com.optoma.meeting.model.SegmentTranscription;
+import com.optoma.meeting.model.Transcript;
+import com.optoma.meeting.model.TranscriptionJob;
+
+import io.reactivex.Flowable;
+
+/**
+ * A way to turn the split segments of a job into phrases.
+ * <p>
+ * The caller gives each segment to {@link #transcribe} on the main thread, and the engine streams
+ * the phrases of the segment back. The caller merges, renders and stores them, so an engine only
+ * knows how to transcribe a segment. The engine moves the segment to
+ * {@link com.optoma.meeting.state.SegmentState#SUBMITTED} once it accepts the segment, and may move
+ * it to {@link com.optoma.meeting.state.SegmentState#RUNNING}. The caller moves it to the end
+ * states.
+ */
+public interface TranscriptionEngine {
+
+    /**
+     * Transcribe the segment, or continue its transcription from the stage kept in the journal.
+     *
+     * @return The phrases of the segment in chunks, sorted by their offsets in ticks from the
+     * start of the segment. It completes at the end of the segment, and disposing it cancels the
+     * transcription.
+     */
+    Flowable<Transcript> transcribe(TranscriptionJob job, SegmentTranscription segment);
+
+    /**
+     * @return The maximum number of the segments in transcription at the same time.
+     */
+    default int getMaxConcurrency() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * No more segments of the job will be given to {@link #transcribe}, so an engine that
+     * transcribes them together may start once the given ones are ready.
+     */
+    default void onAllSegmentsGiven(TranscriptionJob job) {
+    }
+
+    /**
+     * Release what the engine keeps for the job, after all its segments are transcribed.
+     */
+    default void onJobFinished(TranscriptionJob job) {
+    }
+
+    /**
+     * Cancel all transcriptions and release the engine.
+     */
+    default void shutdown() {
+    }
+}
@@ -0,0 +1,79 @@
+package com.optoma.meeting.model;
+
+import java.util.Arrays;
+
+/**
+ * Map the positions of a silence-trimmed input back to the original input.
+ * <p>
+ * The trimmed input is a list of kept spans. Span i starts at {@link #mTrimmedStartMs}[i] in the
+ * trimmed input and at {@link #mOriginalStartMs}[i] in the original input, and lasts until the
+ * start of span i + 1. Only one entry is stored per removed silence.
+ */
+public class OffsetRemapTable {
+
+    private final long[] mTrimmedStartMs;
+    private final long[] mOriginalStartMs;
+    private final long mTrimmedDurationMs;
+    private final long mOriginalDurationMs;
+
+    public OffsetRemapTable(long[] trimmedStartMs, long[] originalStartMs,
+            long trimmedDurationMs, long originalDurationMs) {
+        mTrimmedStartMs = trimmedStartMs;
+        mOriginalStartMs = originalStartMs;
+        mTrimmedDurationMs = trimmedDurationMs;
+        mOriginalDurationMs = originalDurationMs;
+    }
+
+    /**
+     * The table of an input that is not trimmed.
+     */
+    public static OffsetRemapTable identity(long durationMs) {
+        return new OffsetRemapTable(new long[]{0}, new long[]{0}, durationMs, durationMs);
+    }
+
+    public long toOriginalMs(long trimmedMs) {
+        int index = Arrays.binarySearch(mTrimmedStartMs, trimmedMs);
+        if (index < 0) {
+            // The span before the insertion point contains the position.
+            index = Math.max(-index - 2, 0);
+        } else {
+            // A position shared by two spans belongs to the later one.
+            while (index + 1 < mTrimmedStartMs.length
+                    && mTrimmedStartMs[index + 1] == trimmedMs) {
+                index++;
+            }
+        }
+        return mOriginalStartMs[index] + trimmedMs - mTrimmedStartMs[index];
+    }
+
+    public int getSpanCount() {
+        return mTrimmedStartMs.length;
+    }
+
+    public long getTrimmedStartMs(int span) {
+        return mTrimmedStartMs[span];
+    }
+
+    public long getOriginalStartMs(int span) {
+        return mOriginalStartMs[span];
+    }
+
+    public long getTrimmedDurationMs() {
+        return mTrimmedDurationMs;
+    }
+
+    public long getOriginalDurationMs() {
+        return mOriginalDurationMs;
+    }
+
+    public long getRemovedMs() {
+        return mOriginalDurationMs - mTrimmedDurationMs;
+    }
+
+    @Override
+    public String toString() {
+        return "OffsetRemapTable{spans=" + mTrimmedStartMs.length
+                + ", trimmed=" + mTrimmedDurationMs + "ms"
+                + ", original=" + mOriginalDurationMs + "ms}";
+    }
+}
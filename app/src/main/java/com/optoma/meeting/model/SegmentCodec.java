@@ -0,0 +1,37 @@
+package com.optoma.meeting.model;
+
+/**
+ * The audio codecs of the split segments. All of them are accepted by the batch transcription.
+ */
+public enum SegmentCodec {
+    // About 7.7 MB for an 8-minute segment.
+    PCM("wav", "wav", "-c:a pcm_s16le"),
+    // Lossless, about half of the PCM.
+    FLAC("flac", "flac", "-c:a flac -compression_level 8"),
+    // Tuned for the speech, about 1 MB for an 8-minute segment.
+    OPUS("ogg", "ogg", "-c:a libopus -b:a 16k -application voip");
+
+    public final String extension;
+    public final String muxer;
+    public final String encoderOptions;
+
+    SegmentCodec(String extension, String muxer, String encoderOptions) {
+        this.extension = extension;
+        this.muxer = muxer;
+        this.encoderOptions = encoderOptions;
+    }
+
+    /**
+     * @return The codec of the name, or the default one if the name is unknown.
+     */
+    public static SegmentCodec fromName(String name, SegmentCodec defaultCodec) {
+        if (name != null) {
+            for (SegmentCodec codec : values()) {
+                if (codec.name().equalsIgnoreCase(name)) {
+                    return codec;
+                }
+            }
+        }
+        return defaultCodec;
+    }
+}
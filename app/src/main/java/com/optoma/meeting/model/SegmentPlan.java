@@ -0,0 +1,73 @@
+package com.optoma.meeting.model;
+
+import java.util.Locale;
+
+/**
+ * The cut points of a split job. Segment i starts at {@link #getStartMs(int)} and lasts until the
+ * start of segment i + 1, the last segment lasts until the end of the input.
+ */
+public class SegmentPlan {
+
+    private final long[] mStartMs;
+    private final long mTotalDurationMs;
+
+    public SegmentPlan(long[] startMs, long totalDurationMs) {
+        mStartMs = startMs;
+        mTotalDurationMs = totalDurationMs;
+    }
+
+    /**
+     * Cut the input at the exact multiples of the segment duration.
+     */
+    public static SegmentPlan fixed(long totalDurationMs, long segmentDurationMs) {
+        int count = (int) ((totalDurationMs + segmentDurationMs - 1) / segmentDurationMs);
+        long[] startMs = new long[Math.max(count, 0)];
+        for (int i = 0; i < startMs.length; i++) {
+            startMs[i] = i * segmentDurationMs;
+        }
+        return new SegmentPlan(startMs, totalDurationMs);
+    }
+
+    public int getSegmentCount() {
+        return mStartMs.length;
+    }
+
+    public long getStartMs(int partNumber) {
+        return mStartMs[partNumber];
+    }
+
+    public long getDurationMs(int partNumber) {
+        long endMs = partNumber + 1 < mStartMs.length ? mStartMs[partNumber + 1] : mTotalDurationMs;
+        return endMs - mStartMs[partNumber];
+    }
+
+    public long getTotalDurationMs() {
+        return mTotalDurationMs;
+    }
+
+    /**
+     * @param tempoFactor The speed-up of the output, the cut points are earlier by this factor.
+     * @return The cut points in seconds for the segment muxer, e.g. "480.020,961.340".
+     */
+    public String toSegmentTimes(float tempoFactor) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i < mStartMs.length; i++) {
+            if (i > 1) {
+                sb.append(',');
+            }
+            long startMs = (long) (mStartMs[i] / tempoFactor);
+            sb.append(String.format(Locale.US, "%d.%03d", startMs / 1000, startMs % 1000));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("SegmentPlan{total=").append(mTotalDurationMs)
+                .append("ms, starts=[");
+        for (int i = 0; i < mStartMs.length; i++) {
+            sb.append(i > 0 ? ", " : "").append(mStartMs[i]);
+        }
+        return sb.append("]}").toString();
+    }
+}
@@ -0,0 +1,39 @@
+package com.optoma.meeting.model;
+
+/**
+ * A split segment that has been completely written and can be uploaded.
+ */
+public class SegmentReady {
+
+    public final int partNumber;
+
+    public final String path;
+
+    // The position of the segment in the split input, which may be trimmed.
+    public final long startOffsetMs;
+
+    public final long durationMs;
+
+    // Maps the positions of the split input back to the original input.
+    public final OffsetRemapTable offsetRemapTable;
+
+    // The audio of the segment is played faster by this factor, so its offsets are shorter.
+    public final float tempoFactor;
+
+    public SegmentReady(int partNumber, String path, long startOffsetMs, long durationMs,
+            OffsetRemapTable offsetRemapTable, float tempoFactor) {
+        this.partNumber = partNumber;
+        this.path = path;
+        this.startOffsetMs = startOffsetMs;
+        this.durationMs = durationMs;
+        this.offsetRemapTable = offsetRemapTable;
+        this.tempoFactor = tempoFactor;
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentReady{partNumber=" + partNumber + ", path=" + path
+                + ", startOffsetMs=" + startOffsetMs + ", durationMs=" + durationMs
+                + ", tempoFactor=" + tempoFactor + "}";
+    }
+}
@@ -0,0 +1,85 @@
+package com.optoma.meeting.model;
+
+import com.optoma.meeting.state.SegmentState;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The transcription of one segment of a job. It owns the uploaded blob and the result of the
+ * segment, so the segments uploaded and transcribed in parallel never share any field.
+ */
+public class SegmentTranscription {
+
+    public final SegmentReady segment;
+
+    private final AtomicReference<SegmentState> mState =
+            new AtomicReference<>(SegmentState.UPLOADING);
+
+    // The read-only URL of the uploaded blob.
+    private volatile String mContentUrl;
+    private volatile String mTranscriptionId;
+    private volatile Transcript mPhrases;
+    // The ISO 8601 timestamp of the result from the service, null if the engine has none.
+    private volatile String mResultTimestamp;
+
+    public SegmentTranscription(SegmentReady segment) {
+        this.segment = segment;
+    }
+
+    public SegmentState getState() {
+        return mState.get();
+    }
+
+    /**
+     * @return false if the transition is not allowed from the current state.
+     */
+    public boolean moveTo(SegmentState next) {
+        while (true) {
+            SegmentState current = mState.get();
+            if (!current.canMoveTo(next)) {
+                return false;
+            }
+            if (mState.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    public String getContentUrl() {
+        return mContentUrl;
+    }
+
+    public void setContentUrl(String contentUrl) {
+        mContentUrl = contentUrl;
+    }
+
+    public String getTranscriptionId() {
+        return mTranscriptionId;
+    }
+
+    public void setTranscriptionId(String transcriptionId) {
+        mTranscriptionId = transcriptionId;
+    }
+
+    public Transcript getPhrases() {
+        return mPhrases;
+    }
+
+    public void setPhrases(Transcript phrases) {
+        mPhrases = phrases;
+    }
+
+    public String getResultTimestamp() {
+        return mResultTimestamp;
+    }
+
+    public void setResultTimestamp(String resultTimestamp) {
+        mResultTimestamp = resultTimestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentTranscription{partNumber=" + segment.partNumber + ", state=" + mState.get()
+                + ", transcriptionId=" + mTranscriptionId + "}";
+    }
+}
@@ -1,32 +1,18 @@
 package com.optoma.meeting.model;
 
-import com.google.gson.annotations.Expose;
-import com.google.gson.annotations.SerializedName;
-
-import java.util.List;
-
+/**
+ * The result of one audio file of a batch transcription, with only the fields that are read.
+ */
 public class TranscribeResult {
-   @SerializedName("source")
-   @Expose
+
+   // The transcribed audio file, its URL or its local path.
    public String source;
 
-   @SerializedName("timestamp")
-   @Expose
    public String timestamp;
 
-   @SerializedName("durationInTicks")
-   @Expose
-   public Double durationInTicks;
-
-   @SerializedName("duration")
-   @Expose
-   public String duration;
-
-   @SerializedName("combinedRecognizedPhrases")
-   @Expose
-   public List<CombinedRecognizedPhrase> combinedRecognizedPhrases = null;
+   public final Transcript phrases;
 
-   @SerializedName("recognizedPhrases")
-   @Expose
-   public List<RecognizedPhrase> recognizedPhrases = null;
+   public TranscribeResult(Transcript phrases) {
+      this.phrases = phrases;
+   }
 }
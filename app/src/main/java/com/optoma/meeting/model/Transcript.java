@@ -0,0 +1,415 @@
+package com.optoma.meeting.model;
+
+import java.util.Arrays;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * The recognized phrases of a transcription, stored in columns of primitive arrays.
+ * <p>
+ * Each phrase keeps only what is read later: the speaker, the offset and the duration in ticks
+ * (1 tick = 100 ns) and the display text of the best result. The words of the phrases are
+ * optional, they are stored in another set of columns and each phrase refers to its range of
+ * words. All texts are kept in one arena of chars, addressed by their start and length, and the
+ * text of each distinct word is only stored once.
+ * <p>
+ * The texts are rendered by appending them to a {@link StringBuilder}, so no string is created
+ * per phrase. A transcript is not thread-safe.
+ */
+public class Transcript {
+
+    public static final int UNKNOWN_SPEAKER = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final boolean mKeepWords;
+
+    private int mSize;
+    private int[] mSpeakers = new int[INITIAL_CAPACITY];
+    private long[] mOffsetTicks = new long[INITIAL_CAPACITY];
+    private long[] mDurationTicks = new long[INITIAL_CAPACITY];
+    private int[] mTextStarts = new int[INITIAL_CAPACITY];
+    private int[] mTextLengths = new int[INITIAL_CAPACITY];
+    private int[] mWordStarts = new int[INITIAL_CAPACITY];
+    private int[] mWordEnds = new int[INITIAL_CAPACITY];
+
+    private int mWordSize;
+    private int[] mWordTextStarts;
+    private int[] mWordTextLengths;
+    private long[] mWordOffsetTicks;
+    private long[] mWordDurationTicks;
+
+    private int mTextSize;
+    private char[] mText = new char[INITIAL_CAPACITY * 32];
+
+    // The open addressing table of the distinct words, each slot is a word index + 1.
+    private int[] mInternSlots;
+    private int mInternSize;
+
+    /**
+     * @param keepWords False to drop the words, a phrase then has no word-level timestamps.
+     */
+    public Transcript(boolean keepWords) {
+        mKeepWords = keepWords;
+        int wordCapacity = keepWords ? INITIAL_CAPACITY * 8 : 0;
+        mWordTextStarts = new int[wordCapacity];
+        mWordTextLengths = new int[wordCapacity];
+        mWordOffsetTicks = new long[wordCapacity];
+        mWordDurationTicks = new long[wordCapacity];
+        mInternSlots = new int[keepWords ? wordCapacity * 2 : 0];
+    }
+
+    public boolean isKeepWords() {
+        return mKeepWords;
+    }
+
+    /**
+     * Append a phrase, the words added next belong to it.
+     */
+    public void addPhrase(int speaker, long offsetTicks, long durationTicks, String display) {
+        int textStart = mTextSize;
+        appendToArena(display, 0, display.length());
+        addPhrase(speaker, offsetTicks, durationTicks, textStart, display.length());
+    }
+
+    /**
+     * Append a word to the last phrase, it is ignored if the words are not kept.
+     */
+    public void addWord(String word, long offsetTicks, long durationTicks) {
+        if (!mKeepWords || mSize == 0) {
+            return;
+        }
+        appendToArena(word, 0, word.length());
+        addWord(internLastText(word.length()), word.length(), offsetTicks, durationTicks);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int getSpeaker(int phrase) {
+        return mSpeakers[phrase];
+    }
+
+    public long getOffsetTicks(int phrase) {
+        return mOffsetTicks[phrase];
+    }
+
+    public long getDurationTicks(int phrase) {
+        return mDurationTicks[phrase];
+    }
+
+    public long getEndTicks(int phrase) {
+        return mOffsetTicks[phrase] + mDurationTicks[phrase];
+    }
+
+    public String getText(int phrase) {
+        return new String(mText, mTextStarts[phrase], mTextLengths[phrase]);
+    }
+
+    public StringBuilder appendText(int phrase, StringBuilder sb) {
+        return sb.append(mText, mTextStarts[phrase], mTextLengths[phrase]);
+    }
+
+    public int getTextLength(int phrase) {
+        return mTextLengths[phrase];
+    }
+
+    public int getWordCount(int phrase) {
+        return mWordEnds[phrase] - mWordStarts[phrase];
+    }
+
+    public String getWord(int phrase, int word) {
+        int index = mWordStarts[phrase] + word;
+        return new String(mText, mWordTextStarts[index], mWordTextLengths[index]);
+    }
+
+    public long getWordOffsetTicks(int phrase, int word) {
+        return mWordOffsetTicks[mWordStarts[phrase] + word];
+    }
+
+    public long getWordDurationTicks(int phrase, int word) {
+        return mWordDurationTicks[mWordStarts[phrase] + word];
+    }
+
+    /**
+     * Remove the phrases from {@code from} (inclusive) to {@code to} (exclusive). Their texts stay
+     * in the arena until the transcript is dropped.
+     */
+    public void removeRange(int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int moved = mSize - to;
+        System.arraycopy(mSpeakers, to, mSpeakers, from, moved);
+        System.arraycopy(mOffsetTicks, to, mOffsetTicks, from, moved);
+        System.arraycopy(mDurationTicks, to, mDurationTicks, from, moved);
+        System.arraycopy(mTextStarts, to, mTextStarts, from, moved);
+        System.arraycopy(mTextLengths, to, mTextLengths, from, moved);
+        System.arraycopy(mWordStarts, to, mWordStarts, from, moved);
+        System.arraycopy(mWordEnds, to, mWordEnds, from, moved);
+        mSize -= to - from;
+    }
+
+    /**
+     * Remove all phrases and their texts, the arrays are kept for the next phrases.
+     */
+    public void clear() {
+        mSize = 0;
+        mWordSize = 0;
+        mTextSize = 0;
+        Arrays.fill(mInternSlots, 0);
+        mInternSize = 0;
+    }
+
+    /**
+     * Remove the first words of the phrase, and rebuild its text and timing from the rest.
+     *
+     * @param wordSeparator The separator to join the words that are left.
+     */
+    public void removeLeadingWords(int phrase, int count, String wordSeparator) {
+        long end = getEndTicks(phrase);
+        mWordStarts[phrase] += count;
+        int textStart = mTextSize;
+        for (int i = mWordStarts[phrase]; i < mWordEnds[phrase]; i++) {
+            if (i > mWordStarts[phrase]) {
+                appendToArena(wordSeparator, 0, wordSeparator.length());
+            }
+            appendToArena(mText, mWordTextStarts[i], mWordTextLengths[i]);
+        }
+        mTextStarts[phrase] = textStart;
+        mTextLengths[phrase] = mTextSize - textStart;
+        mOffsetTicks[phrase] = getWordOffsetTicks(phrase, 0);
+        mDurationTicks[phrase] = end - mOffsetTicks[phrase];
+    }
+
+    /**
+     * Multiply all offsets and durations by the factor.
+     */
+    public void scale(float factor) {
+        for (int i = 0; i < mSize; i++) {
+            mOffsetTicks[i] = (long) (mOffsetTicks[i] * (double) factor);
+            mDurationTicks[i] = (long) (mDurationTicks[i] * (double) factor);
+        }
+        for (int i = 0; i < mWordSize; i++) {
+            mWordOffsetTicks[i] = (long) (mWordOffsetTicks[i] * (double) factor);
+            mWordDurationTicks[i] = (long) (mWordDurationTicks[i] * (double) factor);
+        }
+    }
+
+    /**
+     * Move the offsets of all phrases and words to another timeline, the durations are kept.
+     */
+    public void mapOffsets(LongUnaryOperator ticksMapper) {
+        for (int i = 0; i < mSize; i++) {
+            mOffsetTicks[i] = ticksMapper.applyAsLong(mOffsetTicks[i]);
+        }
+        for (int i = 0; i < mWordSize; i++) {
+            mWordOffsetTicks[i] = ticksMapper.applyAsLong(mWordOffsetTicks[i]);
+        }
+    }
+
+    /**
+     * Append a phrase of another transcript, with its words if both keep them.
+     */
+    public void append(Transcript source, int phrase) {
+        int textStart = mTextSize;
+        appendToArena(source.mText, source.mTextStarts[phrase], source.mTextLengths[phrase]);
+        addPhrase(source.mSpeakers[phrase], source.mOffsetTicks[phrase],
+                source.mDurationTicks[phrase], textStart, source.mTextLengths[phrase]);
+        if (!mKeepWords || !source.mKeepWords) {
+            return;
+        }
+        for (int i = source.mWordStarts[phrase]; i < source.mWordEnds[phrase]; i++) {
+            int length = source.mWordTextLengths[i];
+            appendToArena(source.mText, source.mWordTextStarts[i], length);
+            addWord(internLastText(length), length, source.mWordOffsetTicks[i],
+                    source.mWordDurationTicks[i]);
+        }
+    }
+
+    /**
+     * Append all phrases of another transcript.
+     */
+    public void append(Transcript source) {
+        for (int i = 0; i < source.mSize; i++) {
+            append(source, i);
+        }
+    }
+
+    /**
+     * @return A copy of the phrases that start from {@code fromTicks} (inclusive) to
+     * {@code toTicks} (exclusive). The phrases must be sorted by offset.
+     */
+    public Transcript slice(long fromTicks, long toTicks) {
+        Transcript slice = new Transcript(mKeepWords);
+        for (int i = lowerBound(fromTicks); i < mSize && mOffsetTicks[i] < toTicks; i++) {
+            slice.append(this, i);
+        }
+        return slice;
+    }
+
+    /**
+     * @return The total length of the texts of the phrases, to size a rendering buffer.
+     */
+    public int getTotalTextLength() {
+        int length = 0;
+        for (int i = 0; i < mSize; i++) {
+            length += mTextLengths[i];
+        }
+        return length;
+    }
+
+    private int lowerBound(long ticks) {
+        int low = 0;
+        int high = mSize;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mOffsetTicks[middle] < ticks) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void addPhrase(int speaker, long offsetTicks, long durationTicks, int textStart,
+            int textLength) {
+        if (mSize == mSpeakers.length) {
+            int capacity = mSize * 2;
+            mSpeakers = Arrays.copyOf(mSpeakers, capacity);
+            mOffsetTicks = Arrays.copyOf(mOffsetTicks, capacity);
+            mDurationTicks = Arrays.copyOf(mDurationTicks, capacity);
+            mTextStarts = Arrays.copyOf(mTextStarts, capacity);
+            mTextLengths = Arrays.copyOf(mTextLengths, capacity);
+            mWordStarts = Arrays.copyOf(mWordStarts, capacity);
+            mWordEnds = Arrays.copyOf(mWordEnds, capacity);
+        }
+        mSpeakers[mSize] = speaker;
+        mOffsetTicks[mSize] = offsetTicks;
+        mDurationTicks[mSize] = durationTicks;
+        mTextStarts[mSize] = textStart;
+        mTextLengths[mSize] = textLength;
+        mWordStarts[mSize] = mWordSize;
+        mWordEnds[mSize] = mWordSize;
+        mSize++;
+    }
+
+    private void addWord(int textStart, int textLength, long offsetTicks, long durationTicks) {
+        if (mWordSize == mWordTextStarts.length) {
+            int capacity = mWordSize * 2;
+            mWordTextStarts = Arrays.copyOf(mWordTextStarts, capacity);
+            mWordTextLengths = Arrays.copyOf(mWordTextLengths, capacity);
+            mWordOffsetTicks = Arrays.copyOf(mWordOffsetTicks, capacity);
+            mWordDurationTicks = Arrays.copyOf(mWordDurationTicks, capacity);
+        }
+        mWordTextStarts[mWordSize] = textStart;
+        mWordTextLengths[mWordSize] = textLength;
+        mWordOffsetTicks[mWordSize] = offsetTicks;
+        mWordDurationTicks[mWordSize] = durationTicks;
+        mWordSize++;
+        mWordEnds[mSize - 1] = mWordSize;
+        internWord(mWordSize - 1);
+    }
+
+    private void appendToArena(String text, int start, int length) {
+        ensureTextCapacity(length);
+        text.getChars(start, start + length, mText, mTextSize);
+        mTextSize += length;
+    }
+
+    private void appendToArena(char[] text, int start, int length) {
+        // The source may be the old arena, it is still valid after the arena is grown.
+        ensureTextCapacity(length);
+        System.arraycopy(text, start, mText, mTextSize, length);
+        mTextSize += length;
+    }
+
+    private void ensureTextCapacity(int length) {
+        if (mTextSize + length > mText.length) {
+            mText = Arrays.copyOf(mText, Math.max(mText.length * 2, mTextSize + length));
+        }
+    }
+
+    /**
+     * Look up the text at the end of the arena among the distinct words. The text is dropped
+     * from the arena if the same word is already stored.
+     *
+     * @return The start of the text of the word in the arena.
+     */
+    private int internLastText(int length) {
+        int start = mTextSize - length;
+        int slot = hash(start, length) & (mInternSlots.length - 1);
+        while (mInternSlots[slot] != 0) {
+            int wordIndex = mInternSlots[slot] - 1;
+            int wordStart = mWordTextStarts[wordIndex];
+            if (mWordTextLengths[wordIndex] == length && regionEquals(wordStart, start, length)) {
+                mTextSize = start;
+                return wordStart;
+            }
+            slot = (slot + 1) & (mInternSlots.length - 1);
+        }
+        return start;
+    }
+
+    /**
+     * Add the text of the word to the table of the distinct words if it is new.
+     */
+    private void internWord(int wordIndex) {
+        if (mInternSize * 2 >= mInternSlots.length) {
+            rehash();
+        }
+        int start = mWordTextStarts[wordIndex];
+        int length = mWordTextLengths[wordIndex];
+        int slot = hash(start, length) & (mInternSlots.length - 1);
+        while (mInternSlots[slot] != 0) {
+            int other = mInternSlots[slot] - 1;
+            if (mWordTextStarts[other] == start && mWordTextLengths[other] == length) {
+                return;
+            }
+            slot = (slot + 1) & (mInternSlots.length - 1);
+        }
+        mInternSlots[slot] = wordIndex + 1;
+        mInternSize++;
+    }
+
+    private void rehash() {
+        int[] oldSlots = mInternSlots;
+        mInternSlots = new int[Math.max(oldSlots.length * 2, 16)];
+        for (int value : oldSlots) {
+            if (value == 0) {
+                continue;
+            }
+            int wordIndex = value - 1;
+            int slot = hash(mWordTextStarts[wordIndex], mWordTextLengths[wordIndex])
+                    & (mInternSlots.length - 1);
+            while (mInternSlots[slot] != 0) {
+                slot = (slot + 1) & (mInternSlots.length - 1);
+            }
+            mInternSlots[slot] = value;
+        }
+    }
+
+    private boolean regionEquals(int start, int otherStart, int length) {
+        for (int i = 0; i < length; i++) {
+            if (mText[start + i] != mText[otherStart + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int hash(int start, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + mText[start + i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        return "Transcript{phrases=" + mSize + ", words=" + mWordSize
+                + ", distinct words=" + mInternSize + ", chars=" + mTextSize + "}";
+    }
+}
@@ -0,0 +1,115 @@
+package com.optoma.meeting.model;
+
+import com.optoma.meeting.util.OverlapMerger;
+import com.optoma.meeting.util.TimestampFormat;
+
+/**
+ * Assemble the transcripts of the parts of a job into the transcript of the meeting. The settled
+ * phrases of each part are merged with its neighbors by the reorder buffer of the job, moved to
+ * their offsets in the original recording, and released in order by the timeline of the job.
+ * <p>
+ * It has no Android dependency. It is not thread-safe, it is driven on the thread of the job.
+ */
+public class TranscriptAssembler {
+
+    // 1 tick = 100 ns
+    private static final long TICKS_PER_MS = 10_000L;
+
+    /**
+     * Receive the parts that failed, their phrases are skipped.
+     */
+    public interface SkipListener {
+        void onPartSkipped(int partNumber);
+    }
+
+    private TranscriptAssembler() {
+    }
+
+    /**
+     * Release the transcripts of the settled prefix of the parts to the timeline of the job, and
+     * the phrases of the timeline in order. The text of each phrase for the summary is appended to
+     * the summary text of its part.
+     *
+     * @return The released phrases with their offsets, for the client and the minutes file, empty
+     * if no phrase is released.
+     */
+    public static String release(TranscriptionJob job, SkipListener listener) {
+        for (TranscriptReorderBuffer.Release release : job.reorderBuffer.drain(job,
+                OverlapMerger.wordSeparatorOf(job.language))) {
+            openTimelineSources(job, release.partNumber);
+            if (release.failed) {
+                listener.onPartSkipped(release.partNumber);
+            } else {
+                job.timeline.push(release.partNumber, toMeetingTranscript(job,
+                        release.partNumber, release.fromPhrase, release.toPhrase));
+            }
+            if (release.complete) {
+                job.timeline.close(release.partNumber);
+            }
+        }
+
+        StringBuilder transcriptionForView = new StringBuilder();
+        job.timeline.drain((partNumber, phrases, phrase) -> {
+            appendForView(transcriptionForView, phrases, phrase);
+            appendForSummary(job.getSummaryText(partNumber), phrases, phrase);
+        });
+        return transcriptionForView.toString();
+    }
+
+    /**
+     * Open the part and the next one in the timeline, so the released phrases of the part wait
+     * for the earlier phrases of the next part. No phrase of a part starts before its segment.
+     */
+    private static void openTimelineSources(TranscriptionJob job, int partNumber) {
+        for (int i = partNumber; i <= partNumber + 1; i++) {
+            SegmentTranscription segment = job.getSegment(i);
+            if (segment != null && !job.timeline.isOpened(i)) {
+                job.timeline.open(i, toOriginalOffsetMs(segment.segment, 0) * TICKS_PER_MS);
+            }
+        }
+    }
+
+    /**
+     * @return A copy of the phrases of the part in [fromPhrase, toPhrase), with the offsets in the
+     * original recording.
+     */
+    private static Transcript toMeetingTranscript(TranscriptionJob job, int filePartNumber,
+            int fromPhrase, int toPhrase) {
+        SegmentTranscription segment = job.getSegment(filePartNumber);
+        Transcript phrases = segment.getPhrases();
+        Transcript transcript = new Transcript(false);
+        for (int i = fromPhrase; i < toPhrase; i++) {
+            transcript.append(phrases, i);
+        }
+        // According to definition on https://learn.microsoft.com/zh-tw/azure/ai-services/speech-service/batch-transcription-get?pivots=rest-api
+        // , 1 offsetInTicks = 100ns.
+        transcript.mapOffsets(ticks -> toOriginalOffsetMs(segment.segment,
+                ticks / TICKS_PER_MS) * TICKS_PER_MS);
+        return transcript;
+    }
+
+    /**
+     * Map an offset in the segment to the wall-clock offset in the original recording. The
+     * segments have variable lengths, and the silences may be trimmed before the split.
+     */
+    private static long toOriginalOffsetMs(SegmentReady segment, long offsetInSegmentMs) {
+        return segment.offsetRemapTable.toOriginalMs(segment.startOffsetMs + offsetInSegmentMs);
+    }
+
+    /**
+     * Append the text of the phrase for the next steps to summarize.
+     */
+    private static void appendForSummary(StringBuilder sb, Transcript transcript, int phrase) {
+        sb.append("{speaker ").append(transcript.getSpeaker(phrase)).append(':');
+        transcript.appendText(phrase, sb).append("}, ");
+    }
+
+    /**
+     * Append the text of the phrase with its offset, for the log and the minutes file.
+     */
+    private static void appendForView(StringBuilder sb, Transcript transcript, int phrase) {
+        TimestampFormat.appendOffset(sb, transcript.getOffsetTicks(phrase) / TICKS_PER_MS)
+                .append(" {speaker ").append(transcript.getSpeaker(phrase)).append(':');
+        transcript.appendText(phrase, sb).append("}\n");
+    }
+}
@@ -0,0 +1,147 @@
+package com.optoma.meeting.model;
+
+import com.optoma.meeting.state.SegmentState;
+import com.optoma.meeting.util.OverlapMerger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Release the phrases of the segments of a job in the order of their parts, as soon as each
+ * prefix of the parts is settled, so the start of a meeting can be read while the rest of it is
+ * still transcribed.
+ * <p>
+ * A part is settled when it is done or failed. A failed part is released as a gap, so it never
+ * blocks the parts after it. The phrases of a done part before its overlap with the next part are
+ * released at once, and the rest is held until the next part is settled, because merging the
+ * overlap may drop them. The phrases already released are never dropped by a later merge.
+ * <p>
+ * It is not thread-safe, it is driven on the main thread.
+ */
+public class TranscriptReorderBuffer {
+
+    // 1 tick = 100 ns
+    private static final long TICKS_PER_MS = 10_000L;
+
+    /**
+     * The phrases of a part in [fromPhrase, toPhrase) that are ready for the client.
+     */
+    public static class Release {
+        public final int partNumber;
+        public final int fromPhrase;
+        public final int toPhrase;
+        // True if the part failed and has no phrases.
+        public final boolean failed;
+        // True if it is the last release of the part.
+        public final boolean complete;
+
+        Release(int partNumber, int fromPhrase, int toPhrase, boolean failed, boolean complete) {
+            this.partNumber = partNumber;
+            this.fromPhrase = fromPhrase;
+            this.toPhrase = toPhrase;
+            this.failed = failed;
+            this.complete = complete;
+        }
+    }
+
+    // The first part that is not released completely.
+    private int mNextPartNumber;
+    // The released phrases of the next part.
+    private int mReleasedPhraseCount;
+    private int mDroppedPhraseCount;
+
+    /**
+     * Merge the overlaps of the settled parts and release their phrases in order.
+     *
+     * @param wordSeparator The separator to join the words of a trimmed phrase.
+     * @return The new releases in the order of the parts, empty if the next part is not settled.
+     */
+    public List<Release> drain(TranscriptionJob job, String wordSeparator) {
+        List<Release> releases = new ArrayList<>();
+        while (!isComplete(job)) {
+            SegmentTranscription current = job.getSegment(mNextPartNumber);
+            if (current == null) {
+                break;
+            }
+            if (current.getState() == SegmentState.FAILED) {
+                releases.add(new Release(mNextPartNumber, 0, 0, true, true));
+                advance();
+                continue;
+            }
+            if (current.getState() != SegmentState.DONE) {
+                break;
+            }
+
+            Transcript phrases = current.getPhrases();
+            SegmentTranscription next = job.getSegment(mNextPartNumber + 1);
+            boolean isLast = mNextPartNumber == job.getTotalSegmentCount() - 1;
+            if (!isLast && next == null) {
+                // The next part is not split yet, so where the overlap starts is unknown.
+                break;
+            }
+            if (next != null && next.getState() == SegmentState.DONE) {
+                mergeOverlap(current, next, wordSeparator);
+            } else if (next != null && next.getState() != SegmentState.FAILED) {
+                // Hold the overlap until the next part is settled.
+                int safeCount = countBefore(phrases, (next.segment.startOffsetMs
+                        - current.segment.startOffsetMs) * TICKS_PER_MS);
+                if (safeCount > mReleasedPhraseCount) {
+                    releases.add(new Release(mNextPartNumber, mReleasedPhraseCount, safeCount,
+                            false, false));
+                    mReleasedPhraseCount = safeCount;
+                }
+                break;
+            }
+            releases.add(new Release(mNextPartNumber, mReleasedPhraseCount, phrases.size(),
+                    false, true));
+            advance();
+        }
+        return releases;
+    }
+
+    /**
+     * @return True if all parts of the job are released.
+     */
+    public boolean isComplete(TranscriptionJob job) {
+        return job.getTotalSegmentCount() > 0 && mNextPartNumber >= job.getTotalSegmentCount();
+    }
+
+    /**
+     * @return The number of the phrases dropped as duplicates in the overlaps.
+     */
+    public int getDroppedPhraseCount() {
+        return mDroppedPhraseCount;
+    }
+
+    private void advance() {
+        mNextPartNumber++;
+        mReleasedPhraseCount = 0;
+    }
+
+    private void mergeOverlap(SegmentTranscription current, SegmentTranscription next,
+            String wordSeparator) {
+        SegmentReady earlier = current.segment;
+        SegmentReady later = next.segment;
+        if (earlier.startOffsetMs + earlier.durationMs <= later.startOffsetMs) {
+            return;
+        }
+        Transcript earlierPhrases = current.getPhrases();
+        Transcript laterPhrases = next.getPhrases();
+        int sizeBefore = earlierPhrases.size() + laterPhrases.size();
+        OverlapMerger.merge(earlierPhrases, earlier.startOffsetMs,
+                earlier.startOffsetMs + earlier.durationMs, laterPhrases, later.startOffsetMs,
+                wordSeparator);
+        mDroppedPhraseCount += sizeBefore - earlierPhrases.size() - laterPhrases.size();
+    }
+
+    /**
+     * @return The number of the leading phrases that start before the offset.
+     */
+    private static int countBefore(Transcript phrases, long offsetTicks) {
+        int count = 0;
+        while (count < phrases.size() && phrases.getOffsetTicks(count) < offsetTicks) {
+            count++;
+        }
+        return count;
+    }
+}
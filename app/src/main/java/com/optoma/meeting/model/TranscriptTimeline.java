@@ -0,0 +1,146 @@
+package com.optoma.meeting.model;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Merge the phrases of many sources, like the segments of a meeting, into one timeline ordered by
+ * their offsets in the original recording.
+ * <p>
+ * The phrases of each source arrive in chunks, sorted by offset within the source. A k-way merge
+ * on a min-heap of the head phrase of each source emits them in global order, in O(log k) per
+ * phrase. A phrase is only emitted when no open source can still add an earlier one: each open
+ * source has a watermark, the offset its next phrases start from, which is its start until its
+ * first chunk and then the offset of its last phrase. The emitted phrases are dropped, so only the
+ * phrases waiting for a slower source are held.
+ * <p>
+ * A source must be opened before any phrase at or after its start is pushed to another source.
+ * It is not thread-safe.
+ */
+public class TranscriptTimeline {
+
+    /**
+     * Receive the phrases of the timeline in order.
+     */
+    public interface Sink {
+        /**
+         * @param phrases The buffer of the source, only {@code phrase} may be read.
+         */
+        void accept(int source, Transcript phrases, int phrase);
+    }
+
+    private static class Source {
+        final int id;
+        final Transcript phrases = new Transcript(false);
+        // The next phrase to emit.
+        int cursor;
+        long watermarkTicks;
+        boolean closed;
+
+        Source(int id, long startTicks) {
+            this.id = id;
+            this.watermarkTicks = startTicks;
+        }
+
+        long headTicks() {
+            return phrases.getOffsetTicks(cursor);
+        }
+
+        boolean hasPending() {
+            return cursor < phrases.size();
+        }
+    }
+
+    private final Map<Integer, Source> mSources = new HashMap<>();
+    // The sources with pending phrases, by their head phrase and then by their IDs.
+    private final PriorityQueue<Source> mHeap = new PriorityQueue<>(11, (a, b) -> {
+        int compare = Long.compare(a.headTicks(), b.headTicks());
+        return compare != 0 ? compare : Integer.compare(a.id, b.id);
+    });
+
+    /**
+     * @param startTicks No phrase of the source starts before it.
+     */
+    public void open(int source, long startTicks) {
+        if (mSources.get(source) == null) {
+            mSources.put(source, new Source(source, startTicks));
+        }
+    }
+
+    public boolean isOpened(int source) {
+        return mSources.get(source) != null;
+    }
+
+    /**
+     * Add the next phrases of an opened source, sorted by offset.
+     */
+    public void push(int source, Transcript phrases) {
+        Source target = mSources.get(source);
+        if (target == null || target.closed) {
+            throw new IllegalStateException("The source " + source + " is not open");
+        }
+        if (phrases.size() == 0) {
+            return;
+        }
+        boolean wasPending = target.hasPending();
+        target.phrases.append(phrases);
+        target.watermarkTicks = Math.max(target.watermarkTicks,
+                phrases.getOffsetTicks(phrases.size() - 1));
+        if (!wasPending) {
+            mHeap.add(target);
+        }
+    }
+
+    /**
+     * The source has no more phrases, so it does not hold the others back.
+     */
+    public void close(int source) {
+        Source target = mSources.get(source);
+        if (target != null) {
+            target.closed = true;
+        }
+    }
+
+    /**
+     * Emit the phrases that no open source can precede any more.
+     *
+     * @return The number of the emitted phrases.
+     */
+    public int drain(Sink sink) {
+        long limitTicks = Long.MAX_VALUE;
+        for (Source source : mSources.values()) {
+            if (!source.closed) {
+                limitTicks = Math.min(limitTicks, source.watermarkTicks);
+            }
+        }
+
+        int count = 0;
+        while (!mHeap.isEmpty() && mHeap.peek().headTicks() <= limitTicks) {
+            Source source = mHeap.poll();
+            sink.accept(source.id, source.phrases, source.cursor);
+            source.cursor++;
+            count++;
+            if (source.hasPending()) {
+                mHeap.add(source);
+            } else {
+                // Drop the emitted phrases, the buffer is reused by the next chunk.
+                source.phrases.clear();
+                source.cursor = 0;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return True if all sources are closed and all their phrases are emitted.
+     */
+    public boolean isEmpty() {
+        for (Source source : mSources.values()) {
+            if (!source.closed || source.hasPending()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
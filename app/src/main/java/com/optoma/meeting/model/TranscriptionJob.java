@@ -0,0 +1,252 @@
+package com.optoma.meeting.model;
+
+import com.optoma.meeting.network.BlobUploadSession;
+import com.optoma.meeting.state.SegmentState;
+import com.optoma.meeting.util.JobJournal;
+import com.optoma.meeting.util.LatencyRecorder;
+import com.optoma.meeting.util.MeetingDocumentWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The transcription of all segments of one recording.
+ */
+public class TranscriptionJob {
+
+    public final String jobId;
+    public final String language;
+    public final BlobUploadSession blobUploadSession;
+    public final JobJournal journal;
+    public final TranscriptionMode mode;
+    // Only used on the main thread.
+    public final LatencyRecorder latencyRecorder = new LatencyRecorder();
+    // The transcripts are released to the client part by part, on the main thread.
+    public final TranscriptReorderBuffer reorderBuffer = new TranscriptReorderBuffer();
+    // The released phrases of all parts in the order of the original recording.
+    public final TranscriptTimeline timeline = new TranscriptTimeline();
+
+    private final Map<Integer, SegmentTranscription> mSegments = new ConcurrentHashMap<>();
+    // The part numbers of each transcription of the service, in the order of its content URLs.
+    private final Map<String, List<Integer>> mTranscriptionIdToPartNumbers =
+            new ConcurrentHashMap<>();
+
+    // The text of each part for the summary, taken from the timeline.
+    private final Map<Integer, StringBuilder> mPartNumberToSummaryText = new HashMap<>();
+
+    // Unknown until the split stream completes.
+    private volatile int mTotalSegmentCount = -1;
+    // The speed-up of the segments, it is the same for all segments of the job.
+    private volatile float mTempoFactor = 1.0f;
+    // The timestamp that names the minutes file, set by the first released transcript.
+    private volatile long mMinutesTimestamp = -1;
+    // Only used on the thread that writes the minutes files.
+    private MeetingDocumentWriter mMinutesWriter;
+    // The failure that stopped the minutes file, on the same thread.
+    private IOException mMinutesError;
+    // The timestamp of the latest result, it names the minutes file. Only used on the main thread.
+    private long mLastResultTimestamp;
+
+    // The counters of the engines when the job starts, for comparing the codecs of the segments.
+    private long mStartTime;
+    private long mStartUploadedBytes;
+    private int mStartPollCount;
+
+    public TranscriptionJob(String jobId, String language, BlobUploadSession blobUploadSession,
+            JobJournal journal, TranscriptionMode mode) {
+        this.jobId = jobId;
+        this.language = language;
+        this.blobUploadSession = blobUploadSession;
+        this.journal = journal;
+        this.mode = mode;
+    }
+
+    /**
+     * Rebuild a job interrupted by a restart of the service from its journal, with the segments,
+     * their uploaded URLs and the transcriptions of the service they were submitted to.
+     */
+    public static TranscriptionJob resume(JobJournal journal,
+            BlobUploadSession blobUploadSession) {
+        TranscriptionJob job = new TranscriptionJob(journal.jobId, journal.getLanguage(),
+                blobUploadSession, journal, journal.getMode());
+        for (SegmentReady segmentReady : journal.getSegments()) {
+            SegmentTranscription segment = job.addSegment(segmentReady);
+            String contentUrl = journal.getContentUrl(segmentReady.partNumber);
+            if (contentUrl != null) {
+                segment.setContentUrl(contentUrl);
+            }
+        }
+        job.setTotalSegmentCount(journal.getTotalSegmentCount());
+        for (Map.Entry<String, List<Integer>> entry : journal.getTranscriptions().entrySet()) {
+            job.onSubmitted(entry.getKey(), entry.getValue());
+        }
+        return job;
+    }
+
+    public SegmentTranscription addSegment(SegmentReady segment) {
+        SegmentTranscription segmentTranscription = new SegmentTranscription(segment);
+        mSegments.put(segment.partNumber, segmentTranscription);
+        mTempoFactor = segment.tempoFactor;
+        return segmentTranscription;
+    }
+
+    public SegmentTranscription getSegment(int partNumber) {
+        return mSegments.get(partNumber);
+    }
+
+    public int getSegmentCount() {
+        return mSegments.size();
+    }
+
+    /**
+     * @return The speed-up of the segments, 1.0 before the first segment.
+     */
+    public float getTempoFactor() {
+        return mTempoFactor;
+    }
+
+    public int getTotalSegmentCount() {
+        return mTotalSegmentCount;
+    }
+
+    public void setTotalSegmentCount(int totalSegmentCount) {
+        mTotalSegmentCount = totalSegmentCount;
+    }
+
+    /**
+     * @return The text of the part for the summary, only used on the main thread.
+     */
+    public StringBuilder getSummaryText(int partNumber) {
+        StringBuilder summaryText = mPartNumberToSummaryText.get(partNumber);
+        if (summaryText == null) {
+            summaryText = new StringBuilder();
+            mPartNumberToSummaryText.put(partNumber, summaryText);
+        }
+        return summaryText;
+    }
+
+    public long getMinutesTimestamp() {
+        return mMinutesTimestamp;
+    }
+
+    public void setMinutesTimestamp(long minutesTimestamp) {
+        mMinutesTimestamp = minutesTimestamp;
+    }
+
+    public MeetingDocumentWriter getMinutesWriter() {
+        return mMinutesWriter;
+    }
+
+    public void setMinutesWriter(MeetingDocumentWriter minutesWriter) {
+        mMinutesWriter = minutesWriter;
+    }
+
+    public IOException getMinutesError() {
+        return mMinutesError;
+    }
+
+    public void setMinutesError(IOException minutesError) {
+        mMinutesError = minutesError;
+    }
+
+    public long getLastResultTimestamp() {
+        return mLastResultTimestamp;
+    }
+
+    public void setLastResultTimestamp(long lastResultTimestamp) {
+        mLastResultTimestamp = lastResultTimestamp;
+    }
+
+    /**
+     * Record the counters of the engines when the job starts, the stats of the job are counted
+     * from them.
+     */
+    public void start(long startTime, long uploadedBytes, int pollCount) {
+        mStartTime = startTime;
+        mStartUploadedBytes = uploadedBytes;
+        mStartPollCount = pollCount;
+    }
+
+    public long getStartTime() {
+        return mStartTime;
+    }
+
+    public long getStartUploadedBytes() {
+        return mStartUploadedBytes;
+    }
+
+    public int getStartPollCount() {
+        return mStartPollCount;
+    }
+
+    /**
+     * Bind the segments to the transcription of the service that contains them.
+     */
+    public void onSubmitted(String transcriptionId, List<Integer> partNumbers) {
+        mTranscriptionIdToPartNumbers.put(transcriptionId,
+                Collections.unmodifiableList(new ArrayList<>(partNumbers)));
+        for (int partNumber : partNumbers) {
+            SegmentTranscription segment = mSegments.get(partNumber);
+            if (segment != null) {
+                segment.setTranscriptionId(transcriptionId);
+                segment.moveTo(SegmentState.SUBMITTED);
+            }
+        }
+    }
+
+    public List<Integer> getPartNumbers(String transcriptionId) {
+        List<Integer> partNumbers = mTranscriptionIdToPartNumbers.get(transcriptionId);
+        return partNumbers != null ? partNumbers : Collections.emptyList();
+    }
+
+    /**
+     * Move all segments of the transcription of the service to the next state.
+     */
+    public void moveTo(String transcriptionId, SegmentState next) {
+        for (int partNumber : getPartNumbers(transcriptionId)) {
+            SegmentTranscription segment = mSegments.get(partNumber);
+            if (segment != null) {
+                segment.moveTo(next);
+            }
+        }
+    }
+
+    /**
+     * @return The URLs of the uploaded segments by their part numbers.
+     */
+    public SortedMap<Integer, String> getContentUrls() {
+        SortedMap<Integer, String> contentUrls = new TreeMap<>();
+        for (SegmentTranscription segment : mSegments.values()) {
+            if (segment.getContentUrl() != null) {
+                contentUrls.put(segment.segment.partNumber, segment.getContentUrl());
+            }
+        }
+        return contentUrls;
+    }
+
+    public int countSegments(SegmentState state) {
+        int count = 0;
+        for (SegmentTranscription segment : mSegments.values()) {
+            if (segment.getState() == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "TranscriptionJob{jobId=" + jobId + ", mode=" + mode
+                + ", segments=" + mSegments.size()
+                + ", total=" + mTotalSegmentCount
+                + ", done=" + countSegments(SegmentState.DONE)
+                + ", failed=" + countSegments(SegmentState.FAILED) + "}";
+    }
+}
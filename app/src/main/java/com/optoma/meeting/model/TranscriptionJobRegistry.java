@@ -0,0 +1,24 @@
+package com.optoma.meeting.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The active transcription jobs by their job IDs.
+ */
+public class TranscriptionJobRegistry {
+
+    private final Map<String, TranscriptionJob> mJobs = new ConcurrentHashMap<>();
+
+    public void register(TranscriptionJob job) {
+        mJobs.put(job.jobId, job);
+    }
+
+    public TranscriptionJob get(String jobId) {
+        return mJobs.get(jobId);
+    }
+
+    public void remove(String jobId) {
+        mJobs.remove(jobId);
+    }
+}
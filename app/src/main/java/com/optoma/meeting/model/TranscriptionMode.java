@@ -0,0 +1,28 @@
+package com.optoma.meeting.model;
+
+/**
+ * How the segments of a job are transcribed.
+ */
+public enum TranscriptionMode {
+    // Upload each segment and poll the batch transcription.
+    BATCH,
+    // Stream each WAV segment to a session of the real-time speech service.
+    REAL_TIME,
+    // Generate the phrases from a script without the network, to profile the rest of the
+    // pipeline.
+    OFFLINE;
+
+    /**
+     * @return The mode of the name, or the default one if the name is unknown.
+     */
+    public static TranscriptionMode fromName(String name, TranscriptionMode defaultMode) {
+        if (name != null) {
+            for (TranscriptionMode mode : values()) {
+                if (mode.name().equalsIgnoreCase(name)) {
+                    return mode;
+                }
+            }
+        }
+        return defaultMode;
+    }
+}
@@ -0,0 +1,124 @@
+package com.optoma.meeting.network;
+
+import static com.optoma.meeting.BuildConfig.DEFAULT_ENDPOINTS_PROTOCAL;
+import static com.optoma.meeting.BuildConfig.STORAGE_ACCOUNT_KEY;
+import static com.optoma.meeting.BuildConfig.STORAGE_ACCOUNT_NAME;
+
+import android.util.Log;
+
+import com.microsoft.azure.storage.CloudStorageAccount;
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.blob.CloudBlobClient;
+import com.microsoft.azure.storage.blob.CloudBlobContainer;
+import com.microsoft.azure.storage.blob.CloudBlockBlob;
+import com.microsoft.azure.storage.blob.SharedAccessBlobPermissions;
+import com.microsoft.azure.storage.blob.SharedAccessBlobPolicy;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.security.InvalidKeyException;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The storage of the segments of one job.
+ * <p>
+ * The container of the job is created once before the first upload, and each segment is uploaded
+ * as the blob "&lt;job&gt;/&lt;part&gt;.&lt;ext&gt;". The container stays private, and the
+ * speech service reads a blob through its read-only SAS URL. Deleting the container removes all
+ * blobs of the job in one request.
+ */
+public class BlobUploadSession {
+
+    private static final String TAG = BlobUploadSession.class.getSimpleName();
+
+    private static final String CONTAINER_NAME_PREFIX = "audio";
+
+    // The transcription may wait in the queue of the service before it reads the blob.
+    private static final long SAS_EXPIRY_HOURS = 12;
+
+    private static volatile CloudBlobClient sBlobClient;
+    private static final Object lock = new Object();
+
+    private final String mJobId;
+    private final BlockUploader mBlockUploader;
+    private volatile CloudBlobContainer mContainer;
+
+    /**
+     * @param jobId         The ID of the job, lower case letters and digits only.
+     * @param blockUploader The uploader of the blocks of the segments.
+     */
+    public BlobUploadSession(String jobId, BlockUploader blockUploader) {
+        mJobId = jobId;
+        mBlockUploader = blockUploader;
+    }
+
+    public String getJobId() {
+        return mJobId;
+    }
+
+    /**
+     * Upload the segment and grant the read access to it.
+     *
+     * @return The SAS URL of the uploaded blob.
+     */
+    public String upload(File file, int partNumber, String extension)
+            throws URISyntaxException, StorageException, InvalidKeyException, IOException,
+            InterruptedException {
+        CloudBlockBlob blob = getContainer().getBlockBlobReference(
+                mJobId + "/" + partNumber + "." + extension);
+        mBlockUploader.upload(blob, file);
+
+        SharedAccessBlobPolicy policy = new SharedAccessBlobPolicy();
+        policy.setPermissions(EnumSet.of(SharedAccessBlobPermissions.READ));
+        policy.setSharedAccessExpiryTime(new Date(System.currentTimeMillis()
+                + TimeUnit.HOURS.toMillis(SAS_EXPIRY_HOURS)));
+        return blob.getUri() + "?" + blob.generateSharedAccessSignature(policy, null);
+    }
+
+    /**
+     * Delete all blobs of the job, also when they were uploaded before a restart of the service.
+     */
+    public void delete() throws URISyntaxException, StorageException, InvalidKeyException {
+        CloudBlobContainer container = mContainer;
+        if (container == null) {
+            container = getBlobClient().getContainerReference(CONTAINER_NAME_PREFIX + mJobId);
+        }
+        if (container.deleteIfExists()) {
+            Log.d(TAG, "delete# " + container.getName());
+        }
+    }
+
+    private CloudBlobContainer getContainer()
+            throws URISyntaxException, StorageException, InvalidKeyException {
+        if (mContainer == null) {
+            synchronized (this) {
+                if (mContainer == null) {
+                    // The container name must be lower case
+                    CloudBlobContainer container = getBlobClient().getContainerReference(
+                            CONTAINER_NAME_PREFIX + mJobId);
+                    container.createIfNotExists();
+                    Log.d(TAG, "getContainer# created " + container.getName());
+                    mContainer = container;
+                }
+            }
+        }
+        return mContainer;
+    }
+
+    private static CloudBlobClient getBlobClient() throws URISyntaxException, InvalidKeyException {
+        if (sBlobClient == null) {
+            synchronized (lock) {
+                if (sBlobClient == null) {
+                    CloudStorageAccount account = CloudStorageAccount.parse(
+                            DEFAULT_ENDPOINTS_PROTOCAL + STORAGE_ACCOUNT_NAME
+                                    + STORAGE_ACCOUNT_KEY);
+                    sBlobClient = account.createCloudBlobClient();
+                }
+            }
+        }
+        return sBlobClient;
+    }
+}
@@ -0,0 +1,288 @@
+package com.optoma.meeting.network;
+
+import android.util.Log;
+
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.blob.BlockEntry;
+import com.microsoft.azure.storage.blob.BlockListingFilter;
+import com.microsoft.azure.storage.blob.CloudBlockBlob;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Upload a file as the blocks of a block blob, so a failure only costs the blocks in flight.
+ * <p>
+ * The blocks are uploaded by {@link CloudBlockBlob#uploadBlock} on a shared pool, so the number of
+ * concurrent requests is bounded for all files. Every uploaded block is appended to a journal
+ * next to the other journals. Another upload of the same file and blob, after a failure or after
+ * a restart of the service, only sends the blocks that are missing from the journal and still
+ * uncommitted on the service. The blocks are committed in order by
+ * {@link CloudBlockBlob#commitBlockList} and the journal is deleted.
+ * <p>
+ * The uploader only depends on the blob, so it works with any endpoint of the connection string,
+ * including a local storage emulator.
+ */
+public class BlockUploader {
+
+    /**
+     * The calls to the block blob, so the resume can be driven without the service.
+     */
+    interface BlockBlob {
+        /**
+         * @return The path of the blob, "/&lt;container&gt;/&lt;blob&gt;".
+         */
+        String getPath();
+
+        void uploadBlock(String blockId, byte[] block) throws StorageException, IOException;
+
+        /**
+         * @return The IDs of the uploaded blocks that are not committed yet, empty if the blob
+         * does not exist.
+         */
+        Set<String> getUncommittedBlockIds() throws StorageException;
+
+        void commitBlockList(List<String> blockIds) throws StorageException;
+    }
+
+    private static final String TAG = BlockUploader.class.getSimpleName();
+
+    private static final String JOURNAL_EXTENSION = ".journal";
+
+    private final int mBlockSize;
+    private final File mJournalDir;
+    private final ExecutorService mExecutorService;
+
+    /**
+     * @param blockSize   The size of each block in bytes.
+     * @param parallelism The maximum number of blocks uploaded at the same time.
+     * @param journalDir  The directory of the journals, it should survive a restart.
+     */
+    public BlockUploader(int blockSize, int parallelism, File journalDir) {
+        mBlockSize = blockSize;
+        mJournalDir = journalDir;
+        mExecutorService = Executors.newFixedThreadPool(parallelism);
+    }
+
+    /**
+     * @throws IOException If the file is empty, a blob needs at least one block of data.
+     */
+    public void upload(CloudBlockBlob blob, File file)
+            throws StorageException, IOException, InterruptedException {
+        upload(new AzureBlockBlob(blob), file);
+    }
+
+    void upload(BlockBlob blob, File file)
+            throws StorageException, IOException, InterruptedException {
+        final long length = file.length();
+        if (length == 0) {
+            throw new IOException("Nothing to upload in " + file);
+        }
+        final int blockCount = (int) ((length + mBlockSize - 1) / mBlockSize);
+        // The header identifies the file, a journal of another version of it is ignored.
+        final String header = length + "," + mBlockSize + "," + file.lastModified();
+
+        File journal = getJournal(blob);
+        Set<String> uploadedBlockIds = readJournal(journal, header);
+        if (!uploadedBlockIds.isEmpty()) {
+            uploadedBlockIds.retainAll(blob.getUncommittedBlockIds());
+            Log.d(TAG, "upload# resume " + blob.getPath() + ", " + uploadedBlockIds.size() + "/"
+                    + blockCount + " blocks are uploaded");
+        }
+
+        List<String> blockList = new ArrayList<>(blockCount);
+        List<Future<?>> futures = new ArrayList<>();
+        try (FileOutputStream journalStream = openJournal(journal, header, uploadedBlockIds)) {
+            for (int i = 0; i < blockCount; i++) {
+                String blockId = createBlockId(i);
+                blockList.add(blockId);
+                if (uploadedBlockIds.contains(blockId)) {
+                    continue;
+                }
+                final long position = (long) i * mBlockSize;
+                final int size = (int) Math.min(mBlockSize, length - position);
+                futures.add(mExecutorService.submit(() -> {
+                    byte[] block = readBlock(file, position, size);
+                    blob.uploadBlock(blockId, block);
+                    synchronized (journalStream) {
+                        journalStream.write((blockId + "\n").getBytes(StandardCharsets.US_ASCII));
+                        // The block must not be skipped after a crash unless it is on the disk.
+                        journalStream.getFD().sync();
+                    }
+                    return null;
+                }));
+            }
+            awaitAll(futures);
+        }
+
+        blob.commitBlockList(blockList);
+        journal.delete();
+        Log.d(TAG, "upload# committed " + blob.getPath() + ", blocks=" + blockCount
+                + ", sent=" + futures.size());
+    }
+
+    public void shutdown() {
+        mExecutorService.shutdownNow();
+    }
+
+    private void awaitAll(List<Future<?>> futures)
+            throws StorageException, IOException, InterruptedException {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            // Stop the other blocks, the journal keeps the finished ones for the retry.
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof StorageException) {
+                throw (StorageException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            throw e;
+        }
+    }
+
+    private File getJournal(BlockBlob blob) {
+        return new File(mJournalDir,
+                blob.getPath().substring(1).replace('/', '_') + JOURNAL_EXTENSION);
+    }
+
+    private static Set<String> readJournal(File journal, String header) {
+        Set<String> blockIds = new HashSet<>();
+        if (!journal.exists()) {
+            return blockIds;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(journal))) {
+            if (!header.equals(reader.readLine())) {
+                return blockIds;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // A line cut by a crash is not a valid block ID and is never matched.
+                blockIds.add(line);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "readJournal# " + e);
+        }
+        return blockIds;
+    }
+
+    /**
+     * Rewrite the journal with the blocks that are confirmed, and keep it open for appending.
+     */
+    private FileOutputStream openJournal(File journal, String header,
+            Set<String> uploadedBlockIds) throws IOException {
+        if (!mJournalDir.exists() && !mJournalDir.mkdirs()) {
+            throw new IOException("Fail to create " + mJournalDir);
+        }
+        StringBuilder sb = new StringBuilder(header).append('\n');
+        for (String blockId : uploadedBlockIds) {
+            sb.append(blockId).append('\n');
+        }
+        FileOutputStream outputStream = new FileOutputStream(journal);
+        try {
+            outputStream.write(sb.toString().getBytes(StandardCharsets.US_ASCII));
+            outputStream.getFD().sync();
+        } catch (IOException e) {
+            outputStream.close();
+            throw e;
+        }
+        return outputStream;
+    }
+
+    private static byte[] readBlock(File file, long position, int size) throws IOException {
+        byte[] block = new byte[size];
+        ByteBuffer buffer = ByteBuffer.wrap(block);
+        try (FileInputStream inputStream = new FileInputStream(file)) {
+            FileChannel channel = inputStream.getChannel();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+            }
+        }
+        return block;
+    }
+
+    /**
+     * @return The ID of the block, all IDs of a blob must be Base64 of the same length.
+     */
+    private static String createBlockId(int index) {
+        return Base64.getEncoder().encodeToString(String.format(Locale.US, "block-%08d", index)
+                .getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static class AzureBlockBlob implements BlockBlob {
+
+        private final CloudBlockBlob mBlob;
+
+        AzureBlockBlob(CloudBlockBlob blob) {
+            mBlob = blob;
+        }
+
+        @Override
+        public String getPath() {
+            return mBlob.getUri().getPath();
+        }
+
+        @Override
+        public void uploadBlock(String blockId, byte[] block)
+                throws StorageException, IOException {
+            mBlob.uploadBlock(blockId, new ByteArrayInputStream(block), block.length);
+        }
+
+        @Override
+        public Set<String> getUncommittedBlockIds() throws StorageException {
+            Set<String> blockIds = new HashSet<>();
+            try {
+                for (BlockEntry entry : mBlob.downloadBlockList(BlockListingFilter.UNCOMMITTED,
+                        null, null, null)) {
+                    blockIds.add(entry.getId());
+                }
+            } catch (StorageException e) {
+                // The blob does not exist before its first block is uploaded.
+                if (e.getHttpStatusCode() != HttpURLConnection.HTTP_NOT_FOUND) {
+                    throw e;
+                }
+            }
+            return blockIds;
+        }
+
+        @Override
+        public void commitBlockList(List<String> blockIds) throws StorageException {
+            List<BlockEntry> blockList = new ArrayList<>(blockIds.size());
+            for (String blockId : blockIds) {
+                blockList.add(new BlockEntry(blockId));
+            }
+            mBlob.commitBlockList(blockList);
+        }
+    }
+}
@@ -3,15 +3,17 @@ package com.optoma.meeting.network;
 import com.optoma.meeting.BuildConfig;
 import com.optoma.meeting.model.TranscribeBean;
 import com.optoma.meeting.model.TranscribeBody;
-import com.optoma.meeting.model.TranscribeResult;
 
 import io.reactivex.Single;
+import okhttp3.ResponseBody;
 import retrofit2.Response;
 import retrofit2.http.Body;
 import retrofit2.http.GET;
 import retrofit2.http.Headers;
 import retrofit2.http.POST;
 import retrofit2.http.Path;
+import retrofit2.http.Query;
+import retrofit2.http.Streaming;
 import retrofit2.http.Url;
 
 /**
@@ -28,10 +30,19 @@ public interface CognitiveService {
     @GET("transcriptions/{id}")
     Single<Response<TranscribeBean>> getTranscriptionStatus(@Path("id") String id);
 
+    @Headers("Ocp-Apim-Subscription-Key: " + BuildConfig.SPEECH_SUBSCRPTION_KEY)
+    @GET("transcriptions")
+    Single<Response<TranscribeBean>> getTranscriptions(@Query("skip") int skip,
+            @Query("top") int top);
+
     @Headers("Ocp-Apim-Subscription-Key: " + BuildConfig.SPEECH_SUBSCRPTION_KEY)
     @GET("transcriptions/{files}/files")
     Single<Response<TranscribeBean>> getTranscriptionFiles(@Path("files") String files);
 
+    /**
+     * The result file is large, so it is streamed to the parser instead of being buffered.
+     */
+    @Streaming
     @GET
-    Single<Response<TranscribeResult>> getTranscriptionFilesFromUrl(@Url String url);
+    Single<Response<ResponseBody>> getTranscriptionFilesFromUrl(@Url String url);
 }
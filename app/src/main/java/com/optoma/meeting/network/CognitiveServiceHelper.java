@@ -1,5 +1,7 @@
 package com.optoma.meeting.network;
 
+import okhttp3.logging.HttpLoggingInterceptor;
+
 public class CognitiveServiceHelper {
     public static final String BASE_URL =
             "https://eastasia.api.cognitive.microsoft.com/speechtotext/v3.1/";
@@ -14,7 +16,9 @@ public class CognitiveServiceHelper {
         if (instance == null) {
             synchronized (lock) {
                 if (instance == null) {
-                    instance = NetworkServiceHelper.generateRetrofit(BASE_URL).create(CognitiveService.class);
+                    // The result files are streamed, so their bodies are not logged.
+                    instance = NetworkServiceHelper.generateRetrofit(BASE_URL,
+                            HttpLoggingInterceptor.Level.HEADERS).create(CognitiveService.class);
                 }
             }
         }
@@ -17,7 +17,14 @@ import retrofit2.converter.gson.GsonConverterFactory;
 public class NetworkServiceHelper {
 
    public static Retrofit generateRetrofit(String baseUrl) {
-      return generateRetrofit(baseUrl, generateOkHttpClient());
+      return generateRetrofit(baseUrl, generateOkHttpClient(HttpLoggingInterceptor.Level.BODY));
+   }
+
+   /**
+    * @param logLevel The level of the logs, BODY reads each whole body into memory to log it.
+    */
+   public static Retrofit generateRetrofit(String baseUrl, HttpLoggingInterceptor.Level logLevel) {
+      return generateRetrofit(baseUrl, generateOkHttpClient(logLevel));
    }
 
    public static Retrofit generateRetrofit(String baseUrl, OkHttpClient client) {
@@ -29,7 +36,7 @@ public class NetworkServiceHelper {
               .build();
    }
 
-   private static OkHttpClient generateOkHttpClient() {
+   private static OkHttpClient generateOkHttpClient(HttpLoggingInterceptor.Level logLevel) {
       // Create a custom interceptor
       Interceptor customInterceptor = new Interceptor() {
          @Override
@@ -41,7 +48,7 @@ public class NetworkServiceHelper {
 
       // Create a logging interceptor
       HttpLoggingInterceptor loggingInterceptor =
-              new HttpLoggingInterceptor().setLevel(HttpLoggingInterceptor.Level.BODY);
+              new HttpLoggingInterceptor().setLevel(logLevel);
 
       // Build OkHttpClient with the network interceptors
       return new OkHttpClient.Builder()
@@ -0,0 +1,251 @@
+package com.optoma.meeting.network;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.optoma.meeting.model.TranscribeResult;
+import com.optoma.meeting.model.Transcript;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Parse the result file of a batch transcription as a stream, into a {@link Transcript}.
+ * <p>
+ * The result is mostly the words of the phrases, and each of them has several numbers and texts
+ * that are never read. Only the speaker, the ticks and the display text of the best result of
+ * each phrase, and optionally its words, are kept. Everything else, like "lexical", "itn",
+ * "maskedITN", the other results and "combinedRecognizedPhrases", is skipped without being
+ * materialized.
+ * <p>
+ * A parser reuses its buffer of words, so it is not thread-safe.
+ */
+public class TranscribeResultParser {
+
+    private final boolean mKeepWords;
+
+    // The words of the current phrase, they are added after the timing of the phrase is read.
+    private int mWordSize;
+    private String[] mWords = new String[64];
+    private long[] mWordOffsetTicks = new long[64];
+    private long[] mWordDurationTicks = new long[64];
+
+    /**
+     * @param keepWords True to keep the words and their timing of each phrase.
+     */
+    public TranscribeResultParser(boolean keepWords) {
+        mKeepWords = keepWords;
+    }
+
+    public TranscribeResult parse(Reader source) throws IOException {
+        TranscribeResult result = new TranscribeResult(new Transcript(mKeepWords));
+        try (JsonReader reader = new JsonReader(source)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "source":
+                        result.source = nextString(reader);
+                        break;
+                    case "timestamp":
+                        result.timestamp = nextString(reader);
+                        break;
+                    case "recognizedPhrases":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            readPhrase(reader, result.phrases);
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+        }
+        return result;
+    }
+
+    /**
+     * Write the kept fields in the format of the service, so {@link #parse} can read them back.
+     */
+    public static void write(TranscribeResult result, Writer destination) throws IOException {
+        Transcript phrases = result.phrases;
+        JsonWriter writer = new JsonWriter(destination);
+        writer.beginObject();
+        writer.name("source").value(result.source);
+        writer.name("timestamp").value(result.timestamp);
+        writer.name("recognizedPhrases").beginArray();
+        for (int i = 0; i < phrases.size(); i++) {
+            writer.beginObject();
+            if (phrases.getSpeaker(i) != Transcript.UNKNOWN_SPEAKER) {
+                writer.name("speaker").value(phrases.getSpeaker(i));
+            }
+            writer.name("offsetInTicks").value(phrases.getOffsetTicks(i));
+            writer.name("durationInTicks").value(phrases.getDurationTicks(i));
+            writer.name("nBest").beginArray().beginObject();
+            writer.name("display").value(phrases.getText(i));
+            if (phrases.isKeepWords()) {
+                writer.name("words").beginArray();
+                for (int w = 0; w < phrases.getWordCount(i); w++) {
+                    writer.beginObject();
+                    writer.name("word").value(phrases.getWord(i, w));
+                    writer.name("offsetInTicks").value(phrases.getWordOffsetTicks(i, w));
+                    writer.name("durationInTicks").value(phrases.getWordDurationTicks(i, w));
+                    writer.endObject();
+                }
+                writer.endArray();
+            }
+            writer.endObject().endArray();
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
+    }
+
+    private void readPhrase(JsonReader reader, Transcript phrases) throws IOException {
+        int speaker = Transcript.UNKNOWN_SPEAKER;
+        long offsetTicks = 0;
+        long durationTicks = 0;
+        String display = "";
+        mWordSize = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "speaker":
+                    speaker = reader.peek() == JsonToken.NULL ? skipNull(reader, speaker)
+                            : reader.nextInt();
+                    break;
+                case "offsetInTicks":
+                    offsetTicks = nextTicks(reader);
+                    break;
+                case "durationInTicks":
+                    durationTicks = nextTicks(reader);
+                    break;
+                case "nBest":
+                    display = readBest(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        phrases.addPhrase(speaker, offsetTicks, durationTicks, display);
+        for (int i = 0; i < mWordSize; i++) {
+            phrases.addWord(mWords[i], mWordOffsetTicks[i], mWordDurationTicks[i]);
+        }
+    }
+
+    /**
+     * Read the best result, the first one, and skip the others.
+     *
+     * @return The display text of the best result.
+     */
+    private String readBest(JsonReader reader) throws IOException {
+        String display = "";
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return display;
+        }
+        reader.beginArray();
+        if (reader.hasNext()) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "display":
+                        String text = nextString(reader);
+                        display = text != null ? text : "";
+                        break;
+                    case "words":
+                        if (mKeepWords && reader.peek() != JsonToken.NULL) {
+                            readWords(reader);
+                        } else {
+                            reader.skipValue();
+                        }
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+        }
+        while (reader.hasNext()) {
+            reader.skipValue();
+        }
+        reader.endArray();
+        return display;
+    }
+
+    private void readWords(JsonReader reader) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String word = null;
+            long offsetTicks = 0;
+            long durationTicks = 0;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "word":
+                        word = nextString(reader);
+                        break;
+                    case "offsetInTicks":
+                        offsetTicks = nextTicks(reader);
+                        break;
+                    case "durationInTicks":
+                        durationTicks = nextTicks(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+            addWord(word, offsetTicks, durationTicks);
+        }
+        reader.endArray();
+    }
+
+    private void addWord(String word, long offsetTicks, long durationTicks) {
+        if (mWordSize == mWords.length) {
+            int capacity = mWordSize * 2;
+            mWords = Arrays.copyOf(mWords, capacity);
+            mWordOffsetTicks = Arrays.copyOf(mWordOffsetTicks, capacity);
+            mWordDurationTicks = Arrays.copyOf(mWordDurationTicks, capacity);
+        }
+        mWords[mWordSize] = word != null ? word : "";
+        mWordOffsetTicks[mWordSize] = offsetTicks;
+        mWordDurationTicks[mWordSize] = durationTicks;
+        mWordSize++;
+    }
+
+    private static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    /**
+     * The ticks may be written as a decimal number, like "1.23E7".
+     */
+    private static long nextTicks(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return 0;
+        }
+        return (long) reader.nextDouble();
+    }
+
+    private static int skipNull(JsonReader reader, int defaultValue) throws IOException {
+        reader.nextNull();
+        return defaultValue;
+    }
+}
@@ -0,0 +1,305 @@
+package com.optoma.meeting.network;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.optoma.meeting.model.TranscribeValue;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.ResponseBody;
+
+/**
+ * Poll the status of all active transcription jobs with one list request per tick.
+ * <p>
+ * Each job is expected to finish when its audio is processed at the real-time factor observed on
+ * the earlier jobs. The job is not polled before that, and then it is polled with an exponential
+ * backoff from a few seconds. The next tick is the earliest poll time of all jobs, with a random
+ * jitter, and the list request updates all jobs at once. A due job that is not on the listed page,
+ * e.g. when other clients of the account created many jobs after it, is then requested by its ID.
+ * All methods and callbacks run on the main thread.
+ */
+public class TranscriptionStatusPoller {
+
+    private static final String TAG = TranscriptionStatusPoller.class.getSimpleName();
+
+    private static final long MIN_DELAY_MS = 2000;
+    // A job is checked at least this often, even if it is expected to take longer.
+    private static final long MAX_DELAY_MS = 60_000;
+    // The backoff after the expected time is 2, 4, 8 and then 16 seconds.
+    private static final int MAX_BACKOFF_SHIFT = 3;
+    private static final double JITTER_RATIO = 0.2;
+
+    // The milliseconds of audio processed per millisecond, before any job is observed.
+    private static final double INITIAL_REAL_TIME_FACTOR = 5.0;
+    private static final double REAL_TIME_FACTOR_SMOOTHING = 0.3;
+
+    // The newest jobs are listed first, so the active ones are usually on the first page.
+    private static final int LIST_PAGE_SIZE = 100;
+
+    public interface Callback {
+        void onRunning(String transcriptionID, String status);
+
+        void onSucceeded(String transcriptionID);
+
+        void onFailed(String transcriptionID, String status);
+
+        void onPollError(String errorLog);
+    }
+
+    private static class PolledJob {
+        final long createdTime;
+        final long audioDurationMs;
+        final long expectedDoneTime;
+        long nextPollTime;
+        int backoffCount;
+        String status;
+
+        PolledJob(long createdTime, long audioDurationMs, long expectedDoneTime) {
+            this.createdTime = createdTime;
+            this.audioDurationMs = audioDurationMs;
+            this.expectedDoneTime = expectedDoneTime;
+        }
+    }
+
+    private final Callback mCallback;
+    private final Map<String, PolledJob> mJobs = new HashMap<>();
+    private final Random mRandom = new Random();
+    private final CompositeDisposable mCompositeDisposable = new CompositeDisposable();
+
+    private Disposable mTimer;
+    private boolean mRequestInFlight;
+    private double mRealTimeFactor = INITIAL_REAL_TIME_FACTOR;
+    private int mRequestCount;
+
+    public TranscriptionStatusPoller(Callback callback) {
+        mCallback = callback;
+    }
+
+    /**
+     * Start polling the job until it succeeds or fails.
+     *
+     * @param audioDurationMs The duration of the audio of the job.
+     */
+    public void track(String transcriptionID, long audioDurationMs) {
+        long now = SystemClock.elapsedRealtime();
+        PolledJob job = new PolledJob(now, audioDurationMs,
+                now + (long) (audioDurationMs / mRealTimeFactor));
+        planNextPoll(job, now);
+        mJobs.put(transcriptionID, job);
+        Log.d(TAG, "track# " + transcriptionID + ", audio=" + audioDurationMs
+                + "ms, expected in " + (job.expectedDoneTime - now) + "ms");
+        scheduleNextTick();
+    }
+
+    public void stop() {
+        mJobs.clear();
+        mCompositeDisposable.clear();
+        mTimer = null;
+        mRequestInFlight = false;
+    }
+
+    /**
+     * @return The number of the status requests so far.
+     */
+    public int getRequestCount() {
+        return mRequestCount;
+    }
+
+    private void scheduleNextTick() {
+        if (mTimer != null) {
+            mTimer.dispose();
+            mTimer = null;
+        }
+        if (mJobs.isEmpty() || mRequestInFlight) {
+            return;
+        }
+        long nextPollTime = Long.MAX_VALUE;
+        for (PolledJob job : mJobs.values()) {
+            nextPollTime = Math.min(nextPollTime, job.nextPollTime);
+        }
+        long delay = Math.max(0, nextPollTime - SystemClock.elapsedRealtime());
+        mTimer = Completable.timer(delay, TimeUnit.MILLISECONDS)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(this::poll);
+        mCompositeDisposable.add(mTimer);
+    }
+
+    private void poll() {
+        mTimer = null;
+        mRequestInFlight = true;
+        mRequestCount++;
+        mCompositeDisposable.add(
+                CognitiveServiceHelper.getInstance()
+                        .getTranscriptions(0, LIST_PAGE_SIZE)
+                        .subscribeOn(Schedulers.io())
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .timeout(10, TimeUnit.SECONDS)
+                        .subscribe(response -> {
+                            if (response.isSuccessful() && response.body().values != null) {
+                                List<String> unlistedIDs = onStatusListed(
+                                        response.body().values);
+                                if (!unlistedIDs.isEmpty()) {
+                                    pollEach(unlistedIDs);
+                                    return;
+                                }
+                            } else {
+                                ResponseBody errorBody = response.errorBody();
+                                if (errorBody != null) {
+                                    mCallback.onPollError("errorMessage: " +
+                                            NetworkServiceHelper.generateErrorToastContent(
+                                                    errorBody));
+                                }
+                                backOffDueJobs();
+                            }
+                            mRequestInFlight = false;
+                            scheduleNextTick();
+                        }, throwable -> {
+                            mRequestInFlight = false;
+                            Log.w(TAG, "fail to getTranscriptions, %s", throwable);
+                            backOffDueJobs();
+                            scheduleNextTick();
+                        }));
+    }
+
+    /**
+     * @return The due jobs that are not on the listed page.
+     */
+    private List<String> onStatusListed(List<TranscribeValue> values) {
+        Set<String> listedIDs = new HashSet<>();
+        for (TranscribeValue value : values) {
+            String transcriptionID = getTranscriptionID(value.self);
+            listedIDs.add(transcriptionID);
+            onStatus(transcriptionID, value.status);
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        List<String> unlistedIDs = new ArrayList<>();
+        for (Map.Entry<String, PolledJob> entry : mJobs.entrySet()) {
+            if (entry.getValue().nextPollTime <= now && !listedIDs.contains(entry.getKey())) {
+                unlistedIDs.add(entry.getKey());
+            }
+        }
+        if (unlistedIDs.isEmpty()) {
+            // The finished jobs are removed, plan the next poll of the rest.
+            backOffDueJobs();
+        }
+        return unlistedIDs;
+    }
+
+    /**
+     * Request the status of each job, then plan the next poll of all due jobs.
+     */
+    private void pollEach(List<String> transcriptionIDs) {
+        List<Completable> requests = new ArrayList<>();
+        for (String transcriptionID : transcriptionIDs) {
+            mRequestCount++;
+            requests.add(CognitiveServiceHelper.getInstance()
+                    .getTranscriptionStatus(transcriptionID)
+                    .subscribeOn(Schedulers.io())
+                    .timeout(10, TimeUnit.SECONDS)
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .doOnSuccess(response -> {
+                        if (response.isSuccessful() && response.body() != null) {
+                            onStatus(transcriptionID, response.body().status);
+                        } else if (response.code() == HttpURLConnection.HTTP_NOT_FOUND) {
+                            // The job is deleted, so it will never succeed.
+                            if (mJobs.remove(transcriptionID) != null) {
+                                mCallback.onFailed(transcriptionID, "NotFound");
+                            }
+                        } else {
+                            ResponseBody errorBody = response.errorBody();
+                            if (errorBody != null) {
+                                mCallback.onPollError("errorMessage: " +
+                                        NetworkServiceHelper.generateErrorToastContent(
+                                                errorBody));
+                            }
+                        }
+                    })
+                    .ignoreElement()
+                    .doOnError(throwable -> Log.w(TAG, "fail to getTranscriptionStatus of "
+                            + transcriptionID + ", " + throwable))
+                    .onErrorComplete());
+        }
+        mCompositeDisposable.add(Completable.merge(requests)
+                .subscribe(() -> {
+                    mRequestInFlight = false;
+                    backOffDueJobs();
+                    scheduleNextTick();
+                }));
+    }
+
+    private void onStatus(String transcriptionID, String status) {
+        PolledJob job = mJobs.get(transcriptionID);
+        if (job == null) {
+            return;
+        }
+        if ("Succeeded".equalsIgnoreCase(status)) {
+            mJobs.remove(transcriptionID);
+            updateRealTimeFactor(job, SystemClock.elapsedRealtime());
+            mCallback.onSucceeded(transcriptionID);
+        } else if ("Failed".equalsIgnoreCase(status)) {
+            mJobs.remove(transcriptionID);
+            mCallback.onFailed(transcriptionID, status);
+        } else if (status != null && !status.equals(job.status)) {
+            job.status = status;
+            mCallback.onRunning(transcriptionID, status);
+        }
+    }
+
+    private void backOffDueJobs() {
+        long now = SystemClock.elapsedRealtime();
+        List<PolledJob> dueJobs = new ArrayList<>();
+        for (PolledJob job : mJobs.values()) {
+            if (job.nextPollTime <= now) {
+                dueJobs.add(job);
+            }
+        }
+        for (PolledJob job : dueJobs) {
+            planNextPoll(job, now);
+        }
+    }
+
+    private void planNextPoll(PolledJob job, long now) {
+        long delay;
+        if (job.expectedDoneTime - now > MIN_DELAY_MS) {
+            delay = job.expectedDoneTime - now;
+        } else {
+            delay = MIN_DELAY_MS << Math.min(job.backoffCount++, MAX_BACKOFF_SHIFT);
+        }
+        delay = Math.min(delay, MAX_DELAY_MS);
+        // The jitter spreads the polls of the jobs that are expected at the same time.
+        delay += (long) (delay * JITTER_RATIO * (2 * mRandom.nextDouble() - 1));
+        job.nextPollTime = now + Math.max(delay, MIN_DELAY_MS);
+    }
+
+    private void updateRealTimeFactor(PolledJob job, long now) {
+        long elapsed = now - job.createdTime;
+        if (elapsed <= 0 || job.audioDurationMs <= 0) {
+            return;
+        }
+        double sample = (double) job.audioDurationMs / elapsed;
+        mRealTimeFactor += REAL_TIME_FACTOR_SMOOTHING * (sample - mRealTimeFactor);
+        Log.d(TAG, "updateRealTimeFactor# sample=" + sample + ", factor=" + mRealTimeFactor);
+    }
+
+    /**
+     * @return The ID at the end of the URL of the job, e.g. ".../transcriptions/{id}".
+     */
+    private static String getTranscriptionID(String self) {
+        return self != null ? self.substring(self.lastIndexOf('/') + 1) : "";
+    }
+}
@@ -6,9 +6,9 @@ import android.content.Context;
 import android.util.Log;
 
 import com.optoma.meeting.LogTextCallback;
+import com.optoma.meeting.util.MeetingDocumentWriter;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Map;
@@ -41,16 +41,14 @@ public class SaveTextToFilePresenter extends BasicPresenter {
 
         mCompositeDisposable.add(
                 Completable.fromAction(() -> {
-                            try {
-                                FileOutputStream outputStream = new FileOutputStream(outputFile);
-
+                            try (MeetingDocumentWriter writer =
+                                         MeetingDocumentWriter.open(outputFile)) {
                                 StringBuilder toSummary = new StringBuilder();
                                 for (String text : textListToSave) {
-                                    outputStream.write(text.getBytes());
-                                    outputStream.write("\n".getBytes());
+                                    writer.append(text).append("\n");
                                     toSummary.append("{").append(text).append("}, ");
                                 }
-                                outputStream.close();
+                                writer.commit();
                                 // Only one text file to summarize
                                 partNumberToSummary.put(0, toSummary.toString());
 
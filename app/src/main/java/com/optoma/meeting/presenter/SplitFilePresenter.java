@@ -1,131 +1,489 @@
 package com.optoma.meeting.presenter;
 
 import static com.optoma.meeting.util.FileUtil.createNewAudioFilePath;
+import static com.optoma.meeting.util.FileUtil.createNewAudioFilePathPattern;
+import static com.optoma.meeting.util.FileUtil.extractPartNumber;
+import static com.optoma.meeting.util.FileUtil.resolveAudioFilePathPattern;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
-import com.arthenica.ffmpegkit.FFmpegKit;
+import com.arthenica.ffmpegkit.FFmpegSession;
 import com.arthenica.ffmpegkit.ReturnCode;
 import com.arthenica.ffmpegkit.SessionState;
 import com.optoma.meeting.BuildConfig;
 import com.optoma.meeting.LogTextCallback;
 import com.optoma.meeting.R;
+import com.optoma.meeting.model.OffsetRemapTable;
+import com.optoma.meeting.model.SegmentCodec;
+import com.optoma.meeting.model.SegmentPlan;
+import com.optoma.meeting.model.SegmentReady;
 import com.optoma.meeting.util.AudioUtil;
+import com.optoma.meeting.util.FFmpegSessionScheduler;
+import com.optoma.meeting.util.FileStabilityDetector;
+import com.optoma.meeting.util.GrowingPcmFile;
+import com.optoma.meeting.util.SilenceDetector;
+import com.optoma.meeting.util.SilenceTrimmer;
+import com.optoma.meeting.util.WavSlicer;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.processors.FlowableProcessor;
+import io.reactivex.processors.ReplayProcessor;
+import io.reactivex.schedulers.Schedulers;
 
 public class SplitFilePresenter extends BasicPresenter {
 
+    // The segment muxer logs this line in verbose level when it starts writing a new segment.
+    private static final Pattern SEGMENT_OPENING_PATTERN =
+            Pattern.compile("Opening '(.+)' for writing");
+
+    // The sample rate of the segments, and of the PCM for the silence analysis.
+    private static final int SAMPLE_RATE = 8000;
+
+    // The silence kept at both ends of a removed silence, so the words next to it are not cut.
+    private static final long TRIM_PADDING_MS = 500;
+
+    // The range of the speed-up that keeps the speech recognizable.
+    private static final float MIN_TEMPO_FACTOR = 1.0f;
+    private static final float MAX_TEMPO_FACTOR = 2.0f;
+
     private final SplitFileCallback mSplitFileCallback;
+    private final boolean mSinglePassSplit;
+    private final int mSplitToleranceSeconds;
+    private final int mSilenceThresholdDb;
+    private final int mTrimSilenceSeconds;
+    private final FileStabilityDetector mFileStabilityDetector;
+    private final FFmpegSessionScheduler mFFmpegSessionScheduler;
+
+    // The stream of the next split, it is taken by the split when it starts.
+    private FlowableProcessor<SegmentReady> mSegmentProcessor = ReplayProcessor.create();
+    // The splits that still read their inputs.
+    private final Set<SplitJob> mRunningSplits =
+            Collections.newSetFromMap(new ConcurrentHashMap<>());
 
     public interface SplitFileCallback extends ErrorCallback {
         void onFileSplit(List<String> newFileAbsolutePathList);
     }
 
+    /**
+     * The options and the state of one split. Each split has its own, so the splits that run
+     * at the same time do not overwrite each other.
+     */
+    private static class SplitJob {
+        final FlowableProcessor<SegmentReady> segmentProcessor;
+        // The intermediate files and the segments, they are deleted with the job.
+        final File workDir;
+        final SegmentCodec segmentCodec;
+        final long segmentOverlapMs;
+        final float tempoFactor;
+        // The file that is split, the trimmed file if the silences are trimmed.
+        String splitFilePath;
+        File trimmedFile;
+        OffsetRemapTable offsetRemapTable = OffsetRemapTable.identity(0);
+
+        SplitJob(FlowableProcessor<SegmentReady> segmentProcessor, File workDir,
+                SegmentCodec segmentCodec, long segmentOverlapMs, float tempoFactor) {
+            this.segmentProcessor = segmentProcessor;
+            this.workDir = workDir;
+            this.segmentCodec = segmentCodec;
+            this.segmentOverlapMs = segmentOverlapMs;
+            this.tempoFactor = tempoFactor;
+        }
+
+        /**
+         * @return The path the segment paths are made from, the segments are named after the
+         * split file and written in the work directory.
+         */
+        String getSegmentBasePath() {
+            return new File(workDir, new File(splitFilePath).getName()).getPath();
+        }
+
+        /**
+         * @return Whether the segments are the PCM in the real time, which can be copied from
+         * the PCM of the input.
+         */
+        boolean isCopyable() {
+            return segmentCodec == SegmentCodec.PCM && tempoFactor == 1.0f;
+        }
+
+        /**
+         * @return The audio filter to speed up the segments without changing the pitch.
+         */
+        String getTempoFilter() {
+            return tempoFactor != 1.0f
+                    ? String.format(Locale.US, "-af atempo=%.3f ", tempoFactor)
+                    : "";
+        }
+
+        /**
+         * @return The duration of the segment, including the overlap into the next segment.
+         */
+        long getSegmentDurationMs(SegmentPlan plan, int partNumber) {
+            long durationMs = plan.getDurationMs(partNumber);
+            if (partNumber + 1 < plan.getSegmentCount()) {
+                durationMs = Math.min(durationMs + segmentOverlapMs,
+                        plan.getTotalDurationMs() - plan.getStartMs(partNumber));
+            }
+            return durationMs;
+        }
+    }
+
     public SplitFilePresenter(Context context, LogTextCallback callback,
             SplitFileCallback splitFileCallback) {
         super(context, callback, splitFileCallback);
         TAG = SplitFilePresenter.class.getSimpleName();
         mSplitFileCallback = splitFileCallback;
+        mSinglePassSplit = context.getResources().getBoolean(R.bool.single_pass_split);
+        mSplitToleranceSeconds = context.getResources().getInteger(
+                R.integer.split_tolerance_seconds);
+        mSilenceThresholdDb = context.getResources().getInteger(R.integer.silence_threshold_db);
+        mTrimSilenceSeconds = context.getResources().getInteger(R.integer.trim_silence_seconds);
+        mFileStabilityDetector = new FileStabilityDetector(
+                context.getResources().getInteger(R.integer.file_stable_window_ms),
+                context.getResources().getInteger(R.integer.file_ready_timeout_seconds) * 1000L);
+        mFFmpegSessionScheduler = FFmpegSessionScheduler.getInstance(context);
     }
 
-    public void startSplitFile(String inputAudioFilePath) {
-        // TODO remove sleep and use other to check whether file is ready
-        try {
-            Thread.sleep(5_000);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+    @Override
+    public void destroy() {
+        super.destroy();
+        mFileStabilityDetector.destroy();
+    }
 
+    /**
+     * Create the stream of the next split job. Each segment is emitted as soon as it is written, so
+     * the following stages can work on it while the later segments are still being cut. The stream
+     * completes after the last segment and fails if the split fails.
+     */
+    public Flowable<SegmentReady> prepareSegmentStream() {
+        mSegmentProcessor = ReplayProcessor.<SegmentReady>create().toSerialized();
+        return mSegmentProcessor;
+    }
+
+    /**
+     * @return Whether a split is still reading its input, which may be in the cache.
+     */
+    public boolean isSplitting() {
+        return !mRunningSplits.isEmpty();
+    }
+
+    /**
+     * @param inputAudioFilePath The audio file to split.
+     * @param workDir            The directory of the intermediate files and the segments of the
+     *                           job.
+     * @param segmentCodec       The codec of the segments of this job.
+     * @param segmentOverlapMs   How long each segment extends into the next one, 0 for none.
+     * @param tempoFactor        How much faster the segments are played, 1.0 for the real time.
+     */
+    public void startSplitFile(String inputAudioFilePath, File workDir,
+            SegmentCodec segmentCodec, long segmentOverlapMs, float tempoFactor) {
         Log.d(TAG, "startSplitFile +++");
-        Log.d(TAG, "inputAudioFilePath=" + inputAudioFilePath);
+        Log.d(TAG, "inputAudioFilePath=" + inputAudioFilePath + ", segmentCodec=" + segmentCodec
+                + ", segmentOverlapMs=" + segmentOverlapMs + ", tempoFactor=" + tempoFactor);
+        final SplitJob split = new SplitJob(mSegmentProcessor, workDir, segmentCodec,
+                Math.max(0, segmentOverlapMs),
+                Math.max(MIN_TEMPO_FACTOR, Math.min(tempoFactor, MAX_TEMPO_FACTOR)));
+        mRunningSplits.add(split);
         if (BuildConfig.DEBUG) {
             mLogTextCallback.onLogReceived("inputAudioFilePath:" + inputAudioFilePath);
         }
 
+        if (!workDir.isDirectory() && !workDir.mkdirs()) {
+            performSplitError(split, "errorMessage: fail to create " + workDir);
+            Log.d(TAG, "endSplitFile ---");
+            return;
+        }
         if (inputAudioFilePath != null) {
-            calculateAndSplit(inputAudioFilePath);
+            // Wait until the file is completely written.
+            try {
+                mFileStabilityDetector.awaitStable(new File(inputAudioFilePath)).get();
+            } catch (ExecutionException | InterruptedException e) {
+                String errorLog = "errorMessage: the input file is not ready. " + e.getMessage();
+                performSplitError(split, errorLog);
+                Log.d(TAG, "endSplitFile ---");
+                return;
+            }
+            calculateAndSplit(split, inputAudioFilePath);
         } else {
             String errorLog = "File path error!";
+            mRunningSplits.remove(split);
             mErrorCallback.onError(errorLog);
+            split.segmentProcessor.onError(new IllegalArgumentException(errorLog));
             Log.d(TAG, "endSplitFile ---");
         }
     }
 
-    private void calculateAndSplit(String inputFilePath) {
+    private void calculateAndSplit(SplitJob split, String inputFilePath) {
         // 1. get duration
+        long durationMs = AudioUtil.probeDurationMs(inputFilePath);
+        if (durationMs <= 0) {
+            String errorLog = "errorMessage: fail to get the duration of " + inputFilePath;
+            performSplitError(split, errorLog);
+            return;
+        }
+        Log.d(TAG, "duration=" + durationMs + "ms");
+
         // 2. calculate split number
-        FFmpegKit.executeAsync("-i " + inputFilePath, originalSession -> {
-            String output = originalSession.getAllLogsAsString();
-            String[] lines = output.split(System.lineSeparator());
-            for (String line : lines) {
-                if (line.contains("Duration:")) {
-                    String durationLine = line.trim();
-                    int startIndex = durationLine.indexOf("Duration:") + 10;
-                    int endIndex = durationLine.indexOf(",");
-                    String stringDuration = durationLine.substring(startIndex, endIndex).trim();
-                    @SuppressLint("SimpleDateFormat")
-                    SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss.SSS");
-                    try {
-                        Calendar duration = Calendar.getInstance();
-                        duration.setTime(sdf.parse(stringDuration));
-                        Log.d(TAG, "duration=" + calendarToString(duration));
-
-                        splitAndSaveFiles(duration, inputFilePath);
-                    } catch (ParseException | NullPointerException e) {
-                        String errorLog = "errorMessage: " + e.getMessage();
-                        performError(errorLog);
+        planAndSplit(split, durationMs, inputFilePath);
+    }
+
+    private void planAndSplit(SplitJob split, long durationMs, String inputFilePath) {
+        mCompositeDisposable.add(
+                Completable.fromAction(() -> {
+                            split.splitFilePath = trimSilence(split, durationMs, inputFilePath);
+                            long splitDurationMs = split.offsetRemapTable.getTrimmedDurationMs();
+                            if (needsSilenceAnalysis(splitDurationMs)
+                                    && !isPcmWav(split.splitFilePath)) {
+                                // Scan the input while it is decoded for the split, so it is
+                                // decoded only once and the first segments are not delayed.
+                                new DecodingSplit(split).run();
+                            } else {
+                                splitAndSaveFiles(split,
+                                        planSegments(splitDurationMs, split.splitFilePath));
+                            }
+                        })
+                        .subscribeOn(Schedulers.io())
+                        .subscribe(() -> {
+                        }, throwable -> performSplitError(split,
+                                "errorMessage: planAndSplit error. " + throwable)));
+    }
+
+    /**
+     * Remove the long silences of the input into a WAV file in the cache, and keep the table that
+     * maps it back to the input.
+     *
+     * @return The file to split, it is the input itself if nothing is trimmed.
+     */
+    private String trimSilence(SplitJob split, long durationMs, String inputFilePath) {
+        split.offsetRemapTable = OffsetRemapTable.identity(durationMs);
+        split.trimmedFile = null;
+        if (mTrimSilenceSeconds <= 0) {
+            return inputFilePath;
+        }
+
+        final long startWallTime = SystemClock.elapsedRealtime();
+        String fileName = new File(inputFilePath).getName();
+        int dotIndex = fileName.lastIndexOf('.');
+        File trimmedFile = null;
+        try (WavSlicer slicer = openWavSlicer(inputFilePath)) {
+            // Each job has its own file, so the concurrent jobs do not overwrite each other.
+            trimmedFile = File.createTempFile(
+                    (dotIndex > 0 ? fileName.substring(0, dotIndex) : fileName) + "_trimmed_",
+                    ".wav", split.workDir);
+            OffsetRemapTable table;
+            try (RandomAccessFile output = new RandomAccessFile(trimmedFile, "rw")) {
+                if (slicer != null) {
+                    table = createSilenceTrimmer(slicer.getSampleRate())
+                            .trim(slicer.openPcmChannel(), output.getChannel());
+                } else {
+                    // The input is trimmed while it is decoded.
+                    try (GrowingPcmFile pcmFile = startDecoding(split, inputFilePath)) {
+                        table = createSilenceTrimmer(SAMPLE_RATE)
+                                .trim(pcmFile.openChannel(), output.getChannel());
                     }
-                } else if (line.contains("Permission Denied")) {
-                    Log.w(TAG, "error=" + line);
-                    mLogTextCallback.onLogReceived("error=" + line);
                 }
             }
+            Log.d(TAG, "trimSilence# " + table + " in "
+                    + (SystemClock.elapsedRealtime() - startWallTime) + "ms");
+
+            // A decoded input is still split from the trimmed file, so it is not decoded again.
+            if (slicer != null && table.getSpanCount() == 1) {
+                trimmedFile.delete();
+                return inputFilePath;
+            }
+            split.offsetRemapTable = table;
+            split.trimmedFile = trimmedFile;
+            return trimmedFile.getAbsolutePath();
+        } catch (IOException e) {
+            Log.w(TAG, "trimSilence# split the input without trimming. " + e);
+            if (trimmedFile != null) {
+                trimmedFile.delete();
+            }
+            return inputFilePath;
+        }
+    }
+
+    private SilenceTrimmer createSilenceTrimmer(int sampleRate) {
+        return new SilenceTrimmer(sampleRate, mTrimSilenceSeconds * 1000L, TRIM_PADDING_MS,
+                mSilenceThresholdDb);
+    }
+
+    /**
+     * Start decoding the input into the raw PCM in a new file of the work directory. The file can
+     * be read while it is written, and is deleted when the returned one is closed.
+     */
+    private GrowingPcmFile startDecoding(SplitJob split, String inputFilePath)
+            throws IOException {
+        File file = File.createTempFile("decoded_", ".pcm", split.workDir);
+        GrowingPcmFile pcmFile;
+        try {
+            pcmFile = new GrowingPcmFile(file, SAMPLE_RATE);
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+        String command = "-y -i " + inputFilePath +
+                " -ar " + SAMPLE_RATE + " -ac 1 -f s16le " +
+                file.getAbsolutePath();
+        mFFmpegSessionScheduler.executeAsync(command, 0, session -> {
+            Log.d(TAG, "startDecoding# exited with state " + session.getState() + " and rc "
+                    + session.getReturnCode());
+            pcmFile.finish(ReturnCode.isSuccess(session.getReturnCode()));
         });
+        return pcmFile;
+    }
+
+    /**
+     * @return Whether the cut points are moved into the nearby silence, which needs the PCM of
+     * the whole input.
+     */
+    private boolean needsSilenceAnalysis(long durationMs) {
+        return mSplitToleranceSeconds > 0 && durationMs > getSegmentDurationMs();
+    }
+
+    private long getSegmentDurationMs() {
+        return mEachSegmentDuration * 60 * 1000L;
     }
 
-    private void splitAndSaveFiles(Calendar duration, String inputFilePath) {
+    /**
+     * Plan the cut points. With a tolerance window, they are moved into the nearby silence so that
+     * no word is cut in the middle, otherwise they are the exact multiples of the segment duration.
+     * The input to scan must be a PCM WAV, the others are scanned by {@link DecodingSplit}.
+     */
+    private SegmentPlan planSegments(long durationMs, String inputFilePath) {
+        long segmentDurationMs = getSegmentDurationMs();
+        if (!needsSilenceAnalysis(durationMs)) {
+            return SegmentPlan.fixed(durationMs, segmentDurationMs);
+        }
+
+        final long startWallTime = SystemClock.elapsedRealtime();
+        try (WavSlicer slicer = openWavSlicer(inputFilePath)) {
+            if (slicer == null) {
+                throw new IOException("Not a PCM WAV " + inputFilePath);
+            }
+            // The input is already PCM, so scan it without decoding.
+            SegmentPlan plan = createSilenceDetector(slicer.getSampleRate(), segmentDurationMs)
+                    .plan(slicer.openPcmChannel());
+            Log.d(TAG, "planSegments# " + plan + " in "
+                    + (SystemClock.elapsedRealtime() - startWallTime) + "ms");
+            return plan;
+        } catch (IOException e) {
+            Log.w(TAG, "planSegments# fall back to the fixed cut points. " + e);
+            return SegmentPlan.fixed(durationMs, segmentDurationMs);
+        }
+    }
+
+    private SilenceDetector createSilenceDetector(int sampleRate, long segmentDurationMs) {
+        return new SilenceDetector(sampleRate, segmentDurationMs,
+                mSplitToleranceSeconds * 1000L, mSilenceThresholdDb);
+    }
+
+    private void splitAndSaveFiles(SplitJob split, SegmentPlan plan) {
         // Split the large file into some of the small files.
-        int splitNumber = AudioUtil.calculateSegments(duration, mEachSegmentDuration);
+        int splitNumber = plan.getSegmentCount();
         if (splitNumber <= 0) {
             String errorLog = "errorMessage: SplitAndSaveFiles error. splitNumber=" + splitNumber;
-            performError(errorLog);
+            performSplitError(split, errorLog);
             return;
         }
         Log.d(TAG, "Split to : " + splitNumber + " files.");
 
-        // Create a calendar that saves each segment duration by minutes.
-        Calendar eachSegmentDuration = Calendar.getInstance();
-        eachSegmentDuration.set(0, 0, 0, 0, mEachSegmentDuration, 0);
+        // Only the PCM segments in the real time can be copied from the input. The input must
+        // also have the sample rate that FFmpeg gives the other segments.
+        WavSlicer slicer = split.isCopyable() ? openWavSlicer(split.splitFilePath) : null;
+        if (slicer != null && slicer.getSampleRate() != SAMPLE_RATE) {
+            closeQuietly(slicer);
+            slicer = null;
+        }
+        if (slicer != null) {
+            splitByCopy(split, plan, slicer);
+        } else if (mSinglePassSplit && split.segmentOverlapMs == 0) {
+            // The segment muxer can not write overlapped segments.
+            splitInSinglePass(split, plan);
+        } else {
+            splitBySeeking(split, plan);
+        }
+    }
+
+    /**
+     * Copy the byte ranges of an input that is already in the target format. Nothing is decoded,
+     * and the segments are completed in order.
+     */
+    private void splitByCopy(SplitJob split, SegmentPlan plan, WavSlicer slicer) {
+        final long startWallTime = SystemClock.elapsedRealtime();
+        final long startCpuTime = Process.getElapsedCpuTime();
 
+        final int splitNumber = plan.getSegmentCount();
         List<String> newFileAbsolutePathList = new CopyOnWriteArrayList<>();
-        for (int i = 0; i < splitNumber; i++) {
-            String newFileAbsolutePath = createNewAudioFilePath(inputFilePath, i);
+        try (WavSlicer wavSlicer = slicer) {
+            for (int i = 0; i < splitNumber; i++) {
+                String newFileAbsolutePath = createNewAudioFilePath(split.getSegmentBasePath(), i);
+                wavSlicer.writeSegment(new File(newFileAbsolutePath), plan.getStartMs(i),
+                        split.getSegmentDurationMs(plan, i));
+                onSegmentCompleted(split, plan, newFileAbsolutePathList, newFileAbsolutePath);
+            }
+        } catch (IOException e) {
+            String errorLog = "errorMessage: splitByCopy error. " + e.getMessage();
+            performSplitError(split, errorLog);
+            return;
+        }
+        completeSplit(split, "copy", newFileAbsolutePathList, startWallTime, startCpuTime);
+    }
 
-            Calendar startTime = Calendar.getInstance();
-            startTime.set(0, 0, 0, 0, i * mEachSegmentDuration, 0);
+    /**
+     * Run one FFmpeg session for each segment. Every session seeks and decodes the same input, so
+     * a long recording ends up with many concurrent decoders.
+     */
+    private void splitBySeeking(SplitJob split, SegmentPlan plan) {
+        final long startWallTime = SystemClock.elapsedRealtime();
+        final long startCpuTime = Process.getElapsedCpuTime();
 
-            // The format is like "00:23:45"
-            String stringStartTime = calendarToString(startTime);
+        final int splitNumber = plan.getSegmentCount();
+        List<String> newFileAbsolutePathList = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < splitNumber; i++) {
+            String newFileAbsolutePath = createNewAudioFilePath(split.getSegmentBasePath(), i,
+                    split.segmentCodec.extension);
+
+            // The format is like "1425.340"
+            String stringStartTime = millisToSeconds(plan.getStartMs(i));
             Log.d(TAG, "splitAndSaveFiles# filePartNumber=" + i + ", startTime=" + stringStartTime);
 
-            // The format is like "00:08:00"
-            String stringEachDuration = calendarToString(eachSegmentDuration);
+            // The last segment is read until the end of the input. The duration is of the
+            // output, so it is shortened by the speed-up.
+            String stringEachDuration = i + 1 < splitNumber
+                    ? " -t " + millisToSeconds(
+                    (long) (split.getSegmentDurationMs(plan, i) / split.tempoFactor))
+                    : "";
 
             String command = "-y -ss " + stringStartTime +
-                    " -i " + inputFilePath +
-                    " -t " + stringEachDuration +
-                    " -ar 8000 -ac 1 -c:a pcm_s16le "
-                    + newFileAbsolutePath;
+                    " -i " + split.splitFilePath +
+                    stringEachDuration +
+                    " -ar " + SAMPLE_RATE + " -ac 1 " +
+                    split.getTempoFilter() +
+                    split.segmentCodec.encoderOptions + " " +
+                    newFileAbsolutePath;
 
+            // The earlier segments run first, so the upload can start on them.
             final int fileIndex = i;
-            FFmpegKit.executeAsync(command, session -> {
+            mFFmpegSessionScheduler.executeAsync(command, fileIndex, session -> {
                 SessionState state = session.getState();
                 ReturnCode returnCode = session.getReturnCode();
                 // CALLED WHEN SESSION IS EXECUTED
@@ -136,19 +494,284 @@ public class SplitFilePresenter extends BasicPresenter {
 
                 // File should be ready after check return code
                 if (ReturnCode.isSuccess(returnCode)) {
-                    newFileAbsolutePathList.add(newFileAbsolutePath);
+                    onSegmentCompleted(split, plan, newFileAbsolutePathList,
+                            newFileAbsolutePath);
                     if (newFileAbsolutePathList.size() == splitNumber) {
-                        Log.d(TAG, "endSplitFile ---");
-                        mSplitFileCallback.onFileSplit(newFileAbsolutePathList);
+                        completeSplit(split, "seek", newFileAbsolutePathList, startWallTime,
+                                startCpuTime);
                     }
+                } else {
+                    String errorLog = "errorMessage: splitBySeeking error. filePartNumber="
+                            + fileIndex + ", rc=" + returnCode;
+                    performSplitError(split, errorLog);
                 }
             });
         }
     }
 
-    @SuppressLint("DefaultLocale")
-    private String calendarToString(Calendar calendar) {
-        return String.format("%02d:%02d:%02d", calendar.get(Calendar.HOUR_OF_DAY),
-                calendar.get(Calendar.MINUTE), calendar.get(Calendar.SECOND));
+    /**
+     * Decode the input once and let the segment muxer write all segments. A segment is complete
+     * when the muxer opens the next one, and the last segment is complete when the session ends.
+     * <p>
+     * A compressed input longer than one segment is split by {@link DecodingSplit} when
+     * split_tolerance_seconds is set, as it is by default, which also decodes it only once. So
+     * this only runs for the segments without overlap of an input that is not copied and needs no
+     * silence analysis: it is at most one segment long, the tolerance is 0, or it is a PCM WAV
+     * encoded to another codec or tempo.
+     */
+    private void splitInSinglePass(SplitJob split, SegmentPlan plan) {
+        final long startWallTime = SystemClock.elapsedRealtime();
+        final long startCpuTime = Process.getElapsedCpuTime();
+
+        final int splitNumber = plan.getSegmentCount();
+        // The segment muxer cuts every 2 seconds by default, so a single segment still needs a
+        // segment time longer than the input.
+        String segmentOption = splitNumber > 1
+                ? " -segment_times " + plan.toSegmentTimes(split.tempoFactor)
+                : " -segment_time " + (plan.getTotalDurationMs() / 1000 + 1);
+
+        String outputPathPattern = createNewAudioFilePathPattern(split.getSegmentBasePath(),
+                split.segmentCodec.extension);
+        String command = "-y -loglevel verbose" +
+                " -i " + split.splitFilePath +
+                " -f segment -segment_format " + split.segmentCodec.muxer +
+                segmentOption +
+                " -reset_timestamps 1" +
+                " -ar " + SAMPLE_RATE + " -ac 1 " +
+                split.getTempoFilter() +
+                split.segmentCodec.encoderOptions + " " +
+                outputPathPattern;
+
+        List<String> newFileAbsolutePathList = new CopyOnWriteArrayList<>();
+        AtomicInteger openedPartNumber = new AtomicInteger(-1);
+        mFFmpegSessionScheduler.executeAsync(command, 0, session -> {
+            SessionState state = session.getState();
+            ReturnCode returnCode = session.getReturnCode();
+            Log.d(TAG, String.format(
+                    "FFmpeg process the single pass split exited with state %s and rc %s.%s",
+                    state, returnCode, session.getFailStackTrace()));
+
+            if (ReturnCode.isSuccess(returnCode)) {
+                int lastPartNumber = openedPartNumber.get();
+                if (lastPartNumber >= 0) {
+                    onSegmentCompleted(split, plan, newFileAbsolutePathList,
+                            resolveAudioFilePathPattern(outputPathPattern, lastPartNumber));
+                }
+                if (lastPartNumber + 1 != splitNumber) {
+                    Log.w(TAG, "splitInSinglePass# expected " + splitNumber + " files but got "
+                            + (lastPartNumber + 1));
+                }
+                completeSplit(split, "single-pass", newFileAbsolutePathList, startWallTime,
+                        startCpuTime);
+            } else {
+                String errorLog = "errorMessage: splitInSinglePass error. rc=" + returnCode;
+                performSplitError(split, errorLog);
+            }
+        }, log -> {
+            Matcher matcher = SEGMENT_OPENING_PATTERN.matcher(log.getMessage());
+            if (!matcher.find()) {
+                return;
+            }
+            int partNumber = extractPartNumber(matcher.group(1));
+            int previousPartNumber = openedPartNumber.getAndSet(partNumber);
+            if (previousPartNumber >= 0 && previousPartNumber != partNumber) {
+                onSegmentCompleted(split, plan, newFileAbsolutePathList,
+                        resolveAudioFilePathPattern(outputPathPattern, previousPartNumber));
+            }
+        }, statistics -> {
+        });
+    }
+
+    /**
+     * Decode the input once into the raw PCM, choose the cut points while it is decoded, and write
+     * each segment as soon as the decoder has passed its end. The PCM segments in the real time
+     * are copied from the decoded PCM, the others are encoded from it, which is much cheaper than
+     * decoding the input again.
+     */
+    private class DecodingSplit implements SilenceDetector.CutListener {
+        private final long mStartWallTime = SystemClock.elapsedRealtime();
+        private final long mStartCpuTime = Process.getElapsedCpuTime();
+        private final SplitJob mSplit;
+        private final GrowingPcmFile mPcmFile;
+        private final List<String> mNewFileAbsolutePathList = new CopyOnWriteArrayList<>();
+        // The scan and the segments being encoded. The decoded PCM is deleted and the split is
+        // completed after all of them.
+        private final AtomicInteger mPendingCount = new AtomicInteger(1);
+        private final AtomicBoolean mFailed = new AtomicBoolean();
+        private long mSegmentStartMs;
+
+        DecodingSplit(SplitJob split) throws IOException {
+            mSplit = split;
+            mPcmFile = startDecoding(split, split.splitFilePath);
+        }
+
+        void run() {
+            try {
+                SegmentPlan plan = createSilenceDetector(SAMPLE_RATE, getSegmentDurationMs())
+                        .plan(mPcmFile.openChannel(), this);
+                Log.d(TAG, "splitWhileDecoding# " + plan + " in "
+                        + (SystemClock.elapsedRealtime() - mStartWallTime) + "ms");
+                // The last segment lasts until the end of the input.
+                writeSegment(plan.getSegmentCount() - 1, mSegmentStartMs, Long.MAX_VALUE);
+                onSegmentWritten();
+            } catch (IOException e) {
+                fail("errorMessage: splitWhileDecoding error. " + e);
+            }
+        }
+
+        @Override
+        public void onCut(int partNumber, long startMs) throws IOException {
+            // The previous segment ends at the cut point, plus the overlap into this one.
+            writeSegment(partNumber - 1, mSegmentStartMs, startMs + mSplit.segmentOverlapMs);
+            mSegmentStartMs = startMs;
+        }
+
+        private void writeSegment(int partNumber, long startMs, long endMs) throws IOException {
+            endMs = mPcmFile.awaitMs(endMs);
+            final long durationMs = endMs - startMs;
+            if (mSplit.isCopyable()) {
+                String newFileAbsolutePath = createNewAudioFilePath(mSplit.getSegmentBasePath(),
+                        partNumber);
+                mPcmFile.writeSegment(new File(newFileAbsolutePath), startMs, endMs);
+                onSegmentCompleted(mSplit, mNewFileAbsolutePathList, newFileAbsolutePath,
+                        startMs, durationMs);
+                return;
+            }
+
+            String newFileAbsolutePath = createNewAudioFilePath(mSplit.getSegmentBasePath(),
+                    partNumber, mSplit.segmentCodec.extension);
+            String command = "-y -f s16le -ar " + SAMPLE_RATE + " -ac 1" +
+                    " -ss " + millisToSeconds(startMs) +
+                    " -t " + millisToSeconds(durationMs) +
+                    " -i " + mPcmFile.getFile().getAbsolutePath() + " " +
+                    mSplit.getTempoFilter() +
+                    mSplit.segmentCodec.encoderOptions + " " +
+                    newFileAbsolutePath;
+            mPendingCount.incrementAndGet();
+            mFFmpegSessionScheduler.executeAsync(command, partNumber, session -> {
+                ReturnCode returnCode = session.getReturnCode();
+                Log.d(TAG, String.format(
+                        "FFmpeg encode the filePartNumber=%d exited with state %s and rc %s.%s",
+                        partNumber, session.getState(), returnCode,
+                        session.getFailStackTrace()));
+                if (ReturnCode.isSuccess(returnCode)) {
+                    onSegmentCompleted(mSplit, mNewFileAbsolutePathList, newFileAbsolutePath,
+                            startMs, durationMs);
+                    onSegmentWritten();
+                } else {
+                    fail("errorMessage: splitWhileDecoding error. filePartNumber=" + partNumber
+                            + ", rc=" + returnCode);
+                }
+            });
+        }
+
+        private void onSegmentWritten() {
+            if (mPendingCount.decrementAndGet() == 0 && !mFailed.get()) {
+                closePcmFile();
+                completeSplit(mSplit, "decode", mNewFileAbsolutePathList, mStartWallTime,
+                        mStartCpuTime);
+            }
+        }
+
+        private void fail(String errorLog) {
+            closePcmFile();
+            // Only the first failure ends the stream of the segments.
+            if (mFailed.compareAndSet(false, true)) {
+                performSplitError(mSplit, errorLog);
+            }
+        }
+
+        private void closePcmFile() {
+            try {
+                mPcmFile.close();
+            } catch (IOException e) {
+                Log.w(TAG, "closePcmFile# " + e);
+            }
+        }
+    }
+
+    private void onSegmentCompleted(SplitJob split, SegmentPlan plan,
+            List<String> newFileAbsolutePathList, String path) {
+        int partNumber = extractPartNumber(path);
+        onSegmentCompleted(split, newFileAbsolutePathList, path, plan.getStartMs(partNumber),
+                split.getSegmentDurationMs(plan, partNumber));
+    }
+
+    private void onSegmentCompleted(SplitJob split, List<String> newFileAbsolutePathList,
+            String path, long startMs, long durationMs) {
+        Log.d(TAG, "onSegmentCompleted# path=" + path);
+        newFileAbsolutePathList.add(path);
+        split.segmentProcessor.onNext(new SegmentReady(extractPartNumber(path), path, startMs,
+                durationMs, split.offsetRemapTable, split.tempoFactor));
+    }
+
+    /**
+     * @return Whether the file is a WAV that can be scanned and sliced without decoding.
+     */
+    private boolean isPcmWav(String inputFilePath) throws IOException {
+        try (WavSlicer slicer = openWavSlicer(inputFilePath)) {
+            return slicer != null;
+        }
+    }
+
+    private void completeSplit(SplitJob split, String mode,
+            List<String> newFileAbsolutePathList, long startWallTime, long startCpuTime) {
+        logSplitStats(split, mode, newFileAbsolutePathList.size(), startWallTime, startCpuTime);
+        // The trimmed input has been copied into the segments.
+        if (split.trimmedFile != null) {
+            split.trimmedFile.delete();
+            split.trimmedFile = null;
+        }
+        Log.d(TAG, "endSplitFile ---");
+        mRunningSplits.remove(split);
+        split.segmentProcessor.onComplete();
+        mSplitFileCallback.onFileSplit(newFileAbsolutePathList);
+    }
+
+    private void performSplitError(SplitJob split, String errorLog) {
+        mRunningSplits.remove(split);
+        performError(errorLog);
+        split.segmentProcessor.onError(new IllegalStateException(errorLog));
+    }
+
+    private void logSplitStats(SplitJob split, String mode, int splitNumber,
+            long startWallTime, long startCpuTime) {
+        String statsLog = "Split stats: mode=" + mode +
+                ", codec=" + split.segmentCodec +
+                ", overlap=" + split.segmentOverlapMs + "ms" +
+                ", tempo=" + split.tempoFactor +
+                ", trimmed=" + split.offsetRemapTable.getRemovedMs() + "ms" +
+                ", files=" + splitNumber +
+                ", wall=" + (SystemClock.elapsedRealtime() - startWallTime) + "ms" +
+                ", cpu=" + (Process.getElapsedCpuTime() - startCpuTime) + "ms" +
+                "\n" + mFFmpegSessionScheduler.getDiagnostics();
+        Log.d(TAG, statsLog);
+        if (BuildConfig.DEBUG) {
+            mLogTextCallback.onLogReceived(statsLog);
+        }
+    }
+
+    /**
+     * @return The slicer if the input is a WAV in the target format, otherwise null.
+     */
+    private WavSlicer openWavSlicer(String inputFilePath) {
+        try {
+            return WavSlicer.open(new File(inputFilePath));
+        } catch (IOException e) {
+            Log.w(TAG, "openWavSlicer# " + e);
+            return null;
+        }
+    }
+
+    private void closeQuietly(WavSlicer slicer) {
+        try {
+            slicer.close();
+        } catch (IOException e) {
+            Log.w(TAG, "closeQuietly# " + e);
+        }
+    }
+
+    private static String millisToSeconds(long millis) {
+        return String.format(Locale.US, "%d.%03d", millis / 1000, millis % 1000);
     }
 }
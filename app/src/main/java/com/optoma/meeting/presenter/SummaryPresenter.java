@@ -3,8 +3,11 @@ package com.optoma.meeting.presenter;
 import static com.optoma.meeting.util.FileUtil.createMeetingActionsFile;
 
 import android.content.Context;
+import android.text.TextUtils;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+
 import com.optoma.meeting.BuildConfig;
 import com.optoma.meeting.LogTextCallback;
 import com.optoma.meeting.R;
@@ -13,10 +16,10 @@ import com.optoma.meeting.model.azureopenai.chat.ChatRequest;
 import com.optoma.meeting.model.azureopenai.chat.ChatResponse;
 import com.optoma.meeting.network.AzureOpenAIServiceHelper;
 import com.optoma.meeting.network.NetworkServiceHelper;
+import com.optoma.meeting.util.JobJournal;
+import com.optoma.meeting.util.MeetingDocumentWriter;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -32,12 +35,29 @@ public class SummaryPresenter extends BasicPresenter {
 
     private final SummaryCallback mSummaryCallback;
 
-    private final Map<Integer, String> mPartNumberToSummary = new ConcurrentHashMap<>();
-
     public interface SummaryCallback extends ErrorCallback {
         void onSummarized();
     }
 
+    /**
+     * The summaries of the parts of one job. Each job has its own, so the jobs summarized at the
+     * same time, e.g. a resumed one and a new one, do not mix their parts.
+     */
+    private static class SummaryJob {
+        // Null if the conversations are not from a job.
+        @Nullable
+        final JobJournal journal;
+        final int totalPartNumber;
+        final long timeInMillis;
+        final Map<Integer, String> partNumberToSummary = new ConcurrentHashMap<>();
+
+        SummaryJob(@Nullable JobJournal journal, int totalPartNumber, long timeInMillis) {
+            this.journal = journal;
+            this.totalPartNumber = totalPartNumber;
+            this.timeInMillis = timeInMillis;
+        }
+    }
+
     public SummaryPresenter(Context context, LogTextCallback callback,
             SummaryCallback summaryCallback) {
         super(context, callback, summaryCallback);
@@ -45,18 +65,39 @@ public class SummaryPresenter extends BasicPresenter {
         mSummaryCallback = summaryCallback;
     }
 
+    /**
+     * @param journal The journal of the job, the parts summarized before a restart are not
+     *                summarized again. Null if the conversations are not from a job.
+     */
     public void processMultipleConversations(String currentLanguage,
-            Map<Integer, String> partNumberToConversations, long timeStamp) {
+            Map<Integer, String> partNumberToConversations, long timeStamp,
+            @Nullable JobJournal journal) {
+        SummaryJob job = new SummaryJob(journal, partNumberToConversations.size(), timeStamp);
         for (int i = 0; i < partNumberToConversations.size(); i++) {
-            getSummary(currentLanguage, i, partNumberToConversations.get(i), timeStamp,
-                    partNumberToConversations.size());
+            String summary = journal != null ? journal.readSummary(i) : null;
+            if (summary != null) {
+                Log.d(TAG, "processMultipleConversations# part " + i + " is summarized");
+                onSummaryReceived(job, i, summary);
+            } else if (TextUtils.isEmpty(partNumberToConversations.get(i))) {
+                // The transcription of the part failed, there is nothing to summarize.
+                onSummaryReceived(job, i, "");
+            } else {
+                getSummary(job, currentLanguage, i, partNumberToConversations.get(i));
+            }
+        }
+    }
+
+    private void onSummaryReceived(SummaryJob job, int partNumber, String summary) {
+        job.partNumberToSummary.put(partNumber, summary);
+        if (job.partNumberToSummary.size() == job.totalPartNumber) {
+            storeMeetingActionsToFile(job);
         }
     }
 
-    public void getSummary(String language, int partNumber, String conversation, long timeInMillis,
-            int totalPartNumber) {
+    private void getSummary(SummaryJob job, String language, int partNumber,
+            String conversation) {
         Log.d(TAG, "sendMessageToAzureOpenAI# filePartNumber=" + partNumber + "\n" +
-                conversation + ", " + "\ntimestamp" + ": " + timeInMillis);
+                conversation + ", " + "\ntimestamp" + ": " + job.timeInMillis);
 
         final int maxTokens = mContext.getResources().getInteger(R.integer.max_summary_tokens);
 
@@ -82,10 +123,10 @@ public class SummaryPresenter extends BasicPresenter {
                                 ChatResponse result = response.body();
                                 String meetingSummary = result.choices.get(0).message.content;
                                 Log.d(TAG, "onResponse: " + meetingSummary);
-                                mPartNumberToSummary.put(partNumber, meetingSummary);
-                                if (mPartNumberToSummary.size() == totalPartNumber) {
-                                    storeMeetingActionsToFile(timeInMillis);
+                                if (job.journal != null) {
+                                    job.journal.appendSummary(partNumber, meetingSummary);
                                 }
+                                onSummaryReceived(job, partNumber, meetingSummary);
                             } else {
                                 ResponseBody errorBody = response.errorBody();
                                 if (errorBody != null) {
@@ -102,10 +143,10 @@ public class SummaryPresenter extends BasicPresenter {
         );
     }
 
-    private void storeMeetingActionsToFile(long timestamp) {
+    private void storeMeetingActionsToFile(SummaryJob job) {
         Log.d(TAG, "start to store meeting actions to database");
 
-        File outputFile = createMeetingActionsFile(mContext, timestamp);
+        File outputFile = createMeetingActionsFile(mContext, job.timeInMillis);
 
         mCompositeDisposable.add(
                 Completable.fromAction(() -> {
@@ -113,31 +154,21 @@ public class SummaryPresenter extends BasicPresenter {
                             List<String> summaryList = new ArrayList<>();
                             List<String> actionItemsList = new ArrayList<>();
 
-                            parseSummaryAndActionItems(summaryList, actionItemsList);
+                            parseSummaryAndActionItems(job, summaryList, actionItemsList);
 
-                            try {
-                                FileOutputStream outputStream = new FileOutputStream(outputFile);
-                                outputStream.write("Summary:\n".getBytes());
-                                summary.append("Summary:\n");
-                                for (int i = 0; i < summaryList.size(); i++) {
-                                    outputStream.write(summaryList.get(i).getBytes());
-                                    outputStream.write("\n".getBytes());
-                                    summary.append(summaryList.get(i)).append("\n");
-                                }
-                                outputStream.write("\nAction items:\n".getBytes());
-                                summary.append("\nAction items:\n");
-                                for (int i = 0; i < actionItemsList.size(); i++) {
-                                    outputStream.write(actionItemsList.get(i).getBytes());
-                                    outputStream.write("\n".getBytes());
-                                    summary.append(actionItemsList.get(i)).append("\n");
-                                }
+                            summary.append("Summary:\n");
+                            for (int i = 0; i < summaryList.size(); i++) {
+                                summary.append(summaryList.get(i)).append("\n");
+                            }
+                            summary.append("\nAction items:\n");
+                            for (int i = 0; i < actionItemsList.size(); i++) {
+                                summary.append(actionItemsList.get(i)).append("\n");
+                            }
 
-                                outputStream.close();
+                            try (MeetingDocumentWriter writer =
+                                         MeetingDocumentWriter.open(outputFile)) {
+                                writer.append(summary).commit();
                                 mLogTextCallback.onLogReceived(summary.toString());
-
-                            } catch (IOException e) {
-                                String errorLog = "errorMessage: IOException";
-                                performError(errorLog);
                             }
                         })
                         .subscribeOn(Schedulers.io())
@@ -147,15 +178,23 @@ public class SummaryPresenter extends BasicPresenter {
                                     outputFile.getPath() + " *****\n";
                             Log.d(TAG, saveFileLog);
                             mLogTextCallback.onLogReceived(saveFileLog);
+                            if (job.journal != null) {
+                                // The job ends with its summary.
+                                job.journal.delete();
+                            }
                             mSummaryCallback.onSummarized();
+                        }, throwable -> {
+                            String errorLog = "errorMessage: fail to save "
+                                    + outputFile.getPath() + ". " + throwable.getMessage();
+                            performError(errorLog);
                         })
         );
     }
 
-    private void parseSummaryAndActionItems(List<String> summaryList,
+    private void parseSummaryAndActionItems(SummaryJob job, List<String> summaryList,
             List<String> actionItemsList) {
-        for (int i = 0; i < mPartNumberToSummary.size(); i++) {
-            String input = mPartNumberToSummary.get(i);
+        for (int i = 0; i < job.partNumberToSummary.size(); i++) {
+            String input = job.partNumberToSummary.get(i);
             if (input != null) {
                 String[] parts = input.split("Action items:");
                 if (parts.length == 2) {
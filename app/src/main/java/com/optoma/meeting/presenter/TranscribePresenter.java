@@ -1,478 +1,524 @@
 package com.optoma.meeting.presenter;
 
-import static com.optoma.meeting.BuildConfig.DEFAULT_ENDPOINTS_PROTOCAL;
-import static com.optoma.meeting.BuildConfig.STORAGE_ACCOUNT_KEY;
-import static com.optoma.meeting.BuildConfig.STORAGE_ACCOUNT_NAME;
+import static com.optoma.meeting.BuildConfig.SPEECH_SUBSCRPTION_KEY;
 import static com.optoma.meeting.util.FileUtil.createMeetingMinutesFile;
-import static com.optoma.meeting.util.FileUtil.extractPartNumber;
 
 import android.content.Context;
+import android.os.SystemClock;
 import android.util.Log;
 
-import com.microsoft.azure.storage.CloudStorageAccount;
-import com.microsoft.azure.storage.StorageException;
-import com.microsoft.azure.storage.blob.BlobContainerPermissions;
-import com.microsoft.azure.storage.blob.BlobContainerPublicAccessType;
-import com.microsoft.azure.storage.blob.CloudBlobClient;
-import com.microsoft.azure.storage.blob.CloudBlobContainer;
-import com.microsoft.azure.storage.blob.CloudBlockBlob;
 import com.optoma.meeting.LogTextCallback;
-import com.optoma.meeting.model.RecognizedPhrase;
-import com.optoma.meeting.model.TranscribeBean;
-import com.optoma.meeting.model.TranscribeBody;
-import com.optoma.meeting.model.TranscribeProperties;
+import com.optoma.meeting.R;
+import com.optoma.meeting.engine.BatchTranscriptionEngine;
+import com.optoma.meeting.engine.RealtimeTranscriptionEngine;
+import com.optoma.meeting.engine.ScriptedTranscriptionEngine;
+import com.optoma.meeting.engine.TranscriptionEngine;
+import com.optoma.meeting.model.SegmentReady;
+import com.optoma.meeting.model.SegmentTranscription;
 import com.optoma.meeting.model.TranscribeResult;
-import com.optoma.meeting.model.TranscribeValue;
-import com.optoma.meeting.network.CognitiveServiceHelper;
-import com.optoma.meeting.network.NetworkServiceHelper;
+import com.optoma.meeting.model.Transcript;
+import com.optoma.meeting.model.TranscriptAssembler;
+import com.optoma.meeting.model.TranscriptionJob;
+import com.optoma.meeting.model.TranscriptionJobRegistry;
+import com.optoma.meeting.model.TranscriptionMode;
+import com.optoma.meeting.network.BlobUploadSession;
+import com.optoma.meeting.network.BlockUploader;
+import com.optoma.meeting.network.TranscribeResultParser;
+import com.optoma.meeting.state.SegmentState;
+import com.optoma.meeting.util.JobJournal;
+import com.optoma.meeting.util.MeetingDocumentWriter;
+import com.optoma.meeting.util.TimestampFormat;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.net.URISyntaxException;
-import java.security.InvalidKeyException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Date;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TimeZone;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Completable;
-import io.reactivex.Observable;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
 import io.reactivex.android.schedulers.AndroidSchedulers;
-import io.reactivex.disposables.Disposable;
 import io.reactivex.schedulers.Schedulers;
-import okhttp3.ResponseBody;
 
 public class TranscribePresenter extends BasicPresenter {
 
-    public static final int POLLING_FREQ_IN_SEC = 20;
-    private static final boolean DEBUG = true;
-    private static final String SIMPLE_DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+    private static final String UPLOAD_JOURNAL_DIR = "upload_journal";
+    private static final String JOB_JOURNAL_DIR = "job_journal";
+    // A job that still fails after this many restarts of the service is dropped.
+    private static final int MAX_RESUME_COUNT = 3;
 
-    private String storageConnectionString = DEFAULT_ENDPOINTS_PROTOCAL
-            + STORAGE_ACCOUNT_NAME
-            + STORAGE_ACCOUNT_KEY;
-    private static final String AZURE_STORAGE_CONTAINER_NAME = "audio";
-    private static final String AZURE_STORAGE_BLOB_NAME = "audioblob";
     private static final String DEFAULT_PREFER_LOCALE = "zh-tw";
-    String mWavContentUrl = "https://" + STORAGE_ACCOUNT_NAME
-            + ".blob.core.windows.net/" + AZURE_STORAGE_CONTAINER_NAME + "/" + AZURE_STORAGE_BLOB_NAME;
 
     private final TranscribeCallback mTranscribeCallback;
+    private final BlockUploader mBlockUploader;
+    private final File mJobJournalDir;
+    private final BatchTranscriptionEngine mBatchEngine;
+    // The engine of each mode, a job is transcribed by the engine of its mode.
+    private final Map<TranscriptionMode, TranscriptionEngine> mEngines =
+            new EnumMap<>(TranscriptionMode.class);
 
-    private ExecutorService mExecutorService;
+    // Writes the minutes files in the order of the released transcripts.
+    private final ExecutorService mMinutesExecutor = Executors.newSingleThreadExecutor();
+    private final Scheduler mMinutesScheduler = Schedulers.from(mMinutesExecutor);
 
     public TranscribePresenter(Context context, LogTextCallback callback,
             TranscribeCallback transcribeCallback) {
         super(context, callback, transcribeCallback);
         TAG = TranscribePresenter.class.getSimpleName();
         mTranscribeCallback = transcribeCallback;
+        mBlockUploader = new BlockUploader(
+                context.getResources().getInteger(R.integer.upload_block_size_kb) * 1024,
+                context.getResources().getInteger(R.integer.upload_block_parallelism),
+                new File(context.getFilesDir(), UPLOAD_JOURNAL_DIR));
+        mJobJournalDir = new File(context.getFilesDir(), JOB_JOURNAL_DIR);
+        mBatchEngine = new BatchTranscriptionEngine(callback,
+                context.getResources().getBoolean(R.bool.single_transcription_job));
+        mEngines.put(TranscriptionMode.BATCH, mBatchEngine);
+        mEngines.put(TranscriptionMode.REAL_TIME, new RealtimeTranscriptionEngine(
+                SPEECH_SUBSCRPTION_KEY, context.getResources().getString(R.string.speech_region),
+                context.getResources().getInteger(R.integer.realtime_session_count)));
+        List<ScriptedTranscriptionEngine.Line> script = new ArrayList<>();
+        for (String line : context.getResources().getStringArray(R.array.offline_engine_script)) {
+            script.add(ScriptedTranscriptionEngine.Line.parse(line));
+        }
+        mEngines.put(TranscriptionMode.OFFLINE, new ScriptedTranscriptionEngine(script,
+                context.getResources().getInteger(R.integer.offline_engine_latency_ms),
+                Float.parseFloat(context.getResources().getString(
+                        R.string.offline_engine_real_time_factor)),
+                context.getResources().getInteger(R.integer.offline_engine_phrase_interval_ms),
+                Schedulers.computation()));
+    }
+
+    @Override
+    public void destroy() {
+        super.destroy();
+        for (TranscriptionEngine engine : mEngines.values()) {
+            engine.shutdown();
+        }
+        mBlockUploader.shutdown();
+        mMinutesExecutor.shutdown();
     }
 
     public interface TranscribeCallback extends ErrorCallback {
+        /**
+         * @param text The transcript of the next phrases of the meeting, in order.
+         */
         void onTranscribed(String text, long timeStamp);
 
-        void onAllPartsTranscribed(Map<Integer, String> partNumberToTranscriber, long timeStamp);
+        /**
+         * @param journal The journal of the job, the summary stage continues it.
+         */
+        void onAllPartsTranscribed(String language, JobJournal journal,
+                Map<Integer, String> partNumberToTranscriber, long timeStamp);
     }
 
-    private final Map<String, Integer> mTranscribeIDToPartNumber = new HashMap<>();
-    private final Map<Integer, String> mPartNumberToTranscriberForSummary = new HashMap<>();
-    private final Map<Integer, String> mPartNumberToTranscriberForView = new HashMap<>();
-    private final Map<String, Disposable> mPollingDisposables = new HashMap<>();
-
-    private CloudBlockBlob mCloudBlockBlob;
-    private CloudBlobContainer mCloudBlobContainer;
-    private TranscribeResult mTranscribeResult;
-
-    public void uploadAudioAndTranscribe(List<String> absolutePathList, String languageString) {
-        Log.d(TAG, "uploadFileFromFile: start");
-
-        mExecutorService = Executors.newFixedThreadPool(absolutePathList.size());
-        List<Completable> completables = new ArrayList<>();
-        mTranscribeIDToPartNumber.clear();
-        mPartNumberToTranscriberForSummary.clear();
-        mPartNumberToTranscriberForView.clear();
-        mPollingDisposables.clear();
-
-        for (String absolutePath : absolutePathList) {
-            Log.d(TAG, "extractPartNumber: " + absolutePath + "\t result" + extractPartNumber(
-                    absolutePath));
-            Completable completable = Completable.create(emitter -> {
-                        try {
-                            // Storage init action++
-                            // Setup the cloud storage account.
-                            CloudStorageAccount account = CloudStorageAccount
-                                    .parse(storageConnectionString);
-
-                            // Create a blob service client
-                            CloudBlobClient blobClient = account.createCloudBlobClient();
-
-                            // Get a reference to a container
-                            // The container name must be lower case
-                            // Append a random UUID to the end of the container name so that
-                            // this sample can be run more than once in quick succession.
-                            CloudBlobContainer container =
-                                    blobClient.getContainerReference(
-                                            AZURE_STORAGE_CONTAINER_NAME + UUID.randomUUID().toString().replace(
-                                                    "-", ""));
-
-                            // Create the container if it does not exist
-                            container.createIfNotExists();
-
-                            // Make the container public
-                            // Create a permissions object
-                            BlobContainerPermissions containerPermissions = new BlobContainerPermissions();
-
-                            // Include public access in the permissions object
-                            containerPermissions.setPublicAccess(BlobContainerPublicAccessType.CONTAINER);
-
-                            // Set the permissions on the container
-                            container.uploadPermissions(containerPermissions);
-
-                            // Get a reference to a blob in the container
-                            CloudBlockBlob blob = container.getBlockBlobReference(AZURE_STORAGE_BLOB_NAME);
-
-                            // Upload file to the blob
-                            blob.uploadFromFile(absolutePath);
-                            // Storage init action--
-
-                            Log.d(TAG, "Upload complete " + blob.getUri());
-
-                            mWavContentUrl = blob.getUri().toString();
-                            createSpeechToText(languageString, extractPartNumber(absolutePath));
-
-                            // Storage post action++
-                            // Delete the blobs
-                            mCloudBlockBlob = blob;
-
-                            // Delete the container
-                            mCloudBlobContainer = container;
-
-                        } catch (URISyntaxException | StorageException | InvalidKeyException |
-                                 IOException e) {
-                            e.printStackTrace();
-                            emitter.onError(e);
-                        }
-                        emitter.onComplete();
-                    })
-                    .subscribeOn(Schedulers.from(mExecutorService));
-
-            completables.add(completable);
-        }
+    // Each job and each of its segments owns its own state, so the uploads and the results of
+    // the segments in parallel never overwrite each other.
+    private final TranscriptionJobRegistry mTranscriptionJobRegistry =
+            new TranscriptionJobRegistry();
 
-        Completable.merge(completables)
+    /**
+     * Transcribe each segment as soon as it is emitted by the split stage.
+     *
+     * @param segments       The stream of the split segments.
+     * @param languageString The target language for the speech recognition.
+     * @param mode           How the segments are transcribed, the real-time mode needs the
+     *                       segments in WAV.
+     * @return The work directory of the job for the split, it is deleted when the job ends.
+     */
+    public File uploadAudioAndTranscribe(Flowable<SegmentReady> segments, String languageString,
+            TranscriptionMode mode) {
+        Log.d(TAG, "uploadFileFromFile: start, mode=" + mode);
+
+        String jobId = UUID.randomUUID().toString().replace("-", "");
+        TranscriptionJob job = new TranscriptionJob(jobId, languageString,
+                new BlobUploadSession(jobId, mBlockUploader),
+                JobJournal.create(mJobJournalDir, jobId, languageString, mode), mode);
+        startJob(job);
+
+        transcribeSegments(job, segments
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(() -> {
-                    Log.d(TAG, "*** executorService.shutdown().");
-                    // Handle completion on the main thread
-                    mExecutorService.shutdown();
-                }, throwable -> {
-                    Log.w(TAG, "fail to uploadAudio, %s", throwable);
-                    mExecutorService.shutdown();
-                });
+                .map(segment -> {
+                    job.journal.appendSegment(segment);
+                    job.latencyRecorder.onSegmentReady(segment.partNumber,
+                            SystemClock.elapsedRealtime());
+                    return job.addSegment(segment);
+                })
+                .doOnComplete(() -> {
+                    Log.d(TAG, "All segments are split, count=" + job.getSegmentCount());
+                    job.setTotalSegmentCount(job.getSegmentCount());
+                    job.journal.appendTotal(job.getSegmentCount());
+                    releaseTranscripts(job);
+                }));
+        return job.journal.getWorkDir();
+    }
+
+    private void startJob(TranscriptionJob job) {
+        mTranscriptionJobRegistry.register(job);
+        job.start(SystemClock.elapsedRealtime(), mBatchEngine.getUploadedBytes(),
+                mBatchEngine.getStatusRequestCount());
+        job.latencyRecorder.start(job.getStartTime());
     }
 
     /**
-     * Create and initiate a speech-to-text operation for a specific language using the audio file part.
+     * Continue the jobs that were interrupted by a restart of the service, each from the last
+     * completed stage in its journal. The running transcriptions are polled again, and only the
+     * segments that are not uploaded yet are uploaded.
      *
-     * @param languageString The target language for the speech recognition.
-     * @param filePartNumber The part number of the audio file (starting from 0).
+     * @return The number of the resumed jobs.
      */
-    private void createSpeechToText(String languageString, int filePartNumber) {
-        Log.d(TAG, "createSpeechToText: " + languageString + "\tfilePartNumber: " + filePartNumber);
-
-        TranscribeProperties properties = new TranscribeProperties();
-        properties.diarizationEnabled = true;
-        properties.wordLevelTimestampsEnabled = true;
-        properties.punctuationMode = "DictatedAndAutomatic";
-        properties.profanityFilterMode = "Masked";
-        properties.timeToLive = "PT1H";
-
-        if (DEBUG) {
-            Log.d(TAG, "createTranscription: mWavContentUrl: " + mWavContentUrl);
+    public int resumeJournaledJobs() {
+        int resumedCount = 0;
+        for (JobJournal journal : JobJournal.recover(mJobJournalDir)) {
+            Log.d(TAG, "resumeJournaledJobs# " + journal);
+            // The input of a split is not journaled, so a job interrupted before the end of its
+            // split is dropped, and the client has to process the recording again.
+            if (journal.getTotalSegmentCount() <= 0
+                    || journal.getResumeCount() >= MAX_RESUME_COUNT) {
+                journal.delete();
+                reportResumeError("errorMessage: the job " + journal.jobId + " is dropped, "
+                        + (journal.getTotalSegmentCount() <= 0
+                        ? "it was interrupted before its split ended."
+                        : "it failed after " + journal.getResumeCount() + " restarts."));
+                continue;
+            }
+            journal.appendResumed();
+            if (journal.getTranscribedTimestamp() >= 0) {
+                resumeSummary(journal);
+            } else {
+                resumeTranscription(journal);
+            }
+            resumedCount++;
         }
+        return resumedCount;
+    }
 
-        TranscribeBody body = new TranscribeBody(Arrays.asList(mWavContentUrl),
-                properties, languageString, "test");
-        mCompositeDisposable.add(
-                CognitiveServiceHelper.getInstance()
-                        .createTranscription(body)
-                        .subscribeOn(Schedulers.io())
-                        .observeOn(AndroidSchedulers.mainThread())
-                        .timeout(10, TimeUnit.SECONDS)
-                        .subscribe(response -> {
-                            Log.d(TAG, "onResponse: " + response.code());
-                            if (response.isSuccessful()) {
-                                TranscribeBean result = response.body();
-                                Log.d(TAG, "onResponse: " + result.status);
-                                Log.d(TAG, "onResponse: " + result.links.files);
-                                String[] info = result.links.files.split("/");
-                                String transcriptionID = info[info.length - 2];
-
-                                if (response.code() == 201) {
-                                    Log.d(TAG,
-                                            "createTranscription success: " + transcriptionID + ", filePartNumber: " + filePartNumber);
-                                    mTranscribeIDToPartNumber.put(transcriptionID, filePartNumber);
-                                    startPolling(transcriptionID);
-                                }
-                            } else {
-                                ResponseBody errorBody = response.errorBody();
-                                if (errorBody != null) {
-                                    String errorLog = "errorMessage: " +
-                                            NetworkServiceHelper.generateErrorToastContent(errorBody);
-                                    performError(errorLog);
-                                }
-                            }
-                        }, throwable -> Log.w(TAG, "fail to getUserDrinkList, %s", throwable))
-        );
+    private void resumeSummary(JobJournal journal) {
+        try {
+            mTranscribeCallback.onAllPartsTranscribed(journal.getLanguage(), journal,
+                    journal.readConversations(), journal.getTranscribedTimestamp());
+        } catch (IOException e) {
+            journal.delete();
+            performError("errorMessage: fail to resume the summary. " + e.getMessage());
+        }
     }
 
-    private void pollingStatus(String transcriptionID) {
-        mCompositeDisposable.add(
-                CognitiveServiceHelper.getInstance()
-                        .getTranscriptionStatus(transcriptionID)
-                        .subscribeOn(Schedulers.io())
-                        .observeOn(AndroidSchedulers.mainThread())
-                        .timeout(10, TimeUnit.SECONDS)
-                        .subscribe(response -> {
-                            Log.d(TAG, "onResponse: " + response.code());
-                            if (response.isSuccessful()) {
-                                TranscribeBean result = response.body();
-                                Log.d(TAG, "polling Status onResponse: " + result.status);
-
-                                int partNumber = mTranscribeIDToPartNumber.get(transcriptionID);
-                                String resultLog;
-                                if ("Running".equalsIgnoreCase(result.status)) {
-                                    resultLog = "Transcribe " + partNumber + " is Running...";
-                                    Log.d(TAG, resultLog);
-                                    mLogTextCallback.onLogReceived(resultLog);
-                                } else if ("Succeeded".equalsIgnoreCase(result.status)) {
-                                    resultLog = "***** Transcribe " + partNumber + " is Ready! " +
-                                            "*****\n";
-                                    Log.d(TAG, resultLog);
-                                    mLogTextCallback.onLogReceived(resultLog);
-                                    stopPolling(transcriptionID);
-                                    getTranscriber(transcriptionID);
-                                } else {
-                                    resultLog = "Failed to get transcription with unknown reason";
-                                    Log.d(TAG, resultLog);
-                                    mLogTextCallback.onLogReceived(resultLog);
-                                }
-                            } else {
-                                ResponseBody errorBody = response.errorBody();
-                                if (errorBody != null) {
-                                    String errorLog = "errorMessage: " +
-                                            NetworkServiceHelper.generateErrorToastContent(errorBody);
-                                    performError(errorLog);
-                                }
-                            }
-                        }, throwable -> Log.w(TAG, "fail to getTranscriptionStatus, %s", throwable))
-        );
+    private void resumeTranscription(JobJournal journal) {
+        // The segments that are not transcribed yet go to the engine of the mode of the job.
+        TranscriptionJob job = TranscriptionJob.resume(journal,
+                new BlobUploadSession(journal.jobId, mBlockUploader));
+        startJob(job);
+
+        // Replay the fetched results, a result that cannot be read is transcribed again.
+        for (int partNumber : journal.getFetchedPartNumbers()) {
+            SegmentTranscription segment = job.getSegment(partNumber);
+            if (segment == null) {
+                continue;
+            }
+            try {
+                TranscribeResult transcribeResult = new TranscribeResultParser(true).parse(
+                        new StringReader(journal.readResult(partNumber)));
+                // The segments of the other engines have no transcription of the service.
+                segment.moveTo(SegmentState.SUBMITTED);
+                if (moveToFetching(job, segment)) {
+                    postProcessTranscriptionData(job, segment, transcribeResult,
+                            toTimeInMillis(transcribeResult.timestamp));
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "resumeTranscription# fail to read the result of " + segment + ", "
+                        + e);
+            }
+        }
+
+        // The engine continues each segment from its stage, polling its transcription,
+        // submitting its uploaded URL, or uploading it.
+        List<SegmentTranscription> pendingSegments = new ArrayList<>();
+        for (SegmentReady segmentReady : journal.getSegments()) {
+            SegmentTranscription segment = job.getSegment(segmentReady.partNumber);
+            if (segment.getState() == SegmentState.DONE
+                    || segment.getState() == SegmentState.FAILED) {
+                continue;
+            }
+            if (segment.getContentUrl() == null && !new File(segmentReady.path).exists()) {
+                // Only the segment fails, the rest of the job goes on.
+                segment.moveTo(SegmentState.FAILED);
+                reportResumeError("errorMessage: the segment is lost. " + segmentReady.path);
+                continue;
+            }
+            pendingSegments.add(segment);
+        }
+        Log.d(TAG, "resumeTranscription# " + job + ", pending=" + pendingSegments.size());
+        releaseTranscripts(job);
+
+        transcribeSegments(job, Flowable.fromIterable(pendingSegments));
     }
 
-    public void getTranscriber(String transcriptionID) {
+    /**
+     * Report an error of a resumed job to the client without ending the state of the service,
+     * which deletes the cache where the segments of the other jobs may still wait.
+     */
+    private void reportResumeError(String errorLog) {
+        Log.w(TAG, errorLog);
+        mLogTextCallback.onLogReceived(errorLog);
+    }
+
+    /**
+     * Give each segment to the engine of the job as it arrives, and tell the engine when the
+     * segments end.
+     */
+    private void transcribeSegments(TranscriptionJob job,
+            Flowable<SegmentTranscription> segments) {
+        final TranscriptionEngine engine = mEngines.get(job.mode);
         mCompositeDisposable.add(
-                CognitiveServiceHelper.getInstance()
-                        .getTranscriptionFiles(transcriptionID)
-                        .subscribeOn(Schedulers.io())
-                        .observeOn(AndroidSchedulers.mainThread())
-                        .timeout(10, TimeUnit.SECONDS)
-                        .subscribe(response -> {
-                            Log.d(TAG, "onResponse: " + response.code());
-                            if (response.isSuccessful()) {
-                                List<TranscribeValue> valueList = response.body().values;
-                                // TODO error handling
-                                for (int i = 0; i < valueList.size(); i++) {
-                                    if ("Transcription".equalsIgnoreCase(valueList.get(i).kind)) {
-                                        String contentUrl = valueList.get(
-                                                i).links.contentUrl; //smaller one
-                                        Log.d(TAG,
-                                                "getTranscriptionFiles onResponse: contentUrl = " + contentUrl);
-                                        int filePartNumber = mTranscribeIDToPartNumber.get(
-                                                transcriptionID);
-                                        getTranscribedFilesFromUrl(contentUrl, filePartNumber);
-                                    }
-                                }
+                segments
+                        .doOnComplete(() -> engine.onAllSegmentsGiven(job))
+                        .flatMapCompletable(segment -> transcribeSegment(job, engine, segment),
+                                false, engine.getMaxConcurrency())
+                        .subscribe(() -> Log.d(TAG, "All segments of " + job.jobId
+                                        + " are transcribed"),
+                                throwable -> {
+                                    Log.w(TAG, "fail to transcribe, %s", throwable);
+                                    releaseTranscripts(job);
+                                }));
+    }
 
-                            } else {
-                                ResponseBody errorBody = response.errorBody();
-                                if (errorBody != null) {
-                                    String errorLog = "errorMessage: " +
-                                            NetworkServiceHelper.generateErrorToastContent(errorBody);
-                                    performError(errorLog);
-                                }
-                            }
-                        }, throwable -> Log.w(TAG, "fail to getUserDrinkList, %s", throwable))
-        );
+    /**
+     * Collect the phrases of the segment from the engine. The result is kept in the journal, so a
+     * restart of the service does not transcribe it again. A failed segment fails only itself.
+     */
+    private Completable transcribeSegment(TranscriptionJob job, TranscriptionEngine engine,
+            SegmentTranscription segment) {
+        final int partNumber = segment.segment.partNumber;
+        return engine.transcribe(job, segment)
+                .collect(() -> new Transcript(true), Transcript::append)
+                .observeOn(Schedulers.io())
+                .map(phrases -> {
+                    TranscribeResult transcribeResult = new TranscribeResult(phrases);
+                    transcribeResult.source = segment.segment.path;
+                    transcribeResult.timestamp = segment.getResultTimestamp();
+                    StringWriter writer = new StringWriter();
+                    TranscribeResultParser.write(transcribeResult, writer);
+                    job.journal.appendFetched(partNumber, writer.toString());
+                    return transcribeResult;
+                })
+                .observeOn(AndroidSchedulers.mainThread())
+                .doOnSuccess(transcribeResult -> {
+                    if (moveToFetching(job, segment)) {
+                        postProcessTranscriptionData(job, segment, transcribeResult,
+                                toTimeInMillis(transcribeResult.timestamp));
+                    }
+                })
+                .doOnError(throwable -> failSegment(job, segment, throwable.getMessage()))
+                .ignoreElement()
+                .onErrorComplete();
     }
 
-    private void getTranscribedFilesFromUrl(String contentUrl, int filePartNumber) {
-        mCompositeDisposable.add(
-                CognitiveServiceHelper.getInstance()
-                        .getTranscriptionFilesFromUrl(contentUrl)
-                        .subscribeOn(Schedulers.io())
-                        .observeOn(AndroidSchedulers.mainThread())
-                        .timeout(10, TimeUnit.SECONDS)
-                        .subscribe(response -> {
-                            Log.d(TAG, "onResponse: " + response.code());
-                            if (response.isSuccessful()) {
-                                mTranscribeResult = response.body();
-                                Log.d(TAG,
-                                        "getTranscriptionFilesFromUrl onResponse: contentUrl = " +
-                                                mTranscribeResult.combinedRecognizedPhrases.get(
-                                                        0).lexical);
-                                deleteCloudFileAfterTranscribeEnd();
-
-                                SimpleDateFormat sdf = new SimpleDateFormat(SIMPLE_DATE_FORMAT);
-                                sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
-                                long timeInMillis = 0;
-
-                                try {
-                                    Date date = sdf.parse(mTranscribeResult.timestamp);
-                                    timeInMillis = date.getTime();
-                                } catch (ParseException e) {
-                                    e.printStackTrace();
-                                }
-                                postProcessTranscriptionData(timeInMillis, filePartNumber);
-                            } else {
-                                ResponseBody errorBody = response.errorBody();
-                                if (errorBody != null) {
-                                    String errorLog = "errorMessage: " +
-                                            NetworkServiceHelper.generateErrorToastContent(errorBody);
-                                    performError(errorLog);
-                                }
-                            }
-                        }, throwable -> Log.w(TAG, "fail to getUserDrinkList, %s", throwable))
-        );
+    /**
+     * @return Whether the result of the segment can be fetched, otherwise the segment is failed.
+     */
+    private boolean moveToFetching(TranscriptionJob job, SegmentTranscription segment) {
+        SegmentState state = segment.getState();
+        if (!segment.moveTo(SegmentState.FETCHING)) {
+            failSegment(job, segment, "unexpected result in " + state);
+            return false;
+        }
+        return true;
     }
 
-    private void postProcessTranscriptionData(long timestamp, int filePartNumber) {
-        Log.d(TAG, "postProcessTranscriptionData# t=" + timestamp + ", filePartNumber=" + filePartNumber);
-        StringBuilder sbTranscriptionForSummary = new StringBuilder();
-        StringBuilder sbTranscriptionForView = new StringBuilder();
-
-        SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss.SSS");
-        sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
-
-        for (RecognizedPhrase phrase : mTranscribeResult.recognizedPhrases) {
-            // string for the next steps to summarize
-            String transcriptionForSummary = "{speaker " + phrase.speaker +
-                    ":" +
-                    phrase.nBest.get(0).display +
-                    "}, ";
-            sbTranscriptionForSummary.append(transcriptionForSummary);
-
-            // string for log appearance and saving file.
-            // here we transform minutes into milliseconds
-            long baseOffset = filePartNumber * mEachSegmentDuration * 60 * 1000L;
-            // According to definition on https://learn.microsoft.com/zh-tw/azure/ai-services/speech-service/batch-transcription-get?pivots=rest-api
-            // , 1 offsetInTicks = 100ns. Here we want the offsetInTicks to milliseconds.
-            long offset = phrase.offsetInTicks.longValue() / 10000L;
-            long finalOffset = baseOffset + offset;
-            String dateText = sdf.format(new Date(finalOffset));
-
-            String transcriptionForView = dateText + " {speaker " + phrase.speaker +
-                    ":" +
-                    phrase.nBest.get(0).display +
-                    "}\n";
-            sbTranscriptionForView.append(transcriptionForView);
+    /**
+     * Fail only the segment, so the reorder buffer skips it and the rest of the job goes on.
+     */
+    private void failSegment(TranscriptionJob job, SegmentTranscription segment, String reason) {
+        segment.moveTo(SegmentState.FAILED);
+        String errorLog = "Transcribe [" + segment.segment.partNumber + "] is failed, " + reason;
+        Log.w(TAG, errorLog);
+        mLogTextCallback.onLogReceived(errorLog);
+        releaseTranscripts(job);
+    }
+
+    /**
+     * @param timestamp The timestamp of the result from the service, null if the engine has none,
+     *                  then the result is timed by the local clock.
+     */
+    private long toTimeInMillis(String timestamp) {
+        if (timestamp == null) {
+            return System.currentTimeMillis();
         }
+        long timeInMillis = TimestampFormat.parseIso8601(timestamp, -1);
+        if (timeInMillis < 0) {
+            Log.w(TAG, "toTimeInMillis# malformed " + timestamp);
+            return 0;
+        }
+        return timeInMillis;
+    }
 
-        mPartNumberToTranscriberForSummary.put(filePartNumber,
-                sbTranscriptionForSummary.toString());
-        mPartNumberToTranscriberForView.put(filePartNumber, sbTranscriptionForView.toString());
+    private void postProcessTranscriptionData(TranscriptionJob job, SegmentTranscription segment,
+            TranscribeResult transcribeResult, long timestamp) {
+        Log.d(TAG, "postProcessTranscriptionData# t=" + timestamp + ", filePartNumber="
+                + segment.segment.partNumber);
+        Transcript phrases = transcribeResult.phrases;
+        if (segment.segment.tempoFactor != 1.0f) {
+            // The segment is transcribed faster than the real time, so stretch the offsets and
+            // the durations of the phrases and their words back by the tempo factor.
+            phrases.scale(segment.segment.tempoFactor);
+        }
+        if (!segment.moveTo(SegmentState.DONE)) {
+            failSegment(job, segment, "unexpected result in " + segment.getState());
+            return;
+        }
+        // The phrases in the overlap are merged after the neighbor parts are transcribed. The
+        // reorder buffer reads them on this thread, so they are set before it is drained.
+        segment.setPhrases(phrases);
+
+        job.setLastResultTimestamp(timestamp);
+        job.latencyRecorder.onSegmentDone(segment.segment.partNumber,
+                SystemClock.elapsedRealtime());
+        releaseTranscripts(job);
+    }
 
-        // Get all results from server and start to process next step.
-        if (mPartNumberToTranscriberForSummary.size() == mTranscribeIDToPartNumber.size()) {
-            storeMeetingMinutesToFile(timestamp);
+    /**
+     * Release the transcripts of the settled prefix of the parts to the client and the minutes
+     * file in order. The job finishes once all parts are released. A failed part is skipped.
+     */
+    private void releaseTranscripts(TranscriptionJob job) {
+        if (mTranscriptionJobRegistry.get(job.jobId) != job) {
+            return;
+        }
+        String text = TranscriptAssembler.release(job, partNumber -> {
+            String skipLog = "***** Transcribe [" + partNumber + "] is failed, skipped *****\n";
+            Log.w(TAG, skipLog);
+            mLogTextCallback.onLogReceived(skipLog);
+        });
+        if (!text.isEmpty()) {
+            appendMeetingMinutesToFile(job, text);
+            job.latencyRecorder.onOutput(SystemClock.elapsedRealtime());
+            mTranscribeCallback.onTranscribed(text, job.getMinutesTimestamp());
+        }
+        if (job.reorderBuffer.isComplete(job)) {
+            finishTranscription(job);
         }
-        mLogTextCallback.onLogReceived("Transcription:\n" + sbTranscriptionForView);
     }
 
-    private void storeMeetingMinutesToFile(long timestamp) {
-        Log.d(TAG, "storeMeetingMinutesToFile#");
+    private void finishTranscription(TranscriptionJob job) {
+        Log.d(TAG, "finishTranscription# " + job + ", dropped "
+                + job.reorderBuffer.getDroppedPhraseCount() + " duplicated phrases");
+        mTranscriptionJobRegistry.remove(job.jobId);
+        mEngines.get(job.mode).onJobFinished(job);
+        Map<Integer, String> partNumberToTranscriberForSummary = new HashMap<>();
+        for (int i = 0; i < job.getTotalSegmentCount(); i++) {
+            partNumberToTranscriberForSummary.put(i, job.getSummaryText(i).toString());
+        }
+        if (job.getMinutesTimestamp() < 0) {
+            // No part is transcribed, so the minutes file has only the header.
+            appendMeetingMinutesToFile(job, "");
+        }
 
+        final long timestamp = job.getMinutesTimestamp();
         File outputFile = createMeetingMinutesFile(mContext, timestamp);
-
+        final float tempoFactor = job.getTempoFactor();
+        // It commits the minutes file after all writes of it on the same thread.
         mCompositeDisposable.add(
                 Completable.fromAction(() -> {
-                            try {
-                                FileOutputStream outputStream = new FileOutputStream(outputFile);
-
-                                for (int i = 0; i < mPartNumberToTranscriberForView.size(); i++) {
-                                    outputStream.write(mPartNumberToTranscriberForView.get(i).getBytes());
+                            try (MeetingDocumentWriter writer = job.getMinutesWriter()) {
+                                job.setMinutesWriter(null);
+                                if (job.getMinutesError() != null) {
+                                    throw job.getMinutesError();
                                 }
-
-                                outputStream.close();
-
-                            } catch (IOException e) {
-                                e.printStackTrace();
+                                writer.commit();
                             }
+                            job.journal.appendTranscribed(partNumberToTranscriberForSummary,
+                                    timestamp);
                         })
-                        .subscribeOn(Schedulers.io())
+                        .subscribeOn(mMinutesScheduler)
                         .observeOn(AndroidSchedulers.mainThread())
                         .subscribe(() -> {
                             String saveFileLog = "***** Saved meeting minutes to "
                                     + outputFile.getPath() + " *****\n";
                             Log.d(TAG, saveFileLog);
                             mLogTextCallback.onLogReceived(saveFileLog);
-                            mTranscribeCallback.onAllPartsTranscribed(
-                                    mPartNumberToTranscriberForSummary, timestamp);
-                        })
+                            String statsLog = "Transcribe stats: uploaded="
+                                    + (mBatchEngine.getUploadedBytes()
+                                    - job.getStartUploadedBytes())
+                                    + " bytes, elapsed="
+                                    + (SystemClock.elapsedRealtime() - job.getStartTime())
+                                    + "ms, tempo=" + tempoFactor + ", status requests="
+                                    + (mBatchEngine.getStatusRequestCount()
+                                    - job.getStartPollCount());
+                            Log.d(TAG, statsLog);
+                            mLogTextCallback.onLogReceived(statsLog);
+                            // Run the same recording in each mode to compare them.
+                            String latencyLog = "Transcribe latency: mode=" + job.mode + ", "
+                                    + job.latencyRecorder.summarize(
+                                    SystemClock.elapsedRealtime());
+                            Log.d(TAG, latencyLog);
+                            mLogTextCallback.onLogReceived(latencyLog);
+                            mTranscribeCallback.onAllPartsTranscribed(job.language, job.journal,
+                                    partNumberToTranscriberForSummary, timestamp);
+                        }, throwable -> performError("errorMessage: fail to save "
+                                + outputFile.getPath() + ". " + throwable.getMessage()))
         );
     }
 
-    private void deleteCloudFileAfterTranscribeEnd() {
+    /**
+     * Append the released transcript to the minutes file of the job. The writes run one by one
+     * on their own thread, so the file is in the order of the releases.
+     */
+    private void appendMeetingMinutesToFile(TranscriptionJob job, String transcriptionForView) {
+        final boolean isFirst = job.getMinutesTimestamp() < 0;
+        if (isFirst) {
+            job.setMinutesTimestamp(job.getLastResultTimestamp());
+        }
+        File outputFile = createMeetingMinutesFile(mContext, job.getMinutesTimestamp());
+        final float tempoFactor = job.getTempoFactor();
+
         mCompositeDisposable.add(
-                Completable.create(emitter -> {
+                Completable.fromAction(() -> {
                             try {
-                                mCloudBlockBlob.deleteIfExists();
-                                mCloudBlobContainer.deleteIfExists();
-                            } catch (Exception e) {
-                                e.printStackTrace();
+                                if (isFirst) {
+                                    // It drops the minutes of an interrupted run of the job.
+                                    job.setMinutesWriter(MeetingDocumentWriter.open(outputFile));
+                                    // Record the speed-up, the timestamps are already in real
+                                    // time.
+                                    if (tempoFactor != 1.0f) {
+                                        job.getMinutesWriter().append("Tempo factor: ")
+                                                .append(Float.toString(tempoFactor))
+                                                .append("x\n\n");
+                                    }
+                                }
+                                MeetingDocumentWriter writer = job.getMinutesWriter();
+                                if (writer != null) {
+                                    writer.append(transcriptionForView);
+                                }
+                            } catch (IOException e) {
+                                // The minutes stop here, and the job fails with the error
+                                // when it finishes.
+                                Log.w(TAG, "appendMeetingMinutesToFile# " + e);
+                                job.setMinutesError(e);
+                                closeQuietly(job.getMinutesWriter());
+                                job.setMinutesWriter(null);
                             }
-                            emitter.onComplete();
                         })
-                        .subscribeOn(Schedulers.io())
-                        .observeOn(AndroidSchedulers.mainThread())
-                        .subscribe(() -> {
-                            // Handle completion on the main thread
-                        }, throwable -> {
-                            // Handle error on the main thread
-                        }));
-    }
-
-    private void startPolling(String transcriptionID) {
-        // If the timer is already running for this transcriptionID, cancel it first
-        stopPolling(transcriptionID);
-
-        // Create a timer that triggers every 30 seconds
-        Disposable disposable = Observable.interval(0, POLLING_FREQ_IN_SEC, TimeUnit.SECONDS)
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(interval -> {
-                    // Execute polling operations each time it triggers
-                    pollingStatus(transcriptionID);
-                });
-
-        mPollingDisposables.put(transcriptionID, disposable);
-        mCompositeDisposable.add(disposable);
+                        .subscribeOn(mMinutesScheduler)
+                        .subscribe()
+        );
     }
 
-    private void stopPolling(String transcriptionID) {
-        Disposable disposable = mPollingDisposables.get(transcriptionID);
-        // Cancel the timer to stop polling
-        if (disposable != null && !disposable.isDisposed()) {
-            disposable.dispose();
-            mPollingDisposables.remove(transcriptionID);
+    private void closeQuietly(MeetingDocumentWriter writer) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            Log.w(TAG, "closeQuietly# " + e);
         }
     }
 }
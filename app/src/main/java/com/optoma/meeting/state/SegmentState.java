@@ -0,0 +1,34 @@
+package com.optoma.meeting.state;
+
+/**
+ * The state of the transcription of one segment.
+ * <p>
+ * UPLOADING -> SUBMITTED -> RUNNING -> FETCHING -> DONE, and FAILED from any state before DONE.
+ * A job may succeed before it is seen running, so SUBMITTED can also move to FETCHING.
+ */
+public enum SegmentState {
+    UPLOADING,
+    SUBMITTED,
+    RUNNING,
+    FETCHING,
+    DONE,
+    FAILED;
+
+    public boolean canMoveTo(SegmentState next) {
+        if (next == FAILED) {
+            return this != DONE && this != FAILED;
+        }
+        switch (this) {
+            case UPLOADING:
+                return next == SUBMITTED;
+            case SUBMITTED:
+                return next == RUNNING || next == FETCHING;
+            case RUNNING:
+                return next == FETCHING;
+            case FETCHING:
+                return next == DONE;
+            default:
+                return false;
+        }
+    }
+}
@@ -7,9 +7,11 @@ import android.net.Uri;
 import android.provider.MediaStore;
 import android.util.Log;
 
+import com.arthenica.ffmpegkit.FFprobeKit;
+import com.arthenica.ffmpegkit.MediaInformation;
+
+import java.io.File;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
 
 public class AudioUtil {
     public static final String TAG = AudioUtil.class.getSimpleName();
@@ -50,13 +52,26 @@ public class AudioUtil {
         return audioList;
     }
 
-    // duration example 00:50:47.57
-    public static int calculateSegments(Calendar duration, int eachSegmentDuration) {
-        int hours = duration.get(Calendar.HOUR_OF_DAY);
-        int minutes = duration.get(Calendar.MINUTE);
-        int seconds = duration.get(Calendar.SECOND);
-        double totalSeconds = (hours * 3600) + (minutes * 60) + seconds;
-
-        return (int) Math.ceil(totalSeconds / (eachSegmentDuration * 60));
+    /**
+     * Get the duration from the container headers, or by FFprobe if the headers are not supported.
+     *
+     * @return The duration in milliseconds, or {@link MediaProbe#UNKNOWN_DURATION}.
+     */
+    public static long probeDurationMs(String path) {
+        long durationMs = MediaProbe.probeDurationMs(new File(path));
+        if (durationMs > 0) {
+            return durationMs;
+        }
+        Log.d(TAG, "probeDurationMs# fall back to FFprobe, path=" + path);
+        MediaInformation information = FFprobeKit.getMediaInformation(path).getMediaInformation();
+        if (information == null || information.getDuration() == null) {
+            return MediaProbe.UNKNOWN_DURATION;
+        }
+        try {
+            // The format is like "3047.570000" in seconds.
+            return Math.round(Double.parseDouble(information.getDuration()) * 1000);
+        } catch (NumberFormatException e) {
+            return MediaProbe.UNKNOWN_DURATION;
+        }
     }
 }
@@ -0,0 +1,207 @@
+package com.optoma.meeting.util;
+
+import android.content.Context;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.arthenica.ffmpegkit.FFmpegKit;
+import com.arthenica.ffmpegkit.FFmpegSession;
+import com.arthenica.ffmpegkit.FFmpegSessionCompleteCallback;
+import com.arthenica.ffmpegkit.LogCallback;
+import com.arthenica.ffmpegkit.StatisticsCallback;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Run the FFmpeg sessions with a bounded number of them in flight.
+ * <p>
+ * The limit defaults to the number of cores, and shrinks when the device is hot, in power save
+ * mode or low on battery. Queued sessions with a lower priority value run first, e.g. the earlier
+ * segments of a split, so the following stages can start on them.
+ */
+public class FFmpegSessionScheduler {
+
+    private static final String TAG = FFmpegSessionScheduler.class.getSimpleName();
+
+    private static final int LOW_BATTERY_PERCENTAGE = 20;
+
+    private static volatile FFmpegSessionScheduler instance;
+    private static final Object lock = new Object();
+
+    private final PowerManager mPowerManager;
+    private final BatteryManager mBatteryManager;
+    private final int mAvailableProcessors = Runtime.getRuntime().availableProcessors();
+
+    private final PriorityQueue<PendingSession> mPendingSessions = new PriorityQueue<>();
+    private long mSequence;
+    private int mRunningCount;
+
+    // Diagnostics
+    private int mCompletedCount;
+    private long mTotalSessionDurationMs;
+    private long mMaxSessionDurationMs;
+    private long mTotalQueueWaitMs;
+
+    private FFmpegSessionScheduler(Context context) {
+        mPowerManager = context.getSystemService(PowerManager.class);
+        mBatteryManager = context.getSystemService(BatteryManager.class);
+    }
+
+    public static FFmpegSessionScheduler getInstance(Context context) {
+        if (instance == null) {
+            synchronized (lock) {
+                if (instance == null) {
+                    instance = new FFmpegSessionScheduler(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    public void executeAsync(String command, int priority,
+            FFmpegSessionCompleteCallback completeCallback) {
+        executeAsync(command, priority, completeCallback, null, null);
+    }
+
+    public void executeAsync(String command, int priority,
+            FFmpegSessionCompleteCallback completeCallback, LogCallback logCallback,
+            StatisticsCallback statisticsCallback) {
+        synchronized (this) {
+            mPendingSessions.add(new PendingSession(command, priority, mSequence++,
+                    completeCallback, logCallback, statisticsCallback));
+        }
+        drain();
+    }
+
+    /**
+     * Run the session through the queue and wait until it is completed.
+     */
+    public FFmpegSession execute(String command, int priority)
+            throws ExecutionException, InterruptedException {
+        CompletableFuture<FFmpegSession> future = new CompletableFuture<>();
+        executeAsync(command, priority, future::complete);
+        return future.get();
+    }
+
+    /**
+     * @return The number of sessions allowed to run at the same time under the current thermal
+     * and battery status.
+     */
+    public int getMaxConcurrentSessions() {
+        int limit = mAvailableProcessors;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && mPowerManager != null) {
+            int thermalStatus = mPowerManager.getCurrentThermalStatus();
+            if (thermalStatus >= PowerManager.THERMAL_STATUS_SEVERE) {
+                limit = 1;
+            } else if (thermalStatus >= PowerManager.THERMAL_STATUS_MODERATE) {
+                limit /= 2;
+            } else if (thermalStatus >= PowerManager.THERMAL_STATUS_LIGHT) {
+                limit -= 1;
+            }
+        }
+        if (isLowPower()) {
+            limit /= 2;
+        }
+        return Math.max(limit, 1);
+    }
+
+    private boolean isLowPower() {
+        if (mPowerManager != null && mPowerManager.isPowerSaveMode()) {
+            return true;
+        }
+        if (mBatteryManager == null || mBatteryManager.isCharging()) {
+            return false;
+        }
+        int capacity = mBatteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY);
+        return capacity > 0 && capacity <= LOW_BATTERY_PERCENTAGE;
+    }
+
+    public synchronized int getQueueDepth() {
+        return mPendingSessions.size();
+    }
+
+    public synchronized int getRunningCount() {
+        return mRunningCount;
+    }
+
+    public synchronized String getDiagnostics() {
+        long average = mCompletedCount > 0 ? mTotalSessionDurationMs / mCompletedCount : 0;
+        long averageWait = mCompletedCount > 0 ? mTotalQueueWaitMs / mCompletedCount : 0;
+        return "FFmpeg sessions: queued=" + mPendingSessions.size() +
+                ", running=" + mRunningCount +
+                ", limit=" + getMaxConcurrentSessions() +
+                ", completed=" + mCompletedCount +
+                ", avgDuration=" + average + "ms" +
+                ", maxDuration=" + mMaxSessionDurationMs + "ms" +
+                ", avgQueueWait=" + averageWait + "ms";
+    }
+
+    private void drain() {
+        while (true) {
+            PendingSession pendingSession;
+            synchronized (this) {
+                if (mPendingSessions.isEmpty() || mRunningCount >= getMaxConcurrentSessions()) {
+                    return;
+                }
+                pendingSession = mPendingSessions.poll();
+                mRunningCount++;
+            }
+            start(pendingSession);
+        }
+    }
+
+    private void start(PendingSession pendingSession) {
+        final long queueWaitMs = SystemClock.elapsedRealtime() - pendingSession.mEnqueueTime;
+        Log.d(TAG, "start# priority=" + pendingSession.mPriority + ", queueWait=" + queueWaitMs
+                + "ms");
+        FFmpegKit.executeAsync(pendingSession.mCommand, session -> {
+            synchronized (this) {
+                mRunningCount--;
+                mCompletedCount++;
+                mTotalSessionDurationMs += session.getDuration();
+                mMaxSessionDurationMs = Math.max(mMaxSessionDurationMs, session.getDuration());
+                mTotalQueueWaitMs += queueWaitMs;
+            }
+            try {
+                pendingSession.mCompleteCallback.apply(session);
+            } finally {
+                drain();
+            }
+        }, pendingSession.mLogCallback, pendingSession.mStatisticsCallback);
+    }
+
+    private static class PendingSession implements Comparable<PendingSession> {
+
+        final String mCommand;
+        final int mPriority;
+        final long mSequence;
+        final long mEnqueueTime = SystemClock.elapsedRealtime();
+        final FFmpegSessionCompleteCallback mCompleteCallback;
+        final LogCallback mLogCallback;
+        final StatisticsCallback mStatisticsCallback;
+
+        PendingSession(String command, int priority, long sequence,
+                FFmpegSessionCompleteCallback completeCallback, LogCallback logCallback,
+                StatisticsCallback statisticsCallback) {
+            mCommand = command;
+            mPriority = priority;
+            mSequence = sequence;
+            mCompleteCallback = completeCallback;
+            mLogCallback = logCallback;
+            mStatisticsCallback = statisticsCallback;
+        }
+
+        @Override
+        public int compareTo(PendingSession other) {
+            if (mPriority != other.mPriority) {
+                return Integer.compare(mPriority, other.mPriority);
+            }
+            return Long.compare(mSequence, other.mSequence);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.optoma.meeting.util;
+
+import android.os.Build;
+import android.os.FileObserver;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+/**
+ * Detect when a file is completely written, e.g. a picked audio file or the output of a live
+ * recording.
+ * <p>
+ * The file is ready when its writer closes it (CLOSE_WRITE), or when its size and modified time
+ * have not changed for the stable window. A file that was finished long ago is ready at once.
+ */
+public class FileStabilityDetector {
+
+    private static final String TAG = FileStabilityDetector.class.getSimpleName();
+
+    private static final long POLLING_INTERVAL_MS = 200;
+
+    private final long mStableWindowMs;
+    private final long mTimeoutMs;
+    private final ScheduledExecutorService mScheduler =
+            Executors.newSingleThreadScheduledExecutor();
+
+    public FileStabilityDetector(long stableWindowMs, long timeoutMs) {
+        mStableWindowMs = stableWindowMs;
+        mTimeoutMs = timeoutMs;
+    }
+
+    /**
+     * @return A future completed with the file once it is stable, or completed exceptionally with
+     * a {@link TimeoutException} if it is still not stable after the timeout.
+     */
+    public CompletableFuture<File> awaitStable(File file) {
+        CompletableFuture<File> future = new CompletableFuture<>();
+
+        FileObserver observer = createDirectoryObserver(file.getParentFile(), (event, path) -> {
+            if (file.getName().equals(path)) {
+                Log.d(TAG, "awaitStable# event=" + event + ", file=" + file);
+                future.complete(file);
+            }
+        });
+        observer.startWatching();
+
+        ScheduledFuture<?> polling = mScheduler.scheduleWithFixedDelay(
+                new StabilityCheck(file, future), 0, POLLING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> timeout = mScheduler.schedule(() -> future.completeExceptionally(
+                        new TimeoutException(file + " is not stable in " + mTimeoutMs + "ms")),
+                mTimeoutMs, TimeUnit.MILLISECONDS);
+
+        future.whenComplete((result, throwable) -> {
+            observer.stopWatching();
+            polling.cancel(false);
+            timeout.cancel(false);
+        });
+        return future;
+    }
+
+    /**
+     * Watch the files closed after writing or moved into the directory.
+     */
+    @SuppressWarnings("deprecation")
+    private static FileObserver createDirectoryObserver(File directory,
+            BiConsumer<Integer, String> listener) {
+        final int mask = FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return new FileObserver(directory, mask) {
+                @Override
+                public void onEvent(int event, String path) {
+                    listener.accept(event, path);
+                }
+            };
+        }
+        // The path constructor is deprecated since Q, but is the only one before it.
+        return new FileObserver(directory.getPath(), mask) {
+            @Override
+            public void onEvent(int event, String path) {
+                listener.accept(event, path);
+            }
+        };
+    }
+
+    public void destroy() {
+        mScheduler.shutdownNow();
+    }
+
+    private class StabilityCheck implements Runnable {
+
+        private final File mFile;
+        private final CompletableFuture<File> mFuture;
+
+        private long mLastSize = -1;
+        private long mLastModified = -1;
+        private long mStableSince;
+
+        StabilityCheck(File file, CompletableFuture<File> future) {
+            mFile = file;
+            mFuture = future;
+        }
+
+        @Override
+        public void run() {
+            long size = mFile.length();
+            long lastModified = mFile.lastModified();
+            long now = SystemClock.elapsedRealtime();
+            if (size != mLastSize || lastModified != mLastModified) {
+                mLastSize = size;
+                mLastModified = lastModified;
+                mStableSince = now;
+            }
+
+            boolean unchanged = now - mStableSince >= mStableWindowMs;
+            boolean finishedBefore = System.currentTimeMillis() - lastModified >= mStableWindowMs;
+            if (size > 0 && (unchanged || finishedBefore)) {
+                Log.d(TAG, "awaitStable# size=" + size + ", file=" + mFile);
+                mFuture.complete(mFile);
+            }
+        }
+    }
+}
@@ -173,6 +173,10 @@ public class FileUtil {
     }
 
     public static String createNewAudioFilePath(String path, int partNumber) {
+        return createNewAudioFilePath(path, partNumber, "wav");
+    }
+
+    public static String createNewAudioFilePath(String path, int partNumber, String extension) {
         if (path == null) {
             Log.e(TAG, "transcodeAudioResource failed. The absolute path is null");
             return null;
@@ -193,7 +197,8 @@ public class FileUtil {
                 timestamp +
                 "_" +
                 partNumber +
-                ".wav";
+                "." +
+                extension;
         String newFileAbsolutePath = path.substring(0,
                 path.lastIndexOf("/")) + "/" + newFileName;
         File newFile = new File(newFileAbsolutePath);
@@ -212,6 +217,31 @@ public class FileUtil {
         return newFileAbsolutePath;
     }
 
+    /**
+     * Create the output pattern for the FFmpeg segment muxer, e.g. "/dir/name_20231001_1200_%d.wav".
+     * Any '%' of the original path is escaped, so the pattern can be resolved by both FFmpeg and
+     * {@link #resolveAudioFilePathPattern(String, int)}.
+     */
+    public static String createNewAudioFilePathPattern(String path, String extension) {
+        if (path == null) {
+            Log.e(TAG, "createNewAudioFilePathPattern failed. The absolute path is null");
+            return null;
+        }
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd_HHmm", Locale.getDefault());
+        String timestamp = format.format(new Date());
+        String newFileName = path.substring(path.lastIndexOf("/") + 1, path.lastIndexOf("."))
+                .replace("%", "%%") +
+                "_" +
+                timestamp +
+                "_%d." +
+                extension;
+        return path.substring(0, path.lastIndexOf("/")).replace("%", "%%") + "/" + newFileName;
+    }
+
+    public static String resolveAudioFilePathPattern(String pathPattern, int partNumber) {
+        return String.format(Locale.US, pathPattern, partNumber);
+    }
+
     public static int extractPartNumber(String absolutePath) {
         String fileName = absolutePath.substring(absolutePath.lastIndexOf("/") + 1);
 
@@ -0,0 +1,153 @@
+package com.optoma.meeting.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * The raw 16-bit little-endian mono PCM that a decoder is still writing into a file.
+ * <p>
+ * It is read while it grows, so the silence analysis and the segments of a split can start as
+ * soon as the decoder has passed them, instead of after the whole input is decoded. A reader at
+ * the end of the written data waits until the decoder writes more or {@link #finish(boolean)} is
+ * called. The file is deleted when this is closed.
+ */
+public class GrowingPcmFile implements Closeable {
+
+    private static final int BYTES_PER_SAMPLE = 2;
+    // How often a waiting reader checks the size of the file.
+    private static final long POLL_INTERVAL_MS = 50;
+
+    private final File mFile;
+    private final RandomAccessFile mRandomAccessFile;
+    private final FileChannel mChannel;
+    private final int mSampleRate;
+    private boolean mFinished;
+    private boolean mSucceeded;
+
+    /**
+     * @param file       The file the decoder writes, it must exist already.
+     * @param sampleRate The sample rate of the PCM.
+     */
+    public GrowingPcmFile(File file, int sampleRate) throws IOException {
+        mFile = file;
+        mRandomAccessFile = new RandomAccessFile(file, "r");
+        mChannel = mRandomAccessFile.getChannel();
+        mSampleRate = sampleRate;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * Called when the decoder ends. The readers then read until the end of the file, or fail if
+     * the decoder failed.
+     */
+    public synchronized void finish(boolean success) {
+        mFinished = true;
+        mSucceeded = success;
+        notifyAll();
+    }
+
+    /**
+     * Wait until the PCM up to the position is written, or the decoder has ended.
+     *
+     * @param endMs The position to wait for, {@link Long#MAX_VALUE} for the end of the input.
+     * @return The position, or the end of the input if it is earlier.
+     */
+    public long awaitMs(long endMs) throws IOException {
+        long endBytes = endMs == Long.MAX_VALUE ? Long.MAX_VALUE : toBytes(endMs);
+        return Math.min(endMs, toMillis(awaitBytes(endBytes)));
+    }
+
+    /**
+     * @return The size of the written PCM, at least the given size unless the decoder has ended.
+     */
+    private synchronized long awaitBytes(long size) throws IOException {
+        while (true) {
+            // Once the decoder has ended, the size read after it is final.
+            boolean finished = mFinished;
+            long written = mChannel.size();
+            if (finished && !mSucceeded) {
+                throw new IOException("Fail to decode into " + mFile);
+            }
+            if (written >= size || finished) {
+                return written - written % BYTES_PER_SAMPLE;
+            }
+            try {
+                wait(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for " + mFile);
+            }
+        }
+    }
+
+    /**
+     * @return A channel that reads the PCM from the start, and waits at the end of the written data
+     * until the decoder writes more.
+     */
+    public ReadableByteChannel openChannel() {
+        return new ReadableByteChannel() {
+            private long mPosition;
+
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                long available = awaitBytes(mPosition + BYTES_PER_SAMPLE) - mPosition;
+                if (available <= 0) {
+                    return -1;
+                }
+                int limit = dst.limit();
+                if (dst.remaining() > available) {
+                    dst.limit(dst.position() + (int) available);
+                }
+                int read = mChannel.read(dst, mPosition);
+                dst.limit(limit);
+                if (read > 0) {
+                    mPosition += read;
+                }
+                return read;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return mChannel.isOpen();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Write the PCM from startMs to endMs as a new WAV file. The range must have been waited for
+     * by {@link #awaitMs(long)}.
+     */
+    public void writeSegment(File output, long startMs, long endMs) throws IOException {
+        long start = toBytes(startMs);
+        long size = Math.max(toBytes(endMs) - start, 0);
+        WavSlicer.writeWav(mChannel, start, size, mSampleRate, output);
+    }
+
+    private long toBytes(long ms) {
+        long position = ms * mSampleRate / 1000 * BYTES_PER_SAMPLE;
+        return position - position % BYTES_PER_SAMPLE;
+    }
+
+    private long toMillis(long bytes) {
+        return bytes / BYTES_PER_SAMPLE * 1000 / mSampleRate;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mRandomAccessFile.close();
+        mFile.delete();
+    }
+}
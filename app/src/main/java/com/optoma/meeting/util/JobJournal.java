@@ -0,0 +1,469 @@
+package com.optoma.meeting.util;
+
+import android.util.Log;
+
+import com.optoma.meeting.model.OffsetRemapTable;
+import com.optoma.meeting.model.SegmentReady;
+import com.optoma.meeting.model.TranscriptionMode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * An append-only journal of the stages of one job, so a job survives a restart of the service.
+ * <p>
+ * Each job has its own directory with a "journal" file of tab-separated records, one per line.
+ * A record is appended and forced to the disk after its stage is complete, and a larger payload,
+ * like a fetched result or a summary, is written to its own file by a rename before its record.
+ * Replaying the journal rebuilds the completed stages, and a line cut by a crash is removed.
+ * The directory also holds the work directory of the split, and is deleted when the job ends.
+ * <p>
+ * The journal is an aid for the recovery, so a failure to write it is logged and never fails the
+ * job.
+ */
+public class JobJournal {
+
+    private static final String TAG = JobJournal.class.getSimpleName();
+
+    private static final String JOURNAL_FILE_NAME = "journal";
+    private static final String WORK_DIR_NAME = "work";
+
+    private static final String RECORD_JOB = "JOB";
+    private static final String RECORD_SEGMENT = "SEGMENT";
+    private static final String RECORD_TOTAL = "TOTAL";
+    private static final String RECORD_UPLOADED = "UPLOADED";
+    private static final String RECORD_SUBMITTED = "SUBMITTED";
+    private static final String RECORD_FETCHED = "FETCHED";
+    private static final String RECORD_TRANSCRIBED = "TRANSCRIBED";
+    private static final String RECORD_SUMMARY = "SUMMARY";
+    private static final String RECORD_RESUMED = "RESUMED";
+
+    public final String jobId;
+
+    private final File mDir;
+    private FileChannel mChannel;
+
+    // The completed stages, they are only filled by the replay of a journal.
+    private String mLanguage;
+    // The journals written before the mode was recorded are of batch jobs.
+    private TranscriptionMode mMode = TranscriptionMode.BATCH;
+    private final Map<Integer, SegmentReady> mSegments = new TreeMap<>();
+    private final Map<Integer, String> mContentUrls = new HashMap<>();
+    private final Map<String, List<Integer>> mTranscriptions = new LinkedHashMap<>();
+    private final TreeSet<Integer> mFetchedPartNumbers = new TreeSet<>();
+    private final TreeSet<Integer> mSummaryPartNumbers = new TreeSet<>();
+    private int mTotalSegmentCount = -1;
+    private long mTranscribedTimestamp = -1;
+    private int mResumeCount;
+
+    private JobJournal(File rootDir, String jobId) {
+        this.jobId = jobId;
+        mDir = new File(rootDir, jobId);
+    }
+
+    /**
+     * Start the journal of a new job.
+     */
+    public static JobJournal create(File rootDir, String jobId, String language,
+            TranscriptionMode mode) {
+        JobJournal journal = new JobJournal(rootDir, jobId);
+        journal.mLanguage = language;
+        journal.mMode = mode;
+        journal.append(RECORD_JOB, language, mode.name());
+        return journal;
+    }
+
+    /**
+     * @return The journals of the jobs that did not end, replayed and ready for appending.
+     */
+    public static List<JobJournal> recover(File rootDir) {
+        List<JobJournal> journals = new ArrayList<>();
+        File[] dirs = rootDir.listFiles(File::isDirectory);
+        if (dirs == null) {
+            return journals;
+        }
+        Arrays.sort(dirs);
+        for (File dir : dirs) {
+            JobJournal journal = new JobJournal(rootDir, dir.getName());
+            if (journal.replay()) {
+                journals.add(journal);
+            } else {
+                journal.delete();
+            }
+        }
+        return journals;
+    }
+
+    public void appendSegment(SegmentReady segment) {
+        OffsetRemapTable table = segment.offsetRemapTable;
+        StringBuilder spans = new StringBuilder();
+        for (int i = 0; i < table.getSpanCount(); i++) {
+            if (i > 0) {
+                spans.append(',');
+            }
+            spans.append(table.getTrimmedStartMs(i)).append(':')
+                    .append(table.getOriginalStartMs(i));
+        }
+        append(RECORD_SEGMENT, String.valueOf(segment.partNumber), segment.path,
+                String.valueOf(segment.startOffsetMs), String.valueOf(segment.durationMs),
+                String.valueOf(segment.tempoFactor), spans.toString(),
+                String.valueOf(table.getTrimmedDurationMs()),
+                String.valueOf(table.getOriginalDurationMs()));
+    }
+
+    public void appendTotal(int totalSegmentCount) {
+        append(RECORD_TOTAL, String.valueOf(totalSegmentCount));
+    }
+
+    public void appendUploaded(int partNumber, String contentUrl) {
+        append(RECORD_UPLOADED, String.valueOf(partNumber), contentUrl);
+    }
+
+    public void appendSubmitted(String transcriptionId, List<Integer> partNumbers) {
+        StringBuilder parts = new StringBuilder();
+        for (int partNumber : partNumbers) {
+            if (parts.length() > 0) {
+                parts.append(',');
+            }
+            parts.append(partNumber);
+        }
+        append(RECORD_SUBMITTED, transcriptionId, parts.toString());
+    }
+
+    /**
+     * @param result The fetched result of the part, as it is returned by the service.
+     */
+    public void appendFetched(int partNumber, String result) {
+        if (writePayload(getResultFileName(partNumber), result)) {
+            append(RECORD_FETCHED, String.valueOf(partNumber));
+        }
+    }
+
+    /**
+     * @param partNumberToConversation The transcription of each part for the summary.
+     */
+    public void appendTranscribed(Map<Integer, String> partNumberToConversation, long timestamp) {
+        for (Map.Entry<Integer, String> entry : partNumberToConversation.entrySet()) {
+            if (!writePayload(getConversationFileName(entry.getKey()), entry.getValue())) {
+                return;
+            }
+        }
+        append(RECORD_TRANSCRIBED, String.valueOf(timestamp),
+                String.valueOf(partNumberToConversation.size()));
+    }
+
+    public void appendSummary(int partNumber, String summary) {
+        if (writePayload(getSummaryFileName(partNumber), summary)) {
+            append(RECORD_SUMMARY, String.valueOf(partNumber));
+        }
+    }
+
+    /**
+     * Count the restarts of the job, a job that keeps failing is eventually dropped.
+     */
+    public void appendResumed() {
+        mResumeCount++;
+        append(RECORD_RESUMED, String.valueOf(mResumeCount));
+    }
+
+    public String getLanguage() {
+        return mLanguage;
+    }
+
+    public TranscriptionMode getMode() {
+        return mMode;
+    }
+
+    public List<SegmentReady> getSegments() {
+        return new ArrayList<>(mSegments.values());
+    }
+
+    public String getContentUrl(int partNumber) {
+        return mContentUrls.get(partNumber);
+    }
+
+    public Map<String, List<Integer>> getTranscriptions() {
+        return Collections.unmodifiableMap(mTranscriptions);
+    }
+
+    public List<Integer> getFetchedPartNumbers() {
+        return new ArrayList<>(mFetchedPartNumbers);
+    }
+
+    public int getTotalSegmentCount() {
+        return mTotalSegmentCount;
+    }
+
+    /**
+     * @return The timestamp of the transcription, -1 if the transcription is not complete.
+     */
+    public long getTranscribedTimestamp() {
+        return mTranscribedTimestamp;
+    }
+
+    public int getResumeCount() {
+        return mResumeCount;
+    }
+
+    public String readResult(int partNumber) throws IOException {
+        return readPayload(getResultFileName(partNumber));
+    }
+
+    public Map<Integer, String> readConversations() throws IOException {
+        Map<Integer, String> partNumberToConversation = new HashMap<>();
+        File[] files = mDir.listFiles((dir, name) -> name.startsWith("conversation_") && name.endsWith(".txt"));
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                int partNumber = Integer.parseInt(
+                        name.substring(name.indexOf('_') + 1, name.lastIndexOf('.')));
+                partNumberToConversation.put(partNumber, readPayload(name));
+            }
+        }
+        return partNumberToConversation;
+    }
+
+    /**
+     * @return The summary of the part, null if it is not summarized yet.
+     */
+    public String readSummary(int partNumber) {
+        if (!mSummaryPartNumbers.contains(partNumber)) {
+            return null;
+        }
+        try {
+            return readPayload(getSummaryFileName(partNumber));
+        } catch (IOException e) {
+            Log.w(TAG, "readSummary# " + e);
+            return null;
+        }
+    }
+
+    /**
+     * @return The directory of the intermediate files and the segments of the job. They are kept
+     * for a resume and deleted with the journal, so the jobs at the same time never delete the
+     * files of each other.
+     */
+    public File getWorkDir() {
+        return new File(mDir, WORK_DIR_NAME);
+    }
+
+    /**
+     * End the job, its journal, payloads and work directory are deleted.
+     */
+    public synchronized void delete() {
+        close();
+        deleteRecursively(mDir);
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    public synchronized void close() {
+        if (mChannel != null) {
+            try {
+                mChannel.close();
+            } catch (IOException e) {
+                Log.w(TAG, "close# " + e);
+            }
+            mChannel = null;
+        }
+    }
+
+    private synchronized void append(String... fields) {
+        StringBuilder line = new StringBuilder();
+        for (String field : fields) {
+            if (line.length() > 0) {
+                line.append('\t');
+            }
+            line.append(field);
+        }
+        line.append('\n');
+        try {
+            if (mChannel == null) {
+                if (!mDir.exists() && !mDir.mkdirs()) {
+                    throw new IOException("Fail to create " + mDir);
+                }
+                mChannel = FileChannel.open(new File(mDir, JOURNAL_FILE_NAME).toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(line.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                mChannel.write(buffer);
+            }
+            mChannel.force(false);
+        } catch (IOException e) {
+            Log.w(TAG, "append# " + fields[0] + " of " + jobId + ", " + e);
+        }
+    }
+
+    /**
+     * Rebuild the completed stages from the journal.
+     *
+     * @return False if the journal is missing or does not start a job.
+     */
+    private boolean replay() {
+        File file = new File(mDir, JOURNAL_FILE_NAME);
+        String content;
+        try {
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            // The bytes after the last line break are a record cut by a crash. They are removed,
+            // so the next record is not appended to them.
+            int length = bytes.length;
+            while (length > 0 && bytes[length - 1] != '\n') {
+                length--;
+            }
+            if (length < bytes.length) {
+                Log.w(TAG, "replay# remove the cut record of " + jobId);
+                try (RandomAccessFile journalFile = new RandomAccessFile(file, "rw")) {
+                    journalFile.setLength(length);
+                }
+            }
+            content = new String(bytes, 0, length, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            Log.w(TAG, "replay# " + jobId + ", " + e);
+            return false;
+        }
+        String[] lines = content.split("\n");
+        for (String line : lines) {
+            String[] fields = line.split("\t", -1);
+            try {
+                replay(fields);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "replay# skip " + line + ", " + e);
+            }
+        }
+        return mLanguage != null;
+    }
+
+    private void replay(String[] fields) {
+        switch (fields[0]) {
+            case RECORD_JOB:
+                mLanguage = fields[1];
+                if (fields.length > 2) {
+                    mMode = TranscriptionMode.fromName(fields[2], TranscriptionMode.BATCH);
+                }
+                break;
+            case RECORD_SEGMENT:
+                String[] spans = fields[6].split(",");
+                long[] trimmedStartMs = new long[spans.length];
+                long[] originalStartMs = new long[spans.length];
+                for (int i = 0; i < spans.length; i++) {
+                    String[] span = spans[i].split(":");
+                    trimmedStartMs[i] = Long.parseLong(span[0]);
+                    originalStartMs[i] = Long.parseLong(span[1]);
+                }
+                int partNumber = Integer.parseInt(fields[1]);
+                mSegments.put(partNumber, new SegmentReady(partNumber, fields[2],
+                        Long.parseLong(fields[3]), Long.parseLong(fields[4]),
+                        new OffsetRemapTable(trimmedStartMs, originalStartMs,
+                                Long.parseLong(fields[7]), Long.parseLong(fields[8])),
+                        Float.parseFloat(fields[5])));
+                break;
+            case RECORD_TOTAL:
+                mTotalSegmentCount = Integer.parseInt(fields[1]);
+                break;
+            case RECORD_UPLOADED:
+                mContentUrls.put(Integer.parseInt(fields[1]), fields[2]);
+                break;
+            case RECORD_SUBMITTED:
+                List<Integer> partNumbers = new ArrayList<>();
+                for (String part : fields[2].split(",")) {
+                    partNumbers.add(Integer.parseInt(part));
+                }
+                mTranscriptions.put(fields[1], Collections.unmodifiableList(partNumbers));
+                break;
+            case RECORD_FETCHED:
+                mFetchedPartNumbers.add(Integer.parseInt(fields[1]));
+                break;
+            case RECORD_TRANSCRIBED:
+                mTranscribedTimestamp = Long.parseLong(fields[1]);
+                break;
+            case RECORD_SUMMARY:
+                mSummaryPartNumbers.add(Integer.parseInt(fields[1]));
+                break;
+            case RECORD_RESUMED:
+                mResumeCount = Integer.parseInt(fields[1]);
+                break;
+            default:
+                Log.w(TAG, "replay# unknown record " + fields[0]);
+                break;
+        }
+    }
+
+    /**
+     * Write the payload to a temporary file and rename it, so it is either complete or missing.
+     */
+    private boolean writePayload(String name, String payload) {
+        File tempFile = new File(mDir, name + ".tmp");
+        try {
+            if (!mDir.exists() && !mDir.mkdirs()) {
+                throw new IOException("Fail to create " + mDir);
+            }
+            try (FileOutputStream outputStream = new FileOutputStream(tempFile)) {
+                outputStream.write(payload.getBytes(StandardCharsets.UTF_8));
+                outputStream.getFD().sync();
+            }
+            if (!tempFile.renameTo(new File(mDir, name))) {
+                throw new IOException("Fail to rename " + tempFile);
+            }
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "writePayload# " + name + " of " + jobId + ", " + e);
+            tempFile.delete();
+            return false;
+        }
+    }
+
+    private String readPayload(String name) throws IOException {
+        return new String(Files.readAllBytes(new File(mDir, name).toPath()),
+                StandardCharsets.UTF_8);
+    }
+
+    private static String getResultFileName(int partNumber) {
+        return "result_" + partNumber + ".json";
+    }
+
+    private static String getConversationFileName(int partNumber) {
+        return "conversation_" + partNumber + ".txt";
+    }
+
+    private static String getSummaryFileName(int partNumber) {
+        return "summary_" + partNumber + ".txt";
+    }
+
+    @Override
+    public String toString() {
+        return "JobJournal{jobId=" + jobId + ", mode=" + mMode
+                + ", segments=" + mSegments.size()
+                + ", total=" + mTotalSegmentCount + ", uploaded=" + mContentUrls.size()
+                + ", transcriptions=" + mTranscriptions.size()
+                + ", fetched=" + mFetchedPartNumbers.size()
+                + ", transcribed=" + (mTranscribedTimestamp >= 0)
+                + ", summaries=" + mSummaryPartNumbers.size()
+                + ", resumed=" + mResumeCount + "}";
+    }
+}
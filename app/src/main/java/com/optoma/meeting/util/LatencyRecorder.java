@@ -0,0 +1,72 @@
+package com.optoma.meeting.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Record how long each segment of a job takes from its split to its transcript, to compare the
+ * transcription modes on the same recording. The times are in milliseconds of one clock, like
+ * {@link android.os.SystemClock#elapsedRealtime()}.
+ * <p>
+ * It is not thread-safe, it is used on the main thread.
+ */
+public class LatencyRecorder {
+
+    private long mStartMs = -1;
+    private long mFirstOutputMs = -1;
+    private final Map<Integer, Long> mReadyMs = new HashMap<>();
+    private long[] mLatenciesMs = new long[16];
+    private int mLatencyCount;
+
+    public void start(long nowMs) {
+        mStartMs = nowMs;
+    }
+
+    public void onSegmentReady(int partNumber, long nowMs) {
+        mReadyMs.put(partNumber, nowMs);
+    }
+
+    public void onSegmentDone(int partNumber, long nowMs) {
+        Long readyMs = mReadyMs.remove(partNumber);
+        if (readyMs == null) {
+            return;
+        }
+        if (mLatencyCount == mLatenciesMs.length) {
+            mLatenciesMs = Arrays.copyOf(mLatenciesMs, mLatencyCount * 2);
+        }
+        mLatenciesMs[mLatencyCount++] = nowMs - readyMs;
+    }
+
+    /**
+     * Record the first transcript sent to the client.
+     */
+    public void onOutput(long nowMs) {
+        if (mFirstOutputMs < 0) {
+            mFirstOutputMs = nowMs;
+        }
+    }
+
+    /**
+     * @return A line like "first=1200ms, total=5400ms, segments=3, p50=900ms, p90=1500ms,
+     * max=1600ms".
+     */
+    public String summarize(long nowMs) {
+        long[] latencies = Arrays.copyOf(mLatenciesMs, mLatencyCount);
+        Arrays.sort(latencies);
+        return "first=" + (mFirstOutputMs >= 0 ? mFirstOutputMs - mStartMs : -1)
+                + "ms, total=" + (nowMs - mStartMs)
+                + "ms, segments=" + latencies.length
+                + ", p50=" + percentile(latencies, 50)
+                + "ms, p90=" + percentile(latencies, 90)
+                + "ms, max=" + percentile(latencies, 100) + "ms";
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return -1;
+        }
+        int index = (int) Math.ceil(sorted.length * percent / 100.0) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
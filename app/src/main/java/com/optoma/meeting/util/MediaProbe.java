@@ -0,0 +1,227 @@
+package com.optoma.meeting.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read the duration of an audio file from its container headers, without decoding it.
+ * <p>
+ * Supports WAV (RIFF), MP4/M4A (mvhd), Ogg Vorbis/Opus (the granule position of the last page)
+ * and MP3 (Xing/Info/VBRI header, or the bitrate of a CBR stream).
+ */
+public class MediaProbe {
+
+    public static final long UNKNOWN_DURATION = -1;
+
+    private static final int OGG_TAIL_SIZE = 64 * 1024;
+
+    private static final int[] MP3_BITRATES_V1_L3 =
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320};
+    private static final int[] MP3_BITRATES_V2_L3 =
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160};
+    private static final int[] MP3_SAMPLE_RATES_V1 = {44100, 48000, 32000};
+
+    private MediaProbe() {
+    }
+
+    /**
+     * @return The duration in milliseconds, or {@link #UNKNOWN_DURATION} if the format is not
+     * supported or the headers are broken.
+     */
+    public static long probeDurationMs(File file) {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            ByteBuffer header = read(channel, 0, 12);
+            if (header.remaining() < 12) {
+                return UNKNOWN_DURATION;
+            }
+            if (matches(header, 0, "RIFF") && matches(header, 8, "WAVE")) {
+                return probeWav(channel);
+            } else if (matches(header, 4, "ftyp")) {
+                return probeMp4(channel);
+            } else if (matches(header, 0, "OggS")) {
+                return probeOgg(channel);
+            } else {
+                return probeMp3(channel);
+            }
+        } catch (IOException | RuntimeException e) {
+            return UNKNOWN_DURATION;
+        }
+    }
+
+    private static long probeWav(FileChannel channel) throws IOException {
+        long byteRate = 0;
+        long position = 12;
+        while (position + 8 <= channel.size()) {
+            ByteBuffer chunk = read(channel, position, 20).order(ByteOrder.LITTLE_ENDIAN);
+            long chunkSize = chunk.getInt(4) & 0xFFFFFFFFL;
+            if (matches(chunk, 0, "fmt ")) {
+                byteRate = chunk.getInt(8 + 8) & 0xFFFFFFFFL;
+            } else if (matches(chunk, 0, "data")) {
+                // The size of a streamed WAV may be left as 0 or 0xFFFFFFFF.
+                long dataSize = Math.min(chunkSize, channel.size() - position - 8);
+                if (dataSize <= 0) {
+                    dataSize = channel.size() - position - 8;
+                }
+                return byteRate > 0 ? dataSize * 1000 / byteRate : UNKNOWN_DURATION;
+            }
+            // Chunks are padded to an even size.
+            position += 8 + chunkSize + (chunkSize & 1);
+        }
+        return UNKNOWN_DURATION;
+    }
+
+    private static long probeMp4(FileChannel channel) throws IOException {
+        boolean insideMoov = false;
+        long position = 0;
+        long end = channel.size();
+        while (position + 8 <= end) {
+            ByteBuffer box = read(channel, position, 16);
+            long boxSize = box.getInt(0) & 0xFFFFFFFFL;
+            int headerSize = 8;
+            if (boxSize == 1) {
+                boxSize = box.getLong(8);
+                headerSize = 16;
+            } else if (boxSize == 0) {
+                boxSize = end - position;
+            }
+            if (boxSize < headerSize) {
+                return UNKNOWN_DURATION;
+            }
+            if (!insideMoov && matches(box, 4, "moov")) {
+                // Walk into the children of the moov box.
+                insideMoov = true;
+                end = position + boxSize;
+                position += headerSize;
+                continue;
+            }
+            if (insideMoov && matches(box, 4, "mvhd")) {
+                ByteBuffer mvhd = read(channel, position + headerSize, 32);
+                int version = mvhd.get(0);
+                long timescale;
+                long duration;
+                if (version == 1) {
+                    timescale = mvhd.getInt(20) & 0xFFFFFFFFL;
+                    duration = mvhd.getLong(24);
+                } else {
+                    timescale = mvhd.getInt(12) & 0xFFFFFFFFL;
+                    duration = mvhd.getInt(16) & 0xFFFFFFFFL;
+                }
+                return timescale > 0 ? duration * 1000 / timescale : UNKNOWN_DURATION;
+            }
+            position += boxSize;
+        }
+        return UNKNOWN_DURATION;
+    }
+
+    private static long probeOgg(FileChannel channel) throws IOException {
+        // The first packet is the identification header of the codec.
+        ByteBuffer firstPage = read(channel, 0, 27 + 255 + 32).order(ByteOrder.LITTLE_ENDIAN);
+        int segmentCount = firstPage.get(26) & 0xFF;
+        int packetStart = 27 + segmentCount;
+        long sampleRate;
+        long preSkip = 0;
+        if (matches(firstPage, packetStart + 1, "vorbis")) {
+            sampleRate = firstPage.getInt(packetStart + 12) & 0xFFFFFFFFL;
+        } else if (matches(firstPage, packetStart, "OpusHead")) {
+            // The granule position of Opus is always in 48 kHz.
+            sampleRate = 48000;
+            preSkip = firstPage.getShort(packetStart + 10) & 0xFFFF;
+        } else {
+            return UNKNOWN_DURATION;
+        }
+
+        // The granule position of the last page is the total number of samples.
+        long tailStart = Math.max(0, channel.size() - OGG_TAIL_SIZE);
+        ByteBuffer tail = read(channel, tailStart, OGG_TAIL_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = tail.limit() - 14; i >= 0; i--) {
+            if (matches(tail, i, "OggS")) {
+                long granulePosition = tail.getLong(i + 6);
+                return sampleRate > 0 && granulePosition > preSkip
+                        ? (granulePosition - preSkip) * 1000 / sampleRate
+                        : UNKNOWN_DURATION;
+            }
+        }
+        return UNKNOWN_DURATION;
+    }
+
+    private static long probeMp3(FileChannel channel) throws IOException {
+        long audioStart = 0;
+        ByteBuffer id3 = read(channel, 0, 10);
+        if (matches(id3, 0, "ID3")) {
+            // The size of the ID3v2 tag is a syncsafe integer.
+            long tagSize = ((id3.get(6) & 0x7F) << 21) | ((id3.get(7) & 0x7F) << 14)
+                    | ((id3.get(8) & 0x7F) << 7) | (id3.get(9) & 0x7F);
+            boolean hasFooter = (id3.get(5) & 0x10) != 0;
+            audioStart = 10 + tagSize + (hasFooter ? 10 : 0);
+        }
+
+        ByteBuffer frame = read(channel, audioStart, 4 + 32 + 18);
+        int header = frame.getInt(0);
+        if ((header & 0xFFE00000) != 0xFFE00000) {
+            return UNKNOWN_DURATION;
+        }
+        int versionBits = (header >> 19) & 0x3;
+        int layerBits = (header >> 17) & 0x3;
+        int bitrateIndex = (header >> 12) & 0xF;
+        int sampleRateIndex = (header >> 10) & 0x3;
+        int channelMode = (header >> 6) & 0x3;
+        // Only the Layer III is probed, the others are rare for recordings.
+        if (versionBits == 1 || layerBits != 1 || sampleRateIndex == 3) {
+            return UNKNOWN_DURATION;
+        }
+        boolean mpeg1 = versionBits == 3;
+        int sampleRate = MP3_SAMPLE_RATES_V1[sampleRateIndex] >> (mpeg1 ? 0 : versionBits == 2 ? 1 : 2);
+        int samplesPerFrame = mpeg1 ? 1152 : 576;
+
+        int xingOffset = 4 + (mpeg1 ? (channelMode == 3 ? 17 : 32) : (channelMode == 3 ? 9 : 17));
+        if (matches(frame, xingOffset, "Xing") || matches(frame, xingOffset, "Info")) {
+            int flags = frame.getInt(xingOffset + 4);
+            if ((flags & 0x1) != 0) {
+                long frames = frame.getInt(xingOffset + 8) & 0xFFFFFFFFL;
+                return frames * samplesPerFrame * 1000 / sampleRate;
+            }
+        } else if (matches(frame, 4 + 32, "VBRI")) {
+            long frames = frame.getInt(4 + 32 + 14) & 0xFFFFFFFFL;
+            return frames * samplesPerFrame * 1000 / sampleRate;
+        }
+
+        // No VBR header, treat it as a CBR stream.
+        int bitrateKbps = (mpeg1 ? MP3_BITRATES_V1_L3 : MP3_BITRATES_V2_L3)[bitrateIndex];
+        if (bitrateKbps == 0) {
+            return UNKNOWN_DURATION;
+        }
+        return (channel.size() - audioStart) * 8 / bitrateKbps;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int size)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static boolean matches(ByteBuffer buffer, int offset, String tag) {
+        if (offset < 0 || offset + tag.length() > buffer.limit()) {
+            return false;
+        }
+        byte[] bytes = tag.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
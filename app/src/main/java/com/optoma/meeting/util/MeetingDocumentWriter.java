@@ -0,0 +1,137 @@
+package com.optoma.meeting.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Write a meeting document, like the minutes or the actions, in UTF-8 as its parts arrive.
+ * <p>
+ * The text is encoded into one reused buffer and written to a temporary file beside the document
+ * when the buffer is full, so the memory does not grow with the length of the meeting. The
+ * document appears only after {@link #commit()} renames the temporary file to it, so a reader
+ * never sees half of it. Closing a writer that is not committed deletes the temporary file.
+ * <p>
+ * It is not thread-safe, all calls must be made on one thread at a time.
+ */
+public class MeetingDocumentWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final File mFile;
+    private final File mTempFile;
+    private final FileChannel mChannel;
+    private final CharsetEncoder mEncoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer mBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    // The high surrogate at the end of the last text, it is encoded with the next text.
+    private char mPendingChar;
+    private boolean mHasPendingChar;
+
+    private boolean mClosed;
+
+    private MeetingDocumentWriter(File file, File tempFile, FileChannel channel) {
+        mFile = file;
+        mTempFile = tempFile;
+        mChannel = channel;
+    }
+
+    /**
+     * Start the document, an unfinished document of an earlier writer is overwritten.
+     */
+    public static MeetingDocumentWriter open(File file) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new MeetingDocumentWriter(file, tempFile, channel);
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    public MeetingDocumentWriter append(CharSequence text) throws IOException {
+        checkNotClosed();
+        CharBuffer input = CharBuffer.wrap(mHasPendingChar
+                ? new StringBuilder(text.length() + 1).append(mPendingChar).append(text) : text);
+        encode(input, false);
+        // Only half of a surrogate pair can be left, keep it for the next text.
+        mHasPendingChar = input.hasRemaining();
+        if (mHasPendingChar) {
+            mPendingChar = input.get();
+        }
+        return this;
+    }
+
+    /**
+     * Write the rest of the document to the storage and move it to its name.
+     */
+    public void commit() throws IOException {
+        checkNotClosed();
+        encode(CharBuffer.wrap(mHasPendingChar ? String.valueOf(mPendingChar) : ""), true);
+        mHasPendingChar = false;
+        while (mEncoder.flush(mBuffer).isOverflow()) {
+            writeBuffer();
+        }
+        writeBuffer();
+        mChannel.force(false);
+        mChannel.close();
+        mClosed = true;
+        if (!mTempFile.renameTo(mFile)) {
+            mTempFile.delete();
+            throw new IOException("Fail to rename " + mTempFile + " to " + mFile);
+        }
+    }
+
+    /**
+     * Drop the document if it is not committed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        try {
+            mChannel.close();
+        } finally {
+            mTempFile.delete();
+        }
+    }
+
+    private void encode(CharBuffer input, boolean endOfInput) throws IOException {
+        while (true) {
+            CoderResult result = mEncoder.encode(input, mBuffer, endOfInput);
+            if (result.isOverflow()) {
+                writeBuffer();
+            } else if (result.isUnderflow()) {
+                return;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) {
+            mChannel.write(mBuffer);
+        }
+        mBuffer.clear();
+    }
+
+    private void checkNotClosed() throws IOException {
+        if (mClosed) {
+            throw new IOException("The writer of " + mFile + " is closed");
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.optoma.meeting.util;
+
+import com.optoma.meeting.model.Transcript;
+
+/**
+ * Remove the duplicated phrases of two adjacent segments that overlap each other.
+ * <p>
+ * The earlier segment owns the first half of the overlap and the later one owns the second half.
+ * A phrase is owned by the segment that contains its start, unless the earlier copy is cut by the
+ * end of its segment. The later segment then drops the phrases, or the leading words of a phrase,
+ * that were already said before the end of the last phrase kept from the earlier segment.
+ * <p>
+ * Only the tail of the earlier list and the head of the later list are visited, so merging all
+ * segments of a meeting is linear in the number of phrases.
+ */
+public class OverlapMerger {
+
+    // 1 tick = 100 ns
+    private static final long TICKS_PER_MS = 10_000L;
+
+    // A phrase ending this close to the end of its segment is treated as being cut.
+    private static final long TRUNCATION_MARGIN_TICKS = 300 * TICKS_PER_MS;
+
+    // A phrase ending this close to the end of the kept phrase is a duplicate of it.
+    private static final long DUPLICATE_MARGIN_TICKS = 200 * TICKS_PER_MS;
+
+    private OverlapMerger() {
+    }
+
+    /**
+     * Merge the boundary of two adjacent segments in place. Both lists must be sorted by offset,
+     * and the offsets are relative to the start of their own segment.
+     *
+     * @param earlier        The phrases of the earlier segment.
+     * @param earlierStartMs The start of the earlier segment in the original input.
+     * @param earlierEndMs   The end of the earlier segment, including the overlap.
+     * @param later          The phrases of the later segment.
+     * @param laterStartMs   The start of the later segment in the original input.
+     * @param wordSeparator  The separator to join the words of a trimmed phrase.
+     */
+    public static void merge(Transcript earlier, long earlierStartMs, long earlierEndMs,
+            Transcript later, long laterStartMs, String wordSeparator) {
+        long overlapStart = laterStartMs * TICKS_PER_MS;
+        long overlapEnd = earlierEndMs * TICKS_PER_MS;
+        if (overlapEnd <= overlapStart) {
+            return;
+        }
+        long earlierBase = earlierStartMs * TICKS_PER_MS;
+        long laterBase = laterStartMs * TICKS_PER_MS;
+        long middle = overlapStart + (overlapEnd - overlapStart) / 2;
+
+        // 1. The earlier segment keeps the phrases starting before the middle.
+        int keepCount = earlier.size();
+        while (keepCount > 0 && earlierBase + earlier.getOffsetTicks(keepCount - 1) >= middle) {
+            keepCount--;
+        }
+        if (keepCount > 0) {
+            long lastStart = earlierBase + earlier.getOffsetTicks(keepCount - 1);
+            // The later segment has the whole phrase if it is cut here but starts in the overlap.
+            if (earlierBase + earlier.getEndTicks(keepCount - 1)
+                    >= overlapEnd - TRUNCATION_MARGIN_TICKS && lastStart >= overlapStart) {
+                keepCount--;
+                middle = lastStart;
+            }
+        }
+        earlier.removeRange(keepCount, earlier.size());
+        // Without a kept phrase, nothing of the overlap was said in the earlier segment.
+        long keptEnd = keepCount > 0
+                ? earlierBase + earlier.getEndTicks(keepCount - 1) : overlapStart;
+
+        // 2. The later segment keeps the phrases starting from the middle, without the words
+        // that were already kept from the earlier segment.
+        int dropCount = 0;
+        while (dropCount < later.size()) {
+            long phraseStart = laterBase + later.getOffsetTicks(dropCount);
+            if (phraseStart >= keptEnd || phraseStart >= overlapEnd) {
+                break;
+            }
+            if (phraseStart >= middle
+                    && laterBase + later.getEndTicks(dropCount) > keptEnd + DUPLICATE_MARGIN_TICKS
+                    && trimWordsBefore(later, dropCount, keptEnd - laterBase, wordSeparator)) {
+                break;
+            }
+            dropCount++;
+        }
+        later.removeRange(0, dropCount);
+    }
+
+    /**
+     * @return The separator between the words of the language, e.g. no space for Chinese.
+     */
+    public static String wordSeparatorOf(String locale) {
+        if (locale == null) {
+            return " ";
+        }
+        String language = locale.toLowerCase();
+        return language.startsWith("zh") || language.startsWith("ja")
+                || language.startsWith("ko") || language.startsWith("th") ? "" : " ";
+    }
+
+    /**
+     * Remove the words of the phrase before the offset, and rebuild its text from the rest.
+     *
+     * @return false if the phrase has no word-level timestamps or no word is left.
+     */
+    private static boolean trimWordsBefore(Transcript phrases, int phrase, long offsetInTicks,
+            String wordSeparator) {
+        int wordCount = phrases.getWordCount(phrase);
+        if (wordCount == 0) {
+            return false;
+        }
+        int firstKept = 0;
+        while (firstKept < wordCount
+                && phrases.getWordOffsetTicks(phrase, firstKept) < offsetInTicks) {
+            firstKept++;
+        }
+        if (firstKept == wordCount) {
+            return false;
+        }
+        if (firstKept == 0) {
+            return true;
+        }
+
+        phrases.removeLeadingWords(phrase, firstKept, wordSeparator);
+        return true;
+    }
+}
@@ -0,0 +1,149 @@
+package com.optoma.meeting.util;
+
+import com.optoma.meeting.model.SegmentPlan;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Choose the cut points of a split job in the nearby silence.
+ * <p>
+ * The input is 16-bit little-endian mono PCM. It is scanned once in 20 ms frames through a single
+ * direct buffer. Around each target cut point, the longest run of silent frames inside the
+ * tolerance window is kept, and the cut is put in the middle of it. If the window has no silent
+ * frame, the quietest frame is used. The next target is one segment duration after the real cut,
+ * so the segments have variable lengths.
+ * <p>
+ * Each cut point is final once the scan has passed its window, so a {@link CutListener} can cut
+ * the segments while the rest of the input is still being decoded.
+ */
+public class SilenceDetector {
+
+    private static final int FRAME_DURATION_MS = 20;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Notified of each cut point as soon as it is chosen.
+     */
+    public interface CutListener {
+        /**
+         * @param partNumber The segment that starts at the cut point, from 1.
+         * @param startMs    The cut point.
+         */
+        void onCut(int partNumber, long startMs) throws IOException;
+    }
+
+    private final int mSamplesPerFrame;
+    private final long mSegmentDurationMs;
+    private final long mToleranceMs;
+    private final long mSilenceThreshold;
+
+    /**
+     * @param sampleRate         The sample rate of the PCM.
+     * @param segmentDurationMs  The expected duration of each segment.
+     * @param toleranceMs        How far a cut point may move from its target, in both directions.
+     * @param silenceThresholdDb Frames quieter than this level (dBFS) are treated as silence.
+     */
+    public SilenceDetector(int sampleRate, long segmentDurationMs, long toleranceMs,
+            int silenceThresholdDb) {
+        mSamplesPerFrame = sampleRate * FRAME_DURATION_MS / 1000;
+        mSegmentDurationMs = segmentDurationMs;
+        // The windows of two adjacent cut points must not overlap.
+        mToleranceMs = Math.min(toleranceMs, segmentDurationMs / 2 - FRAME_DURATION_MS);
+        mSilenceThreshold = getSilenceThreshold(mSamplesPerFrame, silenceThresholdDb);
+    }
+
+    /**
+     * @return The sum of squares of the samples of a frame at the threshold level.
+     */
+    static long getSilenceThreshold(int samplesPerFrame, int silenceThresholdDb) {
+        double amplitude = 32768 * Math.pow(10, silenceThresholdDb / 20.0);
+        // Compare the sum of squares of a frame, so no division is needed per frame.
+        return (long) (amplitude * amplitude * samplesPerFrame);
+    }
+
+    public SegmentPlan plan(ReadableByteChannel pcm) throws IOException {
+        return plan(pcm, null);
+    }
+
+    /**
+     * @param listener Notified of each cut point while the scan goes on, or null.
+     */
+    public SegmentPlan plan(ReadableByteChannel pcm, CutListener listener) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        long[] startMs = new long[16];
+        int segmentCount = 1;
+
+        long targetMs = mSegmentDurationMs;
+        long frameIndex = 0;
+        int samplesInFrame = 0;
+        long sumOfSquares = 0;
+
+        long runStartMs = -1;
+        long bestRunDurationMs = 0;
+        long bestRunCutMs = -1;
+        long minSumOfSquares = Long.MAX_VALUE;
+        long minCutMs = -1;
+
+        while (pcm.read(buffer) >= 0) {
+            buffer.flip();
+            while (buffer.remaining() >= 2) {
+                long sample = buffer.getShort();
+                sumOfSquares += sample * sample;
+                if (++samplesInFrame < mSamplesPerFrame) {
+                    continue;
+                }
+
+                long frameStartMs = frameIndex * FRAME_DURATION_MS;
+                if (frameStartMs >= targetMs + mToleranceMs) {
+                    // The window is over, cut at the best position of it.
+                    long cutMs = bestRunCutMs >= 0 ? bestRunCutMs : minCutMs;
+                    if (segmentCount == startMs.length) {
+                        startMs = Arrays.copyOf(startMs, segmentCount * 2);
+                    }
+                    startMs[segmentCount++] = cutMs;
+                    if (listener != null) {
+                        listener.onCut(segmentCount - 1, cutMs);
+                    }
+                    targetMs = cutMs + mSegmentDurationMs;
+                    runStartMs = -1;
+                    bestRunDurationMs = 0;
+                    bestRunCutMs = -1;
+                    minSumOfSquares = Long.MAX_VALUE;
+                    minCutMs = -1;
+                }
+                if (frameStartMs >= targetMs - mToleranceMs) {
+                    if (sumOfSquares < mSilenceThreshold) {
+                        if (runStartMs < 0) {
+                            runStartMs = frameStartMs;
+                        }
+                        long runDurationMs = frameStartMs + FRAME_DURATION_MS - runStartMs;
+                        if (runDurationMs > bestRunDurationMs) {
+                            bestRunDurationMs = runDurationMs;
+                            bestRunCutMs = runStartMs + runDurationMs / 2;
+                        }
+                    } else {
+                        runStartMs = -1;
+                    }
+                    if (sumOfSquares < minSumOfSquares) {
+                        minSumOfSquares = sumOfSquares;
+                        minCutMs = frameStartMs + FRAME_DURATION_MS / 2;
+                    }
+                }
+
+                frameIndex++;
+                samplesInFrame = 0;
+                sumOfSquares = 0;
+            }
+            buffer.compact();
+        }
+
+        // The last window is not complete, so the rest of the input becomes the last segment.
+        long totalDurationMs = frameIndex * FRAME_DURATION_MS
+                + samplesInFrame * (long) FRAME_DURATION_MS / mSamplesPerFrame;
+        return new SegmentPlan(Arrays.copyOf(startMs, segmentCount), totalDurationMs);
+    }
+}
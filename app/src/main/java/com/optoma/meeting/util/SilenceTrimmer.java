@@ -0,0 +1,181 @@
+package com.optoma.meeting.util;
+
+import com.optoma.meeting.model.OffsetRemapTable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Remove the long silences of a recording before it is split, so they are neither uploaded nor
+ * transcribed.
+ * <p>
+ * The input is 16-bit little-endian mono PCM, and the output is a WAV file of the same format. It
+ * is scanned once in 20 ms frames. A silent run longer than the minimum duration is removed except
+ * for the padding at both of its ends, so the words next to it are not cut. Only the frames of the
+ * current silent run that may still be kept are held in memory. Every removed run adds one entry
+ * to the {@link OffsetRemapTable} that maps the output back to the input.
+ */
+public class SilenceTrimmer {
+
+    private static final int FRAME_DURATION_MS = 20;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int HEADER_SIZE = 44;
+
+    private final int mSampleRate;
+    private final int mFrameSize;
+    private final int mMinSilenceFrames;
+    private final int mPaddingFrames;
+    private final long mSilenceThreshold;
+
+    /**
+     * @param sampleRate         The sample rate of the PCM.
+     * @param minSilenceMs       Only the silences longer than this are removed.
+     * @param paddingMs          How much of the silence is kept at both ends of a removed one.
+     * @param silenceThresholdDb Frames quieter than this level (dBFS) are treated as silence.
+     */
+    public SilenceTrimmer(int sampleRate, long minSilenceMs, long paddingMs,
+            int silenceThresholdDb) {
+        int samplesPerFrame = sampleRate * FRAME_DURATION_MS / 1000;
+        mSampleRate = sampleRate;
+        mFrameSize = samplesPerFrame * 2;
+        mPaddingFrames = (int) (paddingMs / FRAME_DURATION_MS);
+        // At least one frame is removed between the two paddings.
+        mMinSilenceFrames = Math.max((int) (minSilenceMs / FRAME_DURATION_MS),
+                mPaddingFrames * 2 + 1);
+        mSilenceThreshold = SilenceDetector.getSilenceThreshold(samplesPerFrame,
+                silenceThresholdDb);
+    }
+
+    public OffsetRemapTable trim(ReadableByteChannel pcm, FileChannel output) throws IOException {
+        ByteBuffer inputBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer outputBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        // The silent frames after the leading padding. Once the run is long enough to be removed,
+        // it is used as a ring that keeps the trailing padding.
+        final int pendingCapacity = mMinSilenceFrames - mPaddingFrames;
+        byte[] pending = new byte[pendingCapacity * mFrameSize];
+        byte[] frame = new byte[mFrameSize];
+
+        long[] trimmedStartMs = new long[16];
+        long[] originalStartMs = new long[16];
+        int spanCount = 1;
+
+        output.position(HEADER_SIZE);
+        long frameIndex = 0;
+        long writtenFrames = 0;
+        int silentRun = 0;
+
+        while (pcm.read(inputBuffer) >= 0) {
+            inputBuffer.flip();
+            while (inputBuffer.remaining() >= mFrameSize) {
+                long sumOfSquares = 0;
+                int position = inputBuffer.position();
+                for (int i = 0; i < mFrameSize; i += 2) {
+                    long sample = inputBuffer.getShort(position + i);
+                    sumOfSquares += sample * sample;
+                }
+                inputBuffer.get(frame);
+
+                if (sumOfSquares < mSilenceThreshold) {
+                    silentRun++;
+                    if (silentRun <= mPaddingFrames) {
+                        writeRange(output, outputBuffer, frame, 0, mFrameSize);
+                        writtenFrames++;
+                    } else {
+                        int slot = (silentRun - mPaddingFrames - 1) % pendingCapacity;
+                        System.arraycopy(frame, 0, pending, slot * mFrameSize, mFrameSize);
+                    }
+                } else {
+                    if (silentRun >= mMinSilenceFrames) {
+                        // The run is removed, so the trailing padding starts a new span.
+                        if (spanCount == trimmedStartMs.length) {
+                            trimmedStartMs = Arrays.copyOf(trimmedStartMs, spanCount * 2);
+                            originalStartMs = Arrays.copyOf(originalStartMs, spanCount * 2);
+                        }
+                        trimmedStartMs[spanCount] = writtenFrames * FRAME_DURATION_MS;
+                        originalStartMs[spanCount] =
+                                (frameIndex - mPaddingFrames) * FRAME_DURATION_MS;
+                        spanCount++;
+                        writtenFrames += flushPending(output, outputBuffer, pending,
+                                silentRun - mPaddingFrames, mPaddingFrames);
+                    } else if (silentRun > mPaddingFrames) {
+                        writtenFrames += flushPending(output, outputBuffer, pending,
+                                silentRun - mPaddingFrames, silentRun - mPaddingFrames);
+                    }
+                    silentRun = 0;
+                    writeRange(output, outputBuffer, frame, 0, mFrameSize);
+                    writtenFrames++;
+                }
+                frameIndex++;
+            }
+            inputBuffer.compact();
+        }
+
+        // A short silence at the end is kept, a long one is removed with its trailing padding.
+        inputBuffer.flip();
+        int partialSize = inputBuffer.remaining() - inputBuffer.remaining() % 2;
+        long writtenBytes = writtenFrames * mFrameSize;
+        if (silentRun < mMinSilenceFrames) {
+            if (silentRun > mPaddingFrames) {
+                writtenBytes += flushPending(output, outputBuffer, pending,
+                        silentRun - mPaddingFrames, silentRun - mPaddingFrames)
+                        * (long) mFrameSize;
+            }
+            inputBuffer.get(frame, 0, partialSize);
+            writeRange(output, outputBuffer, frame, 0, partialSize);
+            writtenBytes += partialSize;
+        }
+        outputBuffer.flip();
+        while (outputBuffer.hasRemaining()) {
+            output.write(outputBuffer);
+        }
+
+        ByteBuffer header = WavSlicer.createHeader(mSampleRate, writtenBytes);
+        long headerPosition = 0;
+        while (header.hasRemaining()) {
+            headerPosition += output.write(header, headerPosition);
+        }
+
+        long originalBytes = frameIndex * mFrameSize + partialSize;
+        return new OffsetRemapTable(Arrays.copyOf(trimmedStartMs, spanCount),
+                Arrays.copyOf(originalStartMs, spanCount), toMillis(writtenBytes),
+                toMillis(originalBytes));
+    }
+
+    /**
+     * Write the last frames of the pending silent run in order.
+     *
+     * @param pendingFrames The number of frames that have been put into the pending ring.
+     * @param count         The number of the last frames to write.
+     * @return The number of the written frames.
+     */
+    private int flushPending(FileChannel output, ByteBuffer outputBuffer, byte[] pending,
+            int pendingFrames, int count) throws IOException {
+        int capacity = pending.length / mFrameSize;
+        for (int i = pendingFrames - count; i < pendingFrames; i++) {
+            int slot = i % capacity;
+            writeRange(output, outputBuffer, pending, slot * mFrameSize, mFrameSize);
+        }
+        return count;
+    }
+
+    private static void writeRange(FileChannel output, ByteBuffer outputBuffer, byte[] bytes,
+            int offset, int length) throws IOException {
+        if (outputBuffer.remaining() < length) {
+            outputBuffer.flip();
+            while (outputBuffer.hasRemaining()) {
+                output.write(outputBuffer);
+            }
+            outputBuffer.clear();
+        }
+        outputBuffer.put(bytes, offset, length);
+    }
+
+    private long toMillis(long bytes) {
+        return bytes / 2 * 1000 / mSampleRate;
+    }
+}
@@ -0,0 +1,140 @@
+package com.optoma.meeting.util;
+
+/**
+ * Format the offsets of a transcript and parse the timestamps of the service, without
+ * {@link java.text.SimpleDateFormat} and without allocating per call.
+ */
+public class TimestampFormat {
+
+    private static final long MS_PER_SECOND = 1000L;
+    private static final long MS_PER_MINUTE = 60 * MS_PER_SECOND;
+    private static final long MS_PER_HOUR = 60 * MS_PER_MINUTE;
+    private static final long MS_PER_DAY = 24 * MS_PER_HOUR;
+
+    private TimestampFormat() {
+    }
+
+    /**
+     * Append the offset as "HH:mm:ss.SSS". The hours are not wrapped at 24.
+     *
+     * @param offsetMs A non-negative offset in milliseconds.
+     */
+    public static StringBuilder appendOffset(StringBuilder sb, long offsetMs) {
+        long hours = offsetMs / MS_PER_HOUR;
+        if (hours < 10) {
+            sb.append('0');
+        }
+        sb.append(hours).append(':');
+        appendDigits(sb, (int) (offsetMs / MS_PER_MINUTE % 60), 2).append(':');
+        appendDigits(sb, (int) (offsetMs / MS_PER_SECOND % 60), 2).append('.');
+        return appendDigits(sb, (int) (offsetMs % MS_PER_SECOND), 3);
+    }
+
+    /**
+     * Parse an ISO-8601 date and time, like "2023-11-02T08:15:30Z",
+     * "2023-11-02T08:15:30.1234567Z" or "2023-11-02T16:15:30+08:00". The fraction is truncated
+     * to milliseconds, and a time without a zone is in UTC.
+     *
+     * @return The milliseconds since the epoch, or {@code defaultValue} if it is malformed.
+     */
+    public static long parseIso8601(CharSequence text, long defaultValue) {
+        if (text == null || text.length() < 19 || text.charAt(4) != '-'
+                || text.charAt(7) != '-' || (text.charAt(10) != 'T' && text.charAt(10) != ' ')
+                || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            return defaultValue;
+        }
+        int year = parseDigits(text, 0, 4);
+        int month = parseDigits(text, 5, 2);
+        int day = parseDigits(text, 8, 2);
+        int hour = parseDigits(text, 11, 2);
+        int minute = parseDigits(text, 14, 2);
+        int second = parseDigits(text, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return defaultValue;
+        }
+
+        int index = 19;
+        int millis = 0;
+        if (index < text.length() && text.charAt(index) == '.') {
+            index++;
+            int digits = 0;
+            while (index < text.length() && isDigit(text.charAt(index))) {
+                if (digits < 3) {
+                    millis = millis * 10 + (text.charAt(index) - '0');
+                }
+                digits++;
+                index++;
+            }
+            if (digits == 0) {
+                return defaultValue;
+            }
+            for (; digits < 3; digits++) {
+                millis *= 10;
+            }
+        }
+
+        long zoneOffsetMs = 0;
+        if (index < text.length()) {
+            char zone = text.charAt(index);
+            if (zone == 'Z' && index + 1 == text.length()) {
+                zoneOffsetMs = 0;
+            } else if ((zone == '+' || zone == '-') && index + 6 == text.length()
+                    && text.charAt(index + 3) == ':') {
+                int zoneHour = parseDigits(text, index + 1, 2);
+                int zoneMinute = parseDigits(text, index + 4, 2);
+                if (zoneHour < 0 || zoneMinute < 0) {
+                    return defaultValue;
+                }
+                zoneOffsetMs = zoneHour * MS_PER_HOUR + zoneMinute * MS_PER_MINUTE;
+                if (zone == '-') {
+                    zoneOffsetMs = -zoneOffsetMs;
+                }
+            } else {
+                return defaultValue;
+            }
+        }
+
+        return daysFromCivil(year, month, day) * MS_PER_DAY + hour * MS_PER_HOUR
+                + minute * MS_PER_MINUTE + second * MS_PER_SECOND + millis - zoneOffsetMs;
+    }
+
+    /**
+     * @return The days since 1970-01-01 of a date in the proleptic Gregorian calendar.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        // Count the years from March, so the leap day is the last day of a year.
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static StringBuilder appendDigits(StringBuilder sb, int value, int width) {
+        for (int divisor = width == 3 ? 100 : 10; divisor > 0; divisor /= 10) {
+            sb.append((char) ('0' + value / divisor % 10));
+        }
+        return sb;
+    }
+
+    /**
+     * @return The value of the digits, -1 if any of them is not a digit.
+     */
+    private static int parseDigits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,217 @@
+package com.optoma.meeting.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Split a WAV file that is already 16-bit mono PCM in 8 kHz or 16 kHz without decoding it.
+ * <p>
+ * Each segment is a new 44-byte header followed by a byte range of the original PCM data, which
+ * is copied by {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+ * The caller checks {@link #getSampleRate()} if the segments must match another sample rate.
+ */
+public class WavSlicer implements Closeable {
+
+    private static final int HEADER_SIZE = 44;
+    private static final int BYTES_PER_SAMPLE = 2;
+
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final int mSampleRate;
+    private final long mDataOffset;
+    private final long mDataSize;
+
+    private WavSlicer(RandomAccessFile file, int sampleRate, long dataOffset, long dataSize) {
+        mFile = file;
+        mChannel = file.getChannel();
+        mSampleRate = sampleRate;
+        mDataOffset = dataOffset;
+        mDataSize = dataSize;
+    }
+
+    /**
+     * @return The slicer of the file, or null if the file is not a compatible WAV.
+     */
+    public static WavSlicer open(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            WavSlicer slicer = parse(randomAccessFile);
+            if (slicer == null) {
+                randomAccessFile.close();
+            }
+            return slicer;
+        } catch (IOException | RuntimeException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    private static WavSlicer parse(RandomAccessFile randomAccessFile) throws IOException {
+        FileChannel channel = randomAccessFile.getChannel();
+        ByteBuffer chunk = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(chunk, 0);
+        if (!matches(chunk, 0, "RIFF") || !matches(chunk, 8, "WAVE")) {
+            return null;
+        }
+
+        int sampleRate = 0;
+        boolean compatible = false;
+        long position = 12;
+        while (position + 8 <= channel.size()) {
+            chunk.clear();
+            channel.read(chunk, position);
+            long chunkSize = chunk.getInt(4) & 0xFFFFFFFFL;
+            if (matches(chunk, 0, "fmt ")) {
+                int audioFormat = chunk.getShort(8) & 0xFFFF;
+                int channels = chunk.getShort(10) & 0xFFFF;
+                sampleRate = chunk.getInt(12);
+                int bitsPerSample = chunk.getShort(22) & 0xFFFF;
+                compatible = audioFormat == 1 && channels == 1 && bitsPerSample == 16
+                        && (sampleRate == 8000 || sampleRate == 16000);
+            } else if (matches(chunk, 0, "data")) {
+                if (!compatible) {
+                    break;
+                }
+                long dataOffset = position + 8;
+                // The size of a streamed WAV may be left as 0 or 0xFFFFFFFF.
+                long dataSize = Math.min(chunkSize, channel.size() - dataOffset);
+                if (dataSize <= 0) {
+                    dataSize = channel.size() - dataOffset;
+                }
+                return new WavSlicer(randomAccessFile, sampleRate, dataOffset,
+                        dataSize - dataSize % BYTES_PER_SAMPLE);
+            }
+            // Chunks are padded to an even size.
+            position += 8 + chunkSize + (chunkSize & 1);
+        }
+        return null;
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public long getDurationMs() {
+        return mDataSize / BYTES_PER_SAMPLE * 1000 / mSampleRate;
+    }
+
+    /**
+     * @return A channel that reads the PCM data only, without the header and trailing chunks.
+     */
+    public ReadableByteChannel openPcmChannel() {
+        return new ReadableByteChannel() {
+            private long mPosition = mDataOffset;
+
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                long remaining = mDataOffset + mDataSize - mPosition;
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int limit = dst.limit();
+                if (dst.remaining() > remaining) {
+                    dst.limit(dst.position() + (int) remaining);
+                }
+                int read = mChannel.read(dst, mPosition);
+                dst.limit(limit);
+                if (read > 0) {
+                    mPosition += read;
+                }
+                return read;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return mChannel.isOpen();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Write the PCM data from startMs to startMs + durationMs as a new WAV file.
+     */
+    public void writeSegment(File output, long startMs, long durationMs) throws IOException {
+        long start = alignToSample(startMs * mSampleRate / 1000 * BYTES_PER_SAMPLE);
+        long end = alignToSample((startMs + durationMs) * mSampleRate / 1000 * BYTES_PER_SAMPLE);
+        start = Math.min(start, mDataSize);
+        end = Math.min(end, mDataSize);
+        writeWav(mChannel, mDataOffset + start, end - start, mSampleRate, output);
+    }
+
+    /**
+     * Write a new WAV file of the PCM data at the position of the source.
+     */
+    static void writeWav(FileChannel source, long position, long size, int sampleRate,
+            File output) throws IOException {
+        try (FileOutputStream outputStream = new FileOutputStream(output)) {
+            FileChannel outputChannel = outputStream.getChannel();
+            ByteBuffer header = createHeader(sampleRate, size);
+            while (header.hasRemaining()) {
+                outputChannel.write(header);
+            }
+            long transferred = 0;
+            while (transferred < size) {
+                long count = source.transferTo(position + transferred, size - transferred,
+                        outputChannel);
+                if (count <= 0) {
+                    throw new IOException("Fail to copy the PCM data to " + output);
+                }
+                transferred += count;
+            }
+        }
+    }
+
+    /**
+     * @return The header of a 16-bit mono PCM WAV file.
+     */
+    static ByteBuffer createHeader(int sampleRate, long dataSize) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("RIFF".getBytes(StandardCharsets.US_ASCII));
+        header.putInt((int) (HEADER_SIZE - 8 + dataSize));
+        header.put("WAVE".getBytes(StandardCharsets.US_ASCII));
+        header.put("fmt ".getBytes(StandardCharsets.US_ASCII));
+        header.putInt(16);
+        // PCM, mono
+        header.putShort((short) 1);
+        header.putShort((short) 1);
+        header.putInt(sampleRate);
+        header.putInt(sampleRate * BYTES_PER_SAMPLE);
+        header.putShort((short) BYTES_PER_SAMPLE);
+        header.putShort((short) (BYTES_PER_SAMPLE * 8));
+        header.put("data".getBytes(StandardCharsets.US_ASCII));
+        header.putInt((int) dataSize);
+        header.flip();
+        return header;
+    }
+
+    private static long alignToSample(long position) {
+        return position - position % BYTES_PER_SAMPLE;
+    }
+
+    private static boolean matches(ByteBuffer buffer, int offset, String tag) {
+        byte[] bytes = tag.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mFile.close();
+    }
+}
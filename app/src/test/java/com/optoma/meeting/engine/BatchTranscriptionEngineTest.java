@@ -0,0 +1,86 @@
+package com.optoma.meeting.engine;
+
+import com.optoma.meeting.model.OffsetRemapTable;
+import com.optoma.meeting.model.SegmentReady;
+import com.optoma.meeting.model.SegmentTranscription;
+import com.optoma.meeting.model.Transcript;
+import com.optoma.meeting.model.TranscriptReorderBuffer;
+import com.optoma.meeting.model.TranscriptionJob;
+import com.optoma.meeting.model.TranscriptionMode;
+import com.optoma.meeting.state.SegmentState;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BatchTranscriptionEngineTest {
+
+    private static final long SEGMENT_DURATION_MS = 60_000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final BatchTranscriptionEngine mEngine = new BatchTranscriptionEngine(
+            logText -> {
+            }, false);
+
+    @After
+    public void tearDown() {
+        mEngine.shutdown();
+    }
+
+    @Test
+    public void transcribe_emptyPart_doesNotBlockTheJob() throws Exception {
+        TranscriptionJob job = new TranscriptionJob("job1", "en-US", null, null,
+                TranscriptionMode.OFFLINE);
+        job.addSegment(createSegment(0, mFolder.newFile("part0.wav")));
+        job.addSegment(createSegment(1, mFolder.newFile("part1.wav")));
+        job.setTotalSegmentCount(2);
+
+        // The empty part completes without a transcript, and nothing is uploaded.
+        SegmentTranscription emptySegment = job.getSegment(0);
+        List<Transcript> chunks = new ArrayList<>();
+        for (Transcript chunk : mEngine.transcribe(job, emptySegment).blockingIterable()) {
+            chunks.add(chunk);
+        }
+        assertTrue(chunks.isEmpty());
+        assertEquals(0, mEngine.getUploadedBytes());
+
+        // The presenter settles it with the empty transcript.
+        assertTrue(emptySegment.moveTo(SegmentState.FETCHING));
+        emptySegment.setPhrases(new Transcript(true));
+        assertTrue(emptySegment.moveTo(SegmentState.DONE));
+        // Its overlap waits for the next part.
+        assertTrue(job.reorderBuffer.drain(job, " ").isEmpty());
+
+        // Both parts are released once the next part is settled.
+        SegmentTranscription nextSegment = job.getSegment(1);
+        Transcript phrases = new Transcript(true);
+        phrases.addPhrase(0, 0, 10_000_000, "good morning");
+        nextSegment.setPhrases(phrases);
+        assertTrue(nextSegment.moveTo(SegmentState.SUBMITTED));
+        assertTrue(nextSegment.moveTo(SegmentState.FETCHING));
+        assertTrue(nextSegment.moveTo(SegmentState.DONE));
+
+        List<TranscriptReorderBuffer.Release> releases = job.reorderBuffer.drain(job, " ");
+        assertEquals(2, releases.size());
+        assertEquals(0, releases.get(0).partNumber);
+        assertFalse(releases.get(0).failed);
+        assertEquals(0, releases.get(0).toPhrase);
+        assertEquals(1, releases.get(1).partNumber);
+        assertEquals(1, releases.get(1).toPhrase);
+        assertTrue(job.reorderBuffer.isComplete(job));
+    }
+
+    private static SegmentReady createSegment(int partNumber, File file) {
+        return new SegmentReady(partNumber, file.getPath(), partNumber * SEGMENT_DURATION_MS,
+                SEGMENT_DURATION_MS, OffsetRemapTable.identity(2 * SEGMENT_DURATION_MS), 1.0f);
+    }
+}
@@ -0,0 +1,35 @@
+package com.optoma.meeting.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OffsetRemapTableTest {
+
+    @Test
+    public void identity_keepsThePositions() {
+        OffsetRemapTable table = OffsetRemapTable.identity(10_000);
+        assertEquals(1, table.getSpanCount());
+        assertEquals(4_321, table.toOriginalMs(4_321));
+        assertEquals(0, table.getRemovedMs());
+    }
+
+    @Test
+    public void toOriginalMs_addsTheRemovedSilences() {
+        // 5 s removed after 3 s, and 2 s removed after 6 s of the trimmed input.
+        OffsetRemapTable table = new OffsetRemapTable(new long[]{0, 3_000, 6_000},
+                new long[]{0, 8_000, 13_000}, 9_000, 16_000);
+        assertEquals(2_999, table.toOriginalMs(2_999));
+        assertEquals(8_500, table.toOriginalMs(3_500));
+        assertEquals(10_999, table.toOriginalMs(5_999));
+        assertEquals(15_000, table.toOriginalMs(8_000));
+        assertEquals(7_000, table.getRemovedMs());
+    }
+
+    @Test
+    public void toOriginalMs_sharedPosition_belongsToTheLaterSpan() {
+        OffsetRemapTable table = new OffsetRemapTable(new long[]{0, 3_000},
+                new long[]{0, 8_000}, 4_000, 9_000);
+        assertEquals(8_000, table.toOriginalMs(3_000));
+    }
+}
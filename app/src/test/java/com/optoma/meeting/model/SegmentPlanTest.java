@@ -0,0 +1,47 @@
+package com.optoma.meeting.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SegmentPlanTest {
+
+    @Test
+    public void fixed_cutsAtTheMultiples() {
+        SegmentPlan plan = SegmentPlan.fixed(25_000, 10_000);
+        assertEquals(3, plan.getSegmentCount());
+        assertEquals(0, plan.getStartMs(0));
+        assertEquals(20_000, plan.getStartMs(2));
+        assertEquals(10_000, plan.getDurationMs(1));
+        assertEquals(5_000, plan.getDurationMs(2));
+        assertEquals(25_000, plan.getTotalDurationMs());
+    }
+
+    @Test
+    public void fixed_exactMultiple_hasNoEmptySegment() {
+        SegmentPlan plan = SegmentPlan.fixed(20_000, 10_000);
+        assertEquals(2, plan.getSegmentCount());
+        assertEquals(10_000, plan.getDurationMs(1));
+    }
+
+    @Test
+    public void fixed_emptyInput_hasNoSegment() {
+        assertEquals(0, SegmentPlan.fixed(0, 10_000).getSegmentCount());
+    }
+
+    @Test
+    public void getDurationMs_variableLengths() {
+        SegmentPlan plan = new SegmentPlan(new long[]{0, 9_500, 20_250}, 26_000);
+        assertEquals(9_500, plan.getDurationMs(0));
+        assertEquals(10_750, plan.getDurationMs(1));
+        assertEquals(5_750, plan.getDurationMs(2));
+    }
+
+    @Test
+    public void toSegmentTimes_isScaledByTheTempo() {
+        SegmentPlan plan = new SegmentPlan(new long[]{0, 480_020, 961_340}, 1_000_000);
+        assertEquals("480.020,961.340", plan.toSegmentTimes(1.0f));
+        assertEquals("240.010,480.670", plan.toSegmentTimes(2.0f));
+        assertEquals("", SegmentPlan.fixed(5_000, 10_000).toSegmentTimes(1.0f));
+    }
+}
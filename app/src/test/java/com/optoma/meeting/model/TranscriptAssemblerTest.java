@@ -0,0 +1,151 @@
+package com.optoma.meeting.model;
+
+import com.optoma.meeting.engine.ScriptedTranscriptionEngine;
+import com.optoma.meeting.state.SegmentState;
+import com.optoma.meeting.util.MeetingDocumentWriter;
+import com.optoma.meeting.util.TimestampFormat;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.reactivex.schedulers.Schedulers;
+
+import static org.junit.Assert.*;
+
+public class TranscriptAssemblerTest {
+
+    private static final long PHRASE_INTERVAL_MS = 5_000;
+    // Three segments of the 150 s recording, each overlapping the next one by 10 s.
+    private static final long[][] SEGMENTS = {{0, 60_000}, {50_000, 60_000}, {100_000, 50_000}};
+    private static final long RECORDING_MS = 150_000;
+    private static final List<ScriptedTranscriptionEngine.Line> SCRIPT = Arrays.asList(
+            new ScriptedTranscriptionEngine.Line(0, "good morning everyone"),
+            new ScriptedTranscriptionEngine.Line(1, "the sales went up"),
+            new ScriptedTranscriptionEngine.Line(0, "thank you"));
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final ScriptedTranscriptionEngine mEngine = new ScriptedTranscriptionEngine(SCRIPT,
+            0, 0, PHRASE_INTERVAL_MS, Schedulers.trampoline());
+
+    @Test
+    public void release_partsOutOfOrder_writesEachPhraseOnceInOrder() throws IOException {
+        TranscriptionJob job = createJob(1.0f);
+        File file = new File(mFolder.getRoot(), "minutes.txt");
+        List<String> skipped = new ArrayList<>();
+        try (MeetingDocumentWriter writer = MeetingDocumentWriter.open(file)) {
+            for (int partNumber : new int[]{2, 0, 1}) {
+                transcribe(job, partNumber);
+                writer.append(TranscriptAssembler.release(job,
+                        skippedPart -> skipped.add("part " + skippedPart)));
+                // The later parts wait for the earlier ones.
+                assertEquals(partNumber == 1, job.reorderBuffer.isComplete(job));
+            }
+            writer.commit();
+        }
+
+        assertEquals(expectedMinutes(0, RECORDING_MS), read(file));
+        assertTrue(skipped.isEmpty());
+        // The phrases at 50 s, 55 s, 100 s and 105 s are said in two segments.
+        assertEquals(4, job.reorderBuffer.getDroppedPhraseCount());
+        assertTrue(job.getSummaryText(0).toString().startsWith(
+                "{speaker 0:good morning everyone}, {speaker 1:the sales went up}, "));
+        int summaryCount = 0;
+        for (int partNumber = 0; partNumber < SEGMENTS.length; partNumber++) {
+            summaryCount += job.getSummaryText(partNumber).toString().split("\\{speaker").length
+                    - 1;
+        }
+        assertEquals(RECORDING_MS / PHRASE_INTERVAL_MS, summaryCount);
+    }
+
+    @Test
+    public void release_sameTranscriptWithTempoFactor() {
+        TranscriptionJob job = createJob(1.25f);
+        StringBuilder minutes = new StringBuilder();
+        for (int partNumber = 0; partNumber < SEGMENTS.length; partNumber++) {
+            transcribe(job, partNumber);
+            minutes.append(TranscriptAssembler.release(job, skippedPart -> fail()));
+        }
+
+        assertTrue(job.reorderBuffer.isComplete(job));
+        assertEquals(expectedMinutes(0, RECORDING_MS), minutes.toString());
+    }
+
+    @Test
+    public void release_failedPart_isSkipped() {
+        TranscriptionJob job = createJob(1.0f);
+        List<Integer> skipped = new ArrayList<>();
+        StringBuilder minutes = new StringBuilder();
+        transcribe(job, 0);
+        minutes.append(TranscriptAssembler.release(job, skipped::add));
+        job.getSegment(1).moveTo(SegmentState.FAILED);
+        minutes.append(TranscriptAssembler.release(job, skipped::add));
+        transcribe(job, 2);
+        minutes.append(TranscriptAssembler.release(job, skipped::add));
+
+        assertEquals(Arrays.asList(1), skipped);
+        assertTrue(job.reorderBuffer.isComplete(job));
+        // Part 0 keeps its whole overlap, part 2 starts at 100 s.
+        assertEquals(expectedMinutes(0, 60_000) + expectedMinutes(100_000, RECORDING_MS),
+                minutes.toString());
+    }
+
+    private static TranscriptionJob createJob(float tempoFactor) {
+        TranscriptionJob job = new TranscriptionJob("job1", "en-US", null, null,
+                TranscriptionMode.OFFLINE);
+        for (int partNumber = 0; partNumber < SEGMENTS.length; partNumber++) {
+            // The sped-up segments are shorter, the offsets of the split input are not.
+            job.addSegment(new SegmentReady(partNumber, "/tmp/part" + partNumber + ".wav",
+                    SEGMENTS[partNumber][0], SEGMENTS[partNumber][1],
+                    OffsetRemapTable.identity(RECORDING_MS), tempoFactor));
+        }
+        job.setTotalSegmentCount(SEGMENTS.length);
+        return job;
+    }
+
+    /**
+     * Collect the phrases of the part from the engine, as the presenter does.
+     */
+    private void transcribe(TranscriptionJob job, int partNumber) {
+        SegmentTranscription segment = job.getSegment(partNumber);
+        Transcript phrases = new Transcript(true);
+        for (Transcript chunk : mEngine.transcribe(job, segment).blockingIterable()) {
+            phrases.append(chunk);
+        }
+        if (segment.segment.tempoFactor != 1.0f) {
+            phrases.scale(segment.segment.tempoFactor);
+        }
+        segment.setPhrases(phrases);
+        assertTrue(segment.moveTo(SegmentState.FETCHING));
+        assertTrue(segment.moveTo(SegmentState.DONE));
+    }
+
+    /**
+     * @return The lines of the phrases of the script in [fromMs, toMs) of the recording.
+     */
+    private static String expectedMinutes(long fromMs, long toMs) {
+        StringBuilder sb = new StringBuilder();
+        for (long startMs = fromMs; startMs < toMs; startMs += PHRASE_INTERVAL_MS) {
+            ScriptedTranscriptionEngine.Line line =
+                    SCRIPT.get((int) (startMs / PHRASE_INTERVAL_MS % SCRIPT.size()));
+            TimestampFormat.appendOffset(sb, startMs)
+                    .append(" {speaker ").append(line.speaker).append(':')
+                    .append(line.text).append("}\n");
+        }
+        return sb.toString();
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
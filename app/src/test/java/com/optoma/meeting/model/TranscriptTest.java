@@ -0,0 +1,130 @@
+package com.optoma.meeting.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TranscriptTest {
+
+    @Test
+    public void addWord_storesEachDistinctWordOnce() {
+        Transcript transcript = new Transcript(true);
+        addPhrase(transcript, 0, "to be or not to be");
+        addPhrase(transcript, 100, "to be");
+
+        assertEquals(8, transcript.getWordCount(0) + transcript.getWordCount(1));
+        assertEquals("be", transcript.getWord(1, 1));
+        assertEquals("not", transcript.getWord(0, 3));
+        // The texts of the phrases, and "to", "be", "or" and "not" once.
+        assertEquals("Transcript{phrases=2, words=8, distinct words=4, chars="
+                + ("to be or not to be".length() + "to be".length() + 9) + "}",
+                transcript.toString());
+    }
+
+    @Test
+    public void addWord_manyDistinctWords_areFoundAfterRehash() {
+        Transcript transcript = new Transcript(true);
+        transcript.addPhrase(0, 0, 0, "");
+        for (int i = 0; i < 2000; i++) {
+            transcript.addWord("w" + i, i, 1);
+        }
+        for (int i = 0; i < 2000; i++) {
+            transcript.addWord("w" + i, i, 1);
+        }
+
+        assertEquals(4000, transcript.getWordCount(0));
+        assertEquals("w1234", transcript.getWord(0, 3234));
+        assertTrue(transcript.toString().contains("distinct words=2000,"));
+    }
+
+    @Test
+    public void addWord_withoutKeepWords_isIgnored() {
+        Transcript transcript = new Transcript(false);
+        addPhrase(transcript, 0, "hello world");
+
+        assertEquals(1, transcript.size());
+        assertEquals("hello world", transcript.getText(0));
+        assertEquals(0, transcript.getWordCount(0));
+    }
+
+    @Test
+    public void clear_resetsTheDistinctWords() {
+        Transcript transcript = new Transcript(true);
+        addPhrase(transcript, 0, "hello world");
+        transcript.clear();
+        addPhrase(transcript, 0, "world hello");
+
+        assertEquals(1, transcript.size());
+        assertEquals("world", transcript.getWord(0, 0));
+        assertEquals("hello", transcript.getWord(0, 1));
+        assertTrue(transcript.toString().contains("distinct words=2,"));
+    }
+
+    @Test
+    public void removeLeadingWords_rebuildsTextAndTiming() {
+        Transcript transcript = new Transcript(true);
+        // Each word lasts 10 ticks, from 100 to 130.
+        addPhrase(transcript, 100, "hello big world");
+
+        transcript.removeLeadingWords(0, 1, " ");
+
+        assertEquals("big world", transcript.getText(0));
+        assertEquals(110, transcript.getOffsetTicks(0));
+        assertEquals(130, transcript.getEndTicks(0));
+        assertEquals(2, transcript.getWordCount(0));
+        assertEquals("big", transcript.getWord(0, 0));
+        assertEquals(120, transcript.getWordOffsetTicks(0, 1));
+    }
+
+    @Test
+    public void removeLeadingWords_joinsWithTheSeparator() {
+        Transcript transcript = new Transcript(true);
+        addPhrase(transcript, 0, "大家 早安 開會");
+
+        transcript.removeLeadingWords(0, 1, "");
+
+        assertEquals("早安開會", transcript.getText(0));
+        assertEquals(10, transcript.getOffsetTicks(0));
+        assertEquals(20, transcript.getDurationTicks(0));
+    }
+
+    @Test
+    public void removeLeadingWords_keepsTheOtherPhrases() {
+        Transcript transcript = new Transcript(true);
+        addPhrase(transcript, 0, "one two");
+        addPhrase(transcript, 100, "three four");
+
+        transcript.removeLeadingWords(0, 1, " ");
+
+        assertEquals("two", transcript.getText(0));
+        assertEquals("three four", transcript.getText(1));
+        assertEquals("four", transcript.getWord(1, 1));
+        assertEquals(110, transcript.getWordOffsetTicks(1, 1));
+    }
+
+    @Test
+    public void append_copiesTheWords() {
+        Transcript source = new Transcript(true);
+        addPhrase(source, 0, "one two");
+        addPhrase(source, 100, "two three");
+        Transcript copy = new Transcript(true);
+
+        copy.append(source, 1);
+
+        assertEquals(1, copy.size());
+        assertEquals("two three", copy.getText(0));
+        assertEquals("three", copy.getWord(0, 1));
+        assertEquals(110, copy.getWordOffsetTicks(0, 1));
+    }
+
+    /**
+     * Add the phrase and its words separated by spaces, each word lasts 10 ticks.
+     */
+    private static void addPhrase(Transcript transcript, long offsetTicks, String text) {
+        String[] words = text.split(" ");
+        transcript.addPhrase(0, offsetTicks, words.length * 10L, text);
+        for (int i = 0; i < words.length; i++) {
+            transcript.addWord(words[i], offsetTicks + i * 10L, 10);
+        }
+    }
+}
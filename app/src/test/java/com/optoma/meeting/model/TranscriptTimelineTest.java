@@ -0,0 +1,123 @@
+package com.optoma.meeting.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TranscriptTimelineTest {
+
+    private final List<String> mEmitted = new ArrayList<>();
+    private final TranscriptTimeline.Sink mSink = (source, phrases, phrase) ->
+            mEmitted.add(source + ":" + phrases.getText(phrase));
+
+    @Test
+    public void drain_mergesTheSourcesByOffset() {
+        TranscriptTimeline timeline = new TranscriptTimeline();
+        timeline.open(0, 0);
+        timeline.open(1, 100);
+        timeline.push(1, phrases(100, "b1", 150, "b2"));
+        timeline.push(0, phrases(10, "a1", 120, "a2", 200, "a3"));
+        timeline.close(0);
+        timeline.close(1);
+
+        assertEquals(5, timeline.drain(mSink));
+        assertEquals(Arrays.asList("0:a1", "1:b1", "0:a2", "1:b2", "0:a3"), mEmitted);
+        assertTrue(timeline.isEmpty());
+    }
+
+    @Test
+    public void drain_waitsForTheWatermarkOfAnOpenSource() {
+        TranscriptTimeline timeline = new TranscriptTimeline();
+        timeline.open(0, 0);
+        timeline.open(1, 100);
+        timeline.push(1, phrases(100, "b1", 150, "b2"));
+
+        // Source 0 may still have phrases from 0.
+        assertEquals(0, timeline.drain(mSink));
+
+        timeline.push(0, phrases(10, "a1", 120, "a2"));
+        // Source 0 can only add phrases from 120, source 1 from 150.
+        assertEquals(3, timeline.drain(mSink));
+        assertEquals(Arrays.asList("0:a1", "1:b1", "0:a2"), mEmitted);
+        assertFalse(timeline.isEmpty());
+
+        timeline.close(0);
+        assertEquals(1, timeline.drain(mSink));
+        assertEquals("1:b2", mEmitted.get(3));
+        assertFalse(timeline.isEmpty());
+
+        timeline.close(1);
+        assertTrue(timeline.isEmpty());
+    }
+
+    @Test
+    public void drain_sameOffset_ordersBySource() {
+        TranscriptTimeline timeline = new TranscriptTimeline();
+        timeline.open(1, 0);
+        timeline.open(0, 0);
+        timeline.push(1, phrases(50, "b1"));
+        timeline.push(0, phrases(50, "a1"));
+        timeline.close(0);
+        timeline.close(1);
+
+        timeline.drain(mSink);
+        assertEquals(Arrays.asList("0:a1", "1:b1"), mEmitted);
+    }
+
+    @Test
+    public void push_afterDrain_reusesTheBuffer() {
+        TranscriptTimeline timeline = new TranscriptTimeline();
+        timeline.open(0, 0);
+        timeline.push(0, phrases(10, "a1", 20, "a2"));
+        assertEquals(2, timeline.drain(mSink));
+
+        timeline.push(0, phrases(30, "a3"));
+        timeline.push(0, new Transcript(false));
+        timeline.close(0);
+        assertEquals(1, timeline.drain(mSink));
+        assertEquals(Arrays.asList("0:a1", "0:a2", "0:a3"), mEmitted);
+        assertTrue(timeline.isEmpty());
+    }
+
+    @Test
+    public void open_twice_keepsThePhrases() {
+        TranscriptTimeline timeline = new TranscriptTimeline();
+        assertFalse(timeline.isOpened(0));
+        timeline.open(0, 0);
+        timeline.push(0, phrases(10, "a1"));
+        timeline.open(0, 500);
+        assertTrue(timeline.isOpened(0));
+
+        assertEquals(1, timeline.drain(mSink));
+        assertEquals("0:a1", mEmitted.get(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void push_notOpened_throws() {
+        new TranscriptTimeline().push(0, phrases(10, "a1"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void push_afterClose_throws() {
+        TranscriptTimeline timeline = new TranscriptTimeline();
+        timeline.open(0, 0);
+        timeline.close(0);
+        timeline.push(0, phrases(10, "a1"));
+    }
+
+    /**
+     * @param offsetsAndTexts The offset in ticks and the text of each phrase.
+     */
+    private static Transcript phrases(Object... offsetsAndTexts) {
+        Transcript transcript = new Transcript(false);
+        for (int i = 0; i < offsetsAndTexts.length; i += 2) {
+            transcript.addPhrase(0, (Integer) offsetsAndTexts[i], 1,
+                    (String) offsetsAndTexts[i + 1]);
+        }
+        return transcript;
+    }
+}
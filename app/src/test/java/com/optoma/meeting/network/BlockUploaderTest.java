@@ -0,0 +1,187 @@
+package com.optoma.meeting.network;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class BlockUploaderTest {
+
+    private static final int BLOCK_SIZE = 4;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mJournalDir;
+    private BlockUploader mUploader;
+
+    @After
+    public void tearDown() {
+        if (mUploader != null) {
+            mUploader.shutdown();
+        }
+    }
+
+    @Test
+    public void upload_commitsAllBlocksInOrder() throws Exception {
+        File file = createFile("0123456789");
+        FakeBlockBlob blob = new FakeBlockBlob();
+        createUploader().upload(blob, file);
+
+        assertEquals(Arrays.asList(0, 1, 2), blob.sentBlocks);
+        assertEquals(Arrays.asList("0123", "4567", "89"), blob.committed);
+        assertEquals(0, mJournalDir.list().length);
+    }
+
+    @Test
+    public void upload_afterFailure_sendsOnlyTheMissingBlocks() throws Exception {
+        File file = createFile("abcdefghijklmnopqrst");
+        FakeBlockBlob blob = new FakeBlockBlob();
+        blob.failFromBlock = 2;
+        try {
+            createUploader().upload(blob, file);
+            fail();
+        } catch (IOException expected) {
+        }
+        assertEquals(Arrays.asList(0, 1), blob.sentBlocks);
+        assertNull(blob.committed);
+
+        // Another uploader, as after a restart of the service.
+        mUploader.shutdown();
+        blob.failFromBlock = Integer.MAX_VALUE;
+        blob.sentBlocks.clear();
+        createUploader().upload(blob, file);
+
+        assertEquals(Arrays.asList(2, 3, 4), blob.sentBlocks);
+        assertEquals(Arrays.asList("abcd", "efgh", "ijkl", "mnop", "qrst"), blob.committed);
+        assertEquals(0, mJournalDir.list().length);
+    }
+
+    @Test
+    public void upload_journaledBlockNotOnTheService_isSentAgain() throws Exception {
+        File file = createFile("abcdefghijkl");
+        FakeBlockBlob blob = new FakeBlockBlob();
+        blob.failFromBlock = 2;
+        try {
+            createUploader().upload(blob, file);
+            fail();
+        } catch (IOException expected) {
+        }
+
+        // The uncommitted blocks expire on the service.
+        mUploader.shutdown();
+        blob.uncommitted.remove(blockId(0));
+        blob.failFromBlock = Integer.MAX_VALUE;
+        blob.sentBlocks.clear();
+        createUploader().upload(blob, file);
+
+        assertEquals(Arrays.asList(0, 2), blob.sentBlocks);
+        assertEquals(Arrays.asList("abcd", "efgh", "ijkl"), blob.committed);
+    }
+
+    @Test
+    public void upload_changedFile_ignoresTheJournal() throws Exception {
+        File file = createFile("abcdefghijkl");
+        FakeBlockBlob blob = new FakeBlockBlob();
+        blob.failFromBlock = 2;
+        try {
+            createUploader().upload(blob, file);
+            fail();
+        } catch (IOException expected) {
+        }
+
+        mUploader.shutdown();
+        Files.write(file.toPath(), "ABCDEFGHIJKLMN".getBytes(StandardCharsets.US_ASCII));
+        blob.failFromBlock = Integer.MAX_VALUE;
+        blob.sentBlocks.clear();
+        createUploader().upload(blob, file);
+
+        assertEquals(Arrays.asList(0, 1, 2, 3), blob.sentBlocks);
+        assertEquals(Arrays.asList("ABCD", "EFGH", "IJKL", "MN"), blob.committed);
+    }
+
+    @Test(expected = IOException.class)
+    public void upload_emptyFile_throws() throws Exception {
+        createUploader().upload(new FakeBlockBlob(), createFile(""));
+    }
+
+    private BlockUploader createUploader() {
+        mJournalDir = new File(mFolder.getRoot(), "journal");
+        // One block at a time, so the blocks before a failure are all uploaded.
+        mUploader = new BlockUploader(BLOCK_SIZE, 1, mJournalDir);
+        return mUploader;
+    }
+
+    private File createFile(String content) throws IOException {
+        File file = new File(mFolder.getRoot(), "part0.wav");
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+    private static String blockId(int index) {
+        return Base64.getEncoder().encodeToString(String.format(Locale.US, "block-%08d", index)
+                .getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static int indexOf(String blockId) {
+        String decoded = new String(Base64.getDecoder().decode(blockId),
+                StandardCharsets.US_ASCII);
+        return Integer.parseInt(decoded.substring("block-".length()));
+    }
+
+    /**
+     * Keep the blocks in memory like the service, and fail the blocks from an index on.
+     */
+    private static class FakeBlockBlob implements BlockUploader.BlockBlob {
+
+        final Map<String, String> uncommitted = new LinkedHashMap<>();
+        final List<Integer> sentBlocks = new ArrayList<>();
+        volatile int failFromBlock = Integer.MAX_VALUE;
+        List<String> committed;
+
+        @Override
+        public String getPath() {
+            return "/recordings/job1/0.wav";
+        }
+
+        @Override
+        public synchronized void uploadBlock(String blockId, byte[] block) throws IOException {
+            int index = indexOf(blockId);
+            if (index >= failFromBlock) {
+                throw new IOException("connection reset");
+            }
+            sentBlocks.add(index);
+            uncommitted.put(blockId, new String(block, StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        public synchronized Set<String> getUncommittedBlockIds() {
+            return new HashSet<>(uncommitted.keySet());
+        }
+
+        @Override
+        public synchronized void commitBlockList(List<String> blockIds) {
+            committed = new ArrayList<>();
+            for (String blockId : blockIds) {
+                committed.add(uncommitted.get(blockId));
+            }
+            uncommitted.clear();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.optoma.meeting.network;
+
+import com.optoma.meeting.model.TranscribeResult;
+import com.optoma.meeting.model.Transcript;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class TranscribeResultParserTest {
+
+    // A result of the service, with the fields that are never read.
+    private static final String RESULT = "{"
+            + "\"source\": \"https://example.blob.core.windows.net/audio/0.wav\","
+            + "\"timestamp\": \"2024-03-01T08:30:00Z\","
+            + "\"durationInTicks\": 600000000,"
+            + "\"combinedRecognizedPhrases\": ["
+            + "  {\"channel\": 0, \"display\": \"Hello world. Bye.\"}],"
+            + "\"recognizedPhrases\": ["
+            + "  {\"recognitionStatus\": \"Success\", \"channel\": 0, \"speaker\": 1,"
+            + "   \"offset\": \"PT1S\", \"offsetInTicks\": 10000000.0,"
+            + "   \"durationInTicks\": 1.5E7,"
+            + "   \"nBest\": ["
+            + "     {\"confidence\": 0.9, \"lexical\": \"hello world\", \"itn\": \"hello world\","
+            + "      \"maskedITN\": \"hello world\", \"display\": \"Hello world.\","
+            + "      \"words\": ["
+            + "        {\"word\": \"hello\", \"offsetInTicks\": 10000000,"
+            + "         \"durationInTicks\": 5000000, \"confidence\": 0.9},"
+            + "        {\"word\": \"world\", \"offsetInTicks\": 16000000,"
+            + "         \"durationInTicks\": 9000000}"
+            + "      ]},"
+            + "     {\"confidence\": 0.5, \"display\": \"Yellow world.\"}"
+            + "   ]},"
+            + "  {\"speaker\": null, \"offsetInTicks\": 30000000, \"durationInTicks\": 4000000,"
+            + "   \"nBest\": [{\"display\": \"Bye.\", \"words\": null}]}"
+            + "]}";
+
+    @Test
+    public void parse_keepsTheBestResult() throws IOException {
+        TranscribeResult result = new TranscribeResultParser(true).parse(
+                new StringReader(RESULT));
+        assertEquals("https://example.blob.core.windows.net/audio/0.wav", result.source);
+        assertEquals("2024-03-01T08:30:00Z", result.timestamp);
+
+        Transcript phrases = result.phrases;
+        assertEquals(2, phrases.size());
+        assertEquals(1, phrases.getSpeaker(0));
+        assertEquals(10_000_000, phrases.getOffsetTicks(0));
+        assertEquals(15_000_000, phrases.getDurationTicks(0));
+        assertEquals("Hello world.", phrases.getText(0));
+        assertEquals(2, phrases.getWordCount(0));
+        assertEquals("world", phrases.getWord(0, 1));
+        assertEquals(16_000_000, phrases.getWordOffsetTicks(0, 1));
+        assertEquals(9_000_000, phrases.getWordDurationTicks(0, 1));
+
+        assertEquals(Transcript.UNKNOWN_SPEAKER, phrases.getSpeaker(1));
+        assertEquals("Bye.", phrases.getText(1));
+        assertEquals(0, phrases.getWordCount(1));
+    }
+
+    @Test
+    public void parse_withoutWords_skipsThem() throws IOException {
+        Transcript phrases = new TranscribeResultParser(false).parse(
+                new StringReader(RESULT)).phrases;
+        assertEquals(2, phrases.size());
+        assertEquals("Hello world.", phrases.getText(0));
+        assertEquals(0, phrases.getWordCount(0));
+    }
+
+    @Test
+    public void parse_manyWords_growsTheBuffer() throws IOException {
+        StringBuilder json = new StringBuilder(
+                "{\"recognizedPhrases\": [{\"nBest\": [{\"display\": \"many\", \"words\": [");
+        for (int i = 0; i < 100; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"word\": \"w").append(i).append("\", \"offsetInTicks\": ").append(i)
+                    .append(", \"durationInTicks\": 1}");
+        }
+        json.append("]}]}]}");
+
+        Transcript phrases = new TranscribeResultParser(true).parse(
+                new StringReader(json.toString())).phrases;
+        assertEquals(100, phrases.getWordCount(0));
+        assertEquals("w99", phrases.getWord(0, 99));
+        assertEquals(99, phrases.getWordOffsetTicks(0, 99));
+    }
+
+    @Test
+    public void write_isParsedBack() throws IOException {
+        TranscribeResultParser parser = new TranscribeResultParser(true);
+        TranscribeResult result = parser.parse(new StringReader(RESULT));
+        StringWriter writer = new StringWriter();
+        TranscribeResultParser.write(result, writer);
+
+        TranscribeResult parsed = parser.parse(new StringReader(writer.toString()));
+        assertEquals(result.source, parsed.source);
+        assertEquals(result.timestamp, parsed.timestamp);
+        assertEquals(result.phrases.size(), parsed.phrases.size());
+        for (int i = 0; i < result.phrases.size(); i++) {
+            assertEquals(result.phrases.getSpeaker(i), parsed.phrases.getSpeaker(i));
+            assertEquals(result.phrases.getOffsetTicks(i), parsed.phrases.getOffsetTicks(i));
+            assertEquals(result.phrases.getDurationTicks(i),
+                    parsed.phrases.getDurationTicks(i));
+            assertEquals(result.phrases.getText(i), parsed.phrases.getText(i));
+            assertEquals(result.phrases.getWordCount(i), parsed.phrases.getWordCount(i));
+            for (int w = 0; w < result.phrases.getWordCount(i); w++) {
+                assertEquals(result.phrases.getWord(i, w), parsed.phrases.getWord(i, w));
+                assertEquals(result.phrases.getWordOffsetTicks(i, w),
+                        parsed.phrases.getWordOffsetTicks(i, w));
+            }
+        }
+    }
+}
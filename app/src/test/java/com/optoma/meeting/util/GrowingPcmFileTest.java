@@ -0,0 +1,105 @@
+package com.optoma.meeting.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class GrowingPcmFileTest {
+
+    private static final int SAMPLE_RATE = 8000;
+    // 100 ms of PCM
+    private static final int CHUNK_SIZE = 1600;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void openChannel_readsWhileWritten() throws Exception {
+        File file = mFolder.newFile("decoded.pcm");
+        try (GrowingPcmFile pcmFile = new GrowingPcmFile(file, SAMPLE_RATE)) {
+            Thread decoder = new Thread(() -> {
+                try (FileOutputStream outputStream = new FileOutputStream(file)) {
+                    for (int i = 0; i < 5; i++) {
+                        outputStream.write(new byte[CHUNK_SIZE]);
+                        outputStream.flush();
+                        Thread.sleep(20);
+                    }
+                    pcmFile.finish(true);
+                } catch (IOException | InterruptedException e) {
+                    pcmFile.finish(false);
+                }
+            });
+            decoder.start();
+
+            assertEquals(5 * CHUNK_SIZE, readAll(pcmFile.openChannel()));
+            decoder.join();
+        }
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void awaitMs_isClampedToTheEnd() throws Exception {
+        File file = mFolder.newFile("decoded.pcm");
+        Files.write(file.toPath(), new byte[CHUNK_SIZE * 3]);
+        try (GrowingPcmFile pcmFile = new GrowingPcmFile(file, SAMPLE_RATE)) {
+            assertEquals(200, pcmFile.awaitMs(200));
+            pcmFile.finish(true);
+            assertEquals(300, pcmFile.awaitMs(500));
+            assertEquals(300, pcmFile.awaitMs(Long.MAX_VALUE));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void openChannel_failsWithTheDecoder() throws Exception {
+        File file = mFolder.newFile("decoded.pcm");
+        Files.write(file.toPath(), new byte[CHUNK_SIZE]);
+        try (GrowingPcmFile pcmFile = new GrowingPcmFile(file, SAMPLE_RATE)) {
+            pcmFile.finish(false);
+            readAll(pcmFile.openChannel());
+        }
+    }
+
+    @Test
+    public void writeSegment_isAWav() throws Exception {
+        File file = mFolder.newFile("decoded.pcm");
+        byte[] pcm = new byte[CHUNK_SIZE * 3];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (byte) i;
+        }
+        Files.write(file.toPath(), pcm);
+        File segment = new File(mFolder.getRoot(), "segment.wav");
+        try (GrowingPcmFile pcmFile = new GrowingPcmFile(file, SAMPLE_RATE)) {
+            pcmFile.finish(true);
+            pcmFile.writeSegment(segment, 100, pcmFile.awaitMs(250));
+        }
+
+        try (WavSlicer slicer = WavSlicer.open(segment)) {
+            assertNotNull(slicer);
+            assertEquals(SAMPLE_RATE, slicer.getSampleRate());
+            assertEquals(150, slicer.getDurationMs());
+        }
+        byte[] written = Files.readAllBytes(segment.toPath());
+        assertEquals(44 + CHUNK_SIZE * 3 / 2, written.length);
+        assertEquals(pcm[CHUNK_SIZE], written[44]);
+    }
+
+    private static long readAll(ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1000);
+        long total = 0;
+        int read;
+        while ((read = channel.read(buffer)) >= 0) {
+            total += read;
+            buffer.clear();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,193 @@
+package com.optoma.meeting.util;
+
+import com.optoma.meeting.engine.ScriptedTranscriptionEngine;
+import com.optoma.meeting.model.OffsetRemapTable;
+import com.optoma.meeting.model.SegmentReady;
+import com.optoma.meeting.model.SegmentTranscription;
+import com.optoma.meeting.model.TranscribeResult;
+import com.optoma.meeting.model.Transcript;
+import com.optoma.meeting.model.TranscriptionJob;
+import com.optoma.meeting.model.TranscriptionMode;
+import com.optoma.meeting.network.TranscribeResultParser;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.reactivex.schedulers.Schedulers;
+
+import static org.junit.Assert.*;
+
+public class JobJournalTest {
+
+    private static final String JOB_ID = "job1";
+    private static final long SEGMENT_DURATION_MS = 60_000;
+    private static final long PHRASE_INTERVAL_MS = 5_000;
+    private static final List<ScriptedTranscriptionEngine.Line> SCRIPT = Arrays.asList(
+            new ScriptedTranscriptionEngine.Line(0, "good morning everyone"),
+            new ScriptedTranscriptionEngine.Line(1, "let us start"));
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void recover_ignoresCutRecord() throws Exception {
+        File rootDir = mFolder.newFolder();
+        JobJournal journal = createJournal(rootDir, 2);
+        journal.appendTotal(2);
+        journal.close();
+        appendRaw(rootDir, "FETCHED\t1");
+
+        JobJournal recovered = recoverOne(rootDir);
+        assertEquals(TranscriptionMode.OFFLINE, recovered.getMode());
+        assertEquals("en-US", recovered.getLanguage());
+        assertEquals(2, recovered.getSegments().size());
+        assertEquals(2, recovered.getTotalSegmentCount());
+        assertEquals(Collections.emptyList(), recovered.getFetchedPartNumbers());
+    }
+
+    @Test
+    public void recover_appendsAfterCutRecord() throws Exception {
+        File rootDir = mFolder.newFolder();
+        createJournal(rootDir, 1).close();
+        appendRaw(rootDir, "TOTAL\t");
+
+        JobJournal recovered = recoverOne(rootDir);
+        recovered.appendTotal(1);
+        recovered.appendResumed();
+        recovered.close();
+
+        // The records after the restart are not glued to the cut one.
+        JobJournal replayed = recoverOne(rootDir);
+        assertEquals(1, replayed.getTotalSegmentCount());
+        assertEquals(1, replayed.getResumeCount());
+    }
+
+    @Test
+    public void recover_withoutMode_isBatch() throws Exception {
+        File rootDir = mFolder.newFolder();
+        File dir = new File(rootDir, JOB_ID);
+        assertTrue(dir.mkdirs());
+        Files.write(new File(dir, "journal").toPath(),
+                "JOB\tzh-tw\nTOTAL\t3\n".getBytes(StandardCharsets.UTF_8));
+
+        JobJournal recovered = recoverOne(rootDir);
+        assertEquals(TranscriptionMode.BATCH, recovered.getMode());
+        assertEquals(3, recovered.getTotalSegmentCount());
+    }
+
+    @Test
+    public void recover_withoutJob_isDeleted() throws Exception {
+        File rootDir = mFolder.newFolder();
+        createJournal(rootDir, 0).close();
+        File journalFile = new File(new File(rootDir, JOB_ID), "journal");
+        // The crash cut the first record.
+        Files.write(journalFile.toPath(), "JOB\ten".getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(JobJournal.recover(rootDir).isEmpty());
+        assertFalse(new File(rootDir, JOB_ID).exists());
+    }
+
+    @Test
+    public void delete_deletesTheWorkDirOfTheJobOnly() throws Exception {
+        File rootDir = mFolder.newFolder();
+        JobJournal journal = createJournal(rootDir, 1);
+        File segment = new File(journal.getWorkDir(), "part0.wav");
+        assertTrue(segment.getParentFile().mkdirs());
+        assertTrue(segment.createNewFile());
+        JobJournal otherJournal = JobJournal.create(rootDir, "job2", "en-US",
+                TranscriptionMode.OFFLINE);
+        File otherSegment = new File(otherJournal.getWorkDir(), "part0.wav");
+        assertTrue(otherSegment.getParentFile().mkdirs());
+        assertTrue(otherSegment.createNewFile());
+
+        journal.delete();
+        assertFalse(new File(rootDir, JOB_ID).exists());
+        assertTrue(otherSegment.exists());
+        otherJournal.close();
+    }
+
+    @Test
+    public void resume_transcribesOnlyPendingSegments() throws Exception {
+        File rootDir = mFolder.newFolder();
+        JobJournal journal = createJournal(rootDir, 3);
+        journal.appendTotal(3);
+        SegmentReady first = createSegment(0);
+        journal.appendFetched(0, toResult(ScriptedTranscriptionEngine.generate(SCRIPT,
+                PHRASE_INTERVAL_MS, first)));
+        journal.close();
+        // The crash cut the record of part 1.
+        appendRaw(rootDir, "FETCHED\t");
+
+        JobJournal recovered = recoverOne(rootDir);
+        TranscriptionJob job = TranscriptionJob.resume(recovered, null);
+        assertEquals(TranscriptionMode.OFFLINE, job.mode);
+        assertEquals(3, job.getSegmentCount());
+        assertEquals(3, job.getTotalSegmentCount());
+        assertEquals(Collections.singletonList(0), recovered.getFetchedPartNumbers());
+
+        Transcript replayed = new TranscribeResultParser(true).parse(
+                new StringReader(recovered.readResult(0))).phrases;
+        assertEquals(12, replayed.size());
+        assertEquals("good morning everyone", replayed.getText(0));
+
+        ScriptedTranscriptionEngine engine = new ScriptedTranscriptionEngine(SCRIPT, 0, 0,
+                PHRASE_INTERVAL_MS, Schedulers.trampoline());
+        for (int partNumber = 1; partNumber < 3; partNumber++) {
+            SegmentTranscription segment = job.getSegment(partNumber);
+            Transcript phrases = new Transcript(true);
+            for (Transcript chunk : engine.transcribe(job, segment).blockingIterable()) {
+                phrases.append(chunk);
+            }
+            // Each segment has 12 phrases, so the script starts over at each segment.
+            assertEquals(12, phrases.size());
+            assertEquals(0, phrases.getOffsetTicks(0));
+            assertEquals(SCRIPT.get(0).text, phrases.getText(0));
+        }
+    }
+
+    private static JobJournal createJournal(File rootDir, int segmentCount) {
+        JobJournal journal = JobJournal.create(rootDir, JOB_ID, "en-US",
+                TranscriptionMode.OFFLINE);
+        for (int i = 0; i < segmentCount; i++) {
+            journal.appendSegment(createSegment(i));
+        }
+        return journal;
+    }
+
+    private static SegmentReady createSegment(int partNumber) {
+        return new SegmentReady(partNumber, "/tmp/part" + partNumber + ".wav",
+                partNumber * SEGMENT_DURATION_MS, SEGMENT_DURATION_MS,
+                OffsetRemapTable.identity(3 * SEGMENT_DURATION_MS), 1.0f);
+    }
+
+    private static String toResult(Transcript phrases) throws IOException {
+        StringWriter writer = new StringWriter();
+        TranscribeResultParser.write(new TranscribeResult(phrases), writer);
+        return writer.toString();
+    }
+
+    private static void appendRaw(File rootDir, String text) throws IOException {
+        File journalFile = new File(new File(rootDir, JOB_ID), "journal");
+        try (FileOutputStream outputStream = new FileOutputStream(journalFile, true)) {
+            outputStream.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static JobJournal recoverOne(File rootDir) {
+        List<JobJournal> journals = JobJournal.recover(rootDir);
+        assertEquals(1, journals.size());
+        return journals.get(0);
+    }
+}
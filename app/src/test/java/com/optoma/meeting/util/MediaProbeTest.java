@@ -0,0 +1,99 @@
+package com.optoma.meeting.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class MediaProbeTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void probeDurationMs_wav() throws Exception {
+        ByteBuffer file = ByteBuffer.allocate(44 + 16000);
+        file.put(WavSlicer.createHeader(8000, 16000));
+        assertEquals(1000, probe("a.wav", file));
+    }
+
+    @Test
+    public void probeDurationMs_streamedWav_usesTheFileSize() throws Exception {
+        ByteBuffer file = ByteBuffer.allocate(44 + 32000);
+        file.put(WavSlicer.createHeader(16000, 0));
+        assertEquals(1000, probe("a.wav", file));
+    }
+
+    @Test
+    public void probeDurationMs_mp4() throws Exception {
+        ByteBuffer file = ByteBuffer.allocate(16 + 8 + 108);
+        file.putInt(16).put(ascii("ftyp")).put(ascii("M4A ")).putInt(0);
+        file.putInt(8 + 108).put(ascii("moov"));
+        file.putInt(108).put(ascii("mvhd"));
+        // version 0, flags, creation and modification times, timescale and duration
+        file.putInt(0).putInt(0).putInt(0).putInt(1000).putInt(4500);
+        assertEquals(4500, probe("a.m4a", file));
+    }
+
+    @Test
+    public void probeDurationMs_opus() throws Exception {
+        ByteBuffer file = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+        // The first page has one segment with the identification header.
+        file.put(ascii("OggS"));
+        file.position(26);
+        file.put((byte) 1).put((byte) 19);
+        file.put(ascii("OpusHead")).put((byte) 1).put((byte) 1).putShort((short) 312);
+        // The last page holds the total number of samples in 48 kHz.
+        file.position(4096 - 27);
+        file.put(ascii("OggS")).put((byte) 0).put((byte) 4).putLong(48000 * 3 + 312);
+        assertEquals(3000, probe("a.ogg", file));
+    }
+
+    @Test
+    public void probeDurationMs_cbrMp3() throws Exception {
+        // MPEG-1 Layer III, 128 kbps, 44.1 kHz, stereo
+        ByteBuffer file = ByteBuffer.allocate(16000);
+        file.putInt(0xFFFB9000);
+        assertEquals(1000, probe("a.mp3", file));
+    }
+
+    @Test
+    public void probeDurationMs_xingMp3_afterId3() throws Exception {
+        ByteBuffer file = ByteBuffer.allocate(10 + 100 + 1000);
+        // An ID3v2 tag of 100 bytes.
+        file.put(ascii("ID3")).put((byte) 4).put((byte) 0).put((byte) 0).putInt(100);
+        file.position(110);
+        // MPEG-1 Layer III, 128 kbps, 44.1 kHz, mono, with a Xing header of 100 frames.
+        file.putInt(0xFFFB90C0);
+        file.position(110 + 4 + 17);
+        file.put(ascii("Xing")).putInt(1).putInt(100);
+        assertEquals(100 * 1152 * 1000 / 44100, probe("a.mp3", file));
+    }
+
+    @Test
+    public void probeDurationMs_unknownFormat() throws Exception {
+        ByteBuffer file = ByteBuffer.allocate(1000);
+        file.put(ascii("not an audio file"));
+        assertEquals(MediaProbe.UNKNOWN_DURATION, probe("a.txt", file));
+        assertEquals(MediaProbe.UNKNOWN_DURATION,
+                MediaProbe.probeDurationMs(new File(mFolder.getRoot(), "missing.wav")));
+    }
+
+    private long probe(String name, ByteBuffer content) throws IOException {
+        File file = mFolder.newFile(name);
+        Files.write(file.toPath(), content.array());
+        return MediaProbe.probeDurationMs(file);
+    }
+
+    private static byte[] ascii(String tag) {
+        return tag.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,103 @@
+package com.optoma.meeting.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class MeetingDocumentWriterTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void commit_writesTheDocument() throws IOException {
+        File file = new File(mFolder.getRoot(), "minutes.txt");
+        try (MeetingDocumentWriter writer = MeetingDocumentWriter.open(file)) {
+            writer.append("00:00:01.000 {speaker 1:大家早安}\n").append("bye\n");
+            // Nothing is visible before the commit.
+            assertFalse(file.exists());
+            writer.commit();
+        }
+        assertEquals("00:00:01.000 {speaker 1:大家早安}\nbye\n", read(file));
+        assertEquals(1, mFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void append_surrogatePairSplitAcrossAppends() throws IOException {
+        // U+1F600, a character outside the BMP.
+        String emoji = "😀";
+        File file = new File(mFolder.getRoot(), "minutes.txt");
+        try (MeetingDocumentWriter writer = MeetingDocumentWriter.open(file)) {
+            writer.append("a" + emoji.charAt(0));
+            writer.append(emoji.charAt(1) + "b");
+            writer.commit();
+        }
+        assertEquals("a" + emoji + "b", read(file));
+    }
+
+    @Test
+    public void commit_highSurrogateAtTheEnd_isReplaced() throws IOException {
+        File file = new File(mFolder.getRoot(), "minutes.txt");
+        try (MeetingDocumentWriter writer = MeetingDocumentWriter.open(file)) {
+            writer.append("a\uD83D");
+            writer.commit();
+        }
+        assertEquals("a?", read(file));
+    }
+
+    @Test
+    public void append_moreThanTheBuffer() throws IOException {
+        StringBuilder expected = new StringBuilder();
+        File file = new File(mFolder.getRoot(), "minutes.txt");
+        try (MeetingDocumentWriter writer = MeetingDocumentWriter.open(file)) {
+            for (int i = 0; i < 5000; i++) {
+                String line = i + " 會議記錄 😀\n";
+                expected.append(line);
+                writer.append(line);
+            }
+            writer.commit();
+        }
+        assertEquals(expected.toString(), read(file));
+    }
+
+    @Test
+    public void close_withoutCommit_dropsTheDocument() throws IOException {
+        File file = new File(mFolder.getRoot(), "minutes.txt");
+        try (MeetingDocumentWriter writer = MeetingDocumentWriter.open(file)) {
+            writer.append("unfinished");
+        }
+        assertFalse(file.exists());
+        assertEquals(0, mFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void open_overwritesAnUnfinishedDocument() throws IOException {
+        File file = new File(mFolder.getRoot(), "minutes.txt");
+        Files.write(new File(file.getPath() + ".tmp").toPath(),
+                "left by a crash".getBytes(StandardCharsets.UTF_8));
+        try (MeetingDocumentWriter writer = MeetingDocumentWriter.open(file)) {
+            writer.append("new").commit();
+        }
+        assertEquals("new", read(file));
+    }
+
+    @Test(expected = IOException.class)
+    public void append_afterCommit_throws() throws IOException {
+        File file = new File(mFolder.getRoot(), "minutes.txt");
+        try (MeetingDocumentWriter writer = MeetingDocumentWriter.open(file)) {
+            writer.commit();
+            writer.append("late");
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,128 @@
+package com.optoma.meeting.util;
+
+import com.optoma.meeting.model.Transcript;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OverlapMergerTest {
+
+    // 1 tick = 100 ns
+    private static final long TICKS_PER_MS = 10_000L;
+
+    @Test
+    public void merge_dropsTheDuplicatedPhrases() {
+        // The earlier segment is 0-12 s, the later one starts at 10 s. Both heard "b" at 10.2 s
+        // and "c" at 11.2 s.
+        Transcript earlier = new Transcript(true);
+        addPhrase(earlier, 0, 9_000, 9_800, "a");
+        addPhrase(earlier, 0, 10_200, 10_800, "b");
+        addPhrase(earlier, 0, 11_200, 11_900, "c");
+        Transcript later = new Transcript(true);
+        addPhrase(later, 10_000, 10_200, 10_800, "b");
+        addPhrase(later, 10_000, 11_200, 11_900, "c");
+        addPhrase(later, 10_000, 12_500, 13_000, "d");
+
+        OverlapMerger.merge(earlier, 0, 12_000, later, 10_000, " ");
+
+        assertEquals("a b", join(earlier));
+        assertEquals("c d", join(later));
+    }
+
+    @Test
+    public void merge_nothingKept_keepsTheLaterPhrasesOfTheFirstHalf() {
+        // The earlier segment has no phrase from its start, so the later one keeps all of its
+        // phrases, also the ones before the middle of the overlap at 11 s.
+        Transcript earlier = new Transcript(true);
+        addPhrase(earlier, 0, 11_500, 11_900, "x");
+        Transcript later = new Transcript(true);
+        addPhrase(later, 10_000, 10_200, 10_800, "b");
+        addPhrase(later, 10_000, 11_500, 11_900, "x");
+
+        OverlapMerger.merge(earlier, 0, 12_000, later, 10_000, " ");
+
+        assertEquals(0, earlier.size());
+        assertEquals("b x", join(later));
+    }
+
+    @Test
+    public void merge_emptyEarlier_keepsTheLaterOne() {
+        Transcript earlier = new Transcript(true);
+        Transcript later = new Transcript(true);
+        addPhrase(later, 10_000, 10_100, 10_400, "b");
+
+        OverlapMerger.merge(earlier, 0, 12_000, later, 10_000, " ");
+
+        assertEquals("b", join(later));
+    }
+
+    @Test
+    public void merge_cutPhrase_isTakenFromTheLaterSegment() {
+        // "long" starts in the overlap and is cut by the end of the earlier segment.
+        Transcript earlier = new Transcript(true);
+        addPhrase(earlier, 0, 9_000, 9_800, "a");
+        addPhrase(earlier, 0, 10_500, 12_000, "long");
+        Transcript later = new Transcript(true);
+        addPhrase(later, 10_000, 10_500, 13_500, "long phrase");
+
+        OverlapMerger.merge(earlier, 0, 12_000, later, 10_000, " ");
+
+        assertEquals("a", join(earlier));
+        assertEquals("long phrase", join(later));
+    }
+
+    @Test
+    public void merge_trimsTheWordsAlreadySaid() {
+        Transcript earlier = new Transcript(true);
+        addPhrase(earlier, 0, 10_000, 11_600, "one two");
+        Transcript later = new Transcript(true);
+        // The later segment hears "two three" as one phrase from 11.1 s, after the middle.
+        later.addPhrase(Transcript.UNKNOWN_SPEAKER, 1_100 * TICKS_PER_MS, 1_400 * TICKS_PER_MS,
+                "two three");
+        later.addWord("two", 1_100 * TICKS_PER_MS, 400 * TICKS_PER_MS);
+        later.addWord("three", 1_700 * TICKS_PER_MS, 800 * TICKS_PER_MS);
+
+        OverlapMerger.merge(earlier, 0, 12_000, later, 10_000, " ");
+
+        assertEquals("one two", join(earlier));
+        assertEquals("three", join(later));
+    }
+
+    @Test
+    public void merge_noOverlap_changesNothing() {
+        Transcript earlier = new Transcript(true);
+        addPhrase(earlier, 0, 9_000, 9_800, "a");
+        Transcript later = new Transcript(true);
+        addPhrase(later, 10_000, 10_000, 10_500, "b");
+
+        OverlapMerger.merge(earlier, 0, 10_000, later, 10_000, " ");
+
+        assertEquals("a", join(earlier));
+        assertEquals("b", join(later));
+    }
+
+    @Test
+    public void wordSeparatorOf_noSpaceForCjk() {
+        assertEquals("", OverlapMerger.wordSeparatorOf("zh-TW"));
+        assertEquals(" ", OverlapMerger.wordSeparatorOf("en-US"));
+        assertEquals(" ", OverlapMerger.wordSeparatorOf(null));
+    }
+
+    /**
+     * Add a phrase without words at the time of the input, relative to its segment.
+     */
+    private static void addPhrase(Transcript phrases, long segmentStartMs, long startMs,
+            long endMs, String text) {
+        phrases.addPhrase(Transcript.UNKNOWN_SPEAKER, (startMs - segmentStartMs) * TICKS_PER_MS,
+                (endMs - startMs) * TICKS_PER_MS, text);
+    }
+
+    private static String join(Transcript phrases) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < phrases.size(); i++) {
+            sb.append(i > 0 ? " " : "").append(phrases.getText(i));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,98 @@
+package com.optoma.meeting.util;
+
+import com.optoma.meeting.model.SegmentPlan;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SilenceDetectorTest {
+
+    private static final int SAMPLE_RATE = 8000;
+    private static final short LOUD = 8000;
+
+    @Test
+    public void plan_cutsInTheMiddleOfTheSilence() throws Exception {
+        // 25 s of speech with silences at 9-10 s and 21-21.4 s.
+        ReadableByteChannel pcm = createPcm(25_000, 9_000, 10_000, 21_000, 21_400);
+        SegmentPlan plan = new SilenceDetector(SAMPLE_RATE, 10_000, 2_000, -40).plan(pcm);
+
+        assertEquals(3, plan.getSegmentCount());
+        assertEquals(9_500, plan.getStartMs(1));
+        assertEquals(21_200, plan.getStartMs(2));
+        assertEquals(25_000, plan.getTotalDurationMs());
+    }
+
+    @Test
+    public void plan_withoutSilence_cutsInTheQuietestFrame() throws Exception {
+        short[] samples = new short[SAMPLE_RATE * 15];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) ((i % 2 == 0 ? 1 : -1) * LOUD);
+        }
+        // A quieter but not silent frame at 10.6 s, inside the window of 10 +/- 1 s.
+        for (int i = 10_600 * 8; i < 10_620 * 8; i++) {
+            samples[i] = (short) (samples[i] / 4);
+        }
+        SegmentPlan plan = new SilenceDetector(SAMPLE_RATE, 10_000, 1_000, -40)
+                .plan(toChannel(samples));
+
+        assertEquals(2, plan.getSegmentCount());
+        assertEquals(10_610, plan.getStartMs(1));
+    }
+
+    @Test
+    public void plan_notifiesTheCutsInOrder() throws Exception {
+        ReadableByteChannel pcm = createPcm(25_000, 9_000, 10_000, 21_000, 21_400);
+        List<Long> cuts = new ArrayList<>();
+        SegmentPlan plan = new SilenceDetector(SAMPLE_RATE, 10_000, 2_000, -40)
+                .plan(pcm, (partNumber, startMs) -> {
+                    assertEquals(cuts.size() + 1, partNumber);
+                    cuts.add(startMs);
+                });
+
+        assertEquals(2, cuts.size());
+        assertEquals(plan.getStartMs(1), (long) cuts.get(0));
+        assertEquals(plan.getStartMs(2), (long) cuts.get(1));
+    }
+
+    @Test
+    public void plan_shortInput_isOneSegment() throws Exception {
+        SegmentPlan plan = new SilenceDetector(SAMPLE_RATE, 10_000, 2_000, -40)
+                .plan(createPcm(4_010));
+        assertEquals(1, plan.getSegmentCount());
+        assertEquals(4_010, plan.getTotalDurationMs());
+    }
+
+    /**
+     * @param silences The pairs of the start and end of the silences, in ms.
+     */
+    static ReadableByteChannel createPcm(long durationMs, long... silences) {
+        short[] samples = new short[(int) (durationMs * SAMPLE_RATE / 1000)];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) ((i % 2 == 0 ? 1 : -1) * LOUD);
+        }
+        for (int s = 0; s < silences.length; s += 2) {
+            for (int i = (int) (silences[s] * 8); i < silences[s + 1] * 8; i++) {
+                samples[i] = 0;
+            }
+        }
+        return toChannel(samples);
+    }
+
+    static ReadableByteChannel toChannel(short[] samples) {
+        ByteBuffer buffer = ByteBuffer.allocate(samples.length * 2)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (short sample : samples) {
+            buffer.putShort(sample);
+        }
+        return Channels.newChannel(new ByteArrayInputStream(buffer.array()));
+    }
+}
@@ -0,0 +1,71 @@
+package com.optoma.meeting.util;
+
+import com.optoma.meeting.model.OffsetRemapTable;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class SilenceTrimmerTest {
+
+    private static final int SAMPLE_RATE = 8000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void trim_removesTheLongSilenceButThePadding() throws Exception {
+        // 3 s of speech, 5 s of silence and 2 s of speech.
+        File output = mFolder.newFile("trimmed.wav");
+        OffsetRemapTable table;
+        try (RandomAccessFile file = new RandomAccessFile(output, "rw")) {
+            table = new SilenceTrimmer(SAMPLE_RATE, 2_000, 500, -40).trim(
+                    SilenceDetectorTest.createPcm(10_000, 3_000, 8_000), file.getChannel());
+        }
+
+        // 4 s of the silence are removed, 0.5 s is kept at both ends.
+        assertEquals(2, table.getSpanCount());
+        assertEquals(6_000, table.getTrimmedDurationMs());
+        assertEquals(10_000, table.getOriginalDurationMs());
+        assertEquals(3_500, table.getTrimmedStartMs(1));
+        assertEquals(7_500, table.getOriginalStartMs(1));
+        assertEquals(8_000, table.toOriginalMs(4_000));
+        try (WavSlicer slicer = WavSlicer.open(output)) {
+            assertNotNull(slicer);
+            assertEquals(6_000, slicer.getDurationMs());
+        }
+    }
+
+    @Test
+    public void trim_keepsTheShortSilence() throws Exception {
+        File output = mFolder.newFile("trimmed.wav");
+        OffsetRemapTable table;
+        try (RandomAccessFile file = new RandomAccessFile(output, "rw")) {
+            table = new SilenceTrimmer(SAMPLE_RATE, 2_000, 500, -40).trim(
+                    SilenceDetectorTest.createPcm(10_000, 3_000, 4_500), file.getChannel());
+        }
+
+        assertEquals(1, table.getSpanCount());
+        assertEquals(10_000, table.getTrimmedDurationMs());
+        assertEquals(44 + 10_000 * 16, output.length());
+    }
+
+    @Test
+    public void trim_removesTheLongSilenceAtTheEnd() throws Exception {
+        File output = mFolder.newFile("trimmed.wav");
+        OffsetRemapTable table;
+        try (RandomAccessFile file = new RandomAccessFile(output, "rw")) {
+            table = new SilenceTrimmer(SAMPLE_RATE, 2_000, 500, -40).trim(
+                    SilenceDetectorTest.createPcm(10_000, 6_000, 10_000), file.getChannel());
+        }
+
+        // Only the leading padding of the trailing silence is kept.
+        assertEquals(6_500, table.getTrimmedDurationMs());
+        assertEquals(3_500, table.getRemovedMs());
+    }
+}
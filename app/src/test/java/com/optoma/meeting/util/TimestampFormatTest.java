@@ -0,0 +1,89 @@
+package com.optoma.meeting.util;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.Assert.*;
+
+public class TimestampFormatTest {
+
+    @Test
+    public void appendOffset_formatsHoursMinutesSecondsMillis() {
+        assertEquals("00:00:00.000", format(0));
+        assertEquals("00:00:01.005", format(1_005));
+        assertEquals("01:02:03.040", format(3_723_040));
+        // The hours are not wrapped at 24.
+        assertEquals("25:00:00.999", format(25 * 3_600_000L + 999));
+        assertEquals("123:59:59.000", format(123 * 3_600_000L + 3_599_000));
+    }
+
+    @Test
+    public void appendOffset_appendsToTheBuilder() {
+        StringBuilder sb = new StringBuilder("at ");
+        assertSame(sb, TimestampFormat.appendOffset(sb, 61_000));
+        assertEquals("at 00:01:01.000", sb.toString());
+    }
+
+    @Test
+    public void parseIso8601_utc() {
+        assertParsed("2023-11-02T08:15:30Z");
+        assertParsed("1970-01-01T00:00:00Z");
+        assertParsed("1969-12-31T23:59:59Z");
+        assertParsed("2000-02-29T12:00:00Z");
+        assertParsed("2024-02-29T23:59:59Z");
+        assertParsed("2100-03-01T00:00:00Z");
+    }
+
+    @Test
+    public void parseIso8601_withoutZone_isUtc() {
+        assertEquals(Instant.parse("2023-11-02T08:15:30Z").toEpochMilli(),
+                TimestampFormat.parseIso8601("2023-11-02T08:15:30", -1));
+        assertEquals(Instant.parse("2023-11-02T08:15:30Z").toEpochMilli(),
+                TimestampFormat.parseIso8601("2023-11-02 08:15:30", -1));
+    }
+
+    @Test
+    public void parseIso8601_truncatesTheFraction() {
+        assertEquals(Instant.parse("2023-11-02T08:15:30.123Z").toEpochMilli(),
+                TimestampFormat.parseIso8601("2023-11-02T08:15:30.1234567Z", -1));
+        assertEquals(Instant.parse("2023-11-02T08:15:30.500Z").toEpochMilli(),
+                TimestampFormat.parseIso8601("2023-11-02T08:15:30.5Z", -1));
+    }
+
+    @Test
+    public void parseIso8601_withZoneOffset() {
+        assertEquals(OffsetDateTime.of(2023, 11, 2, 16, 15, 30, 0, ZoneOffset.ofHours(8))
+                        .toInstant().toEpochMilli(),
+                TimestampFormat.parseIso8601("2023-11-02T16:15:30+08:00", -1));
+        assertEquals(OffsetDateTime.of(2023, 11, 1, 22, 45, 30, 0,
+                        ZoneOffset.ofHoursMinutes(-9, -30)).toInstant().toEpochMilli(),
+                TimestampFormat.parseIso8601("2023-11-01T22:45:30-09:30", -1));
+    }
+
+    @Test
+    public void parseIso8601_malformed_returnsDefault() {
+        assertEquals(-1, TimestampFormat.parseIso8601(null, -1));
+        assertEquals(-1, TimestampFormat.parseIso8601("", -1));
+        assertEquals(-1, TimestampFormat.parseIso8601("2023-11-02", -1));
+        assertEquals(-1, TimestampFormat.parseIso8601("2023/11/02T08:15:30Z", -1));
+        assertEquals(-1, TimestampFormat.parseIso8601("2023-13-02T08:15:30Z", -1));
+        assertEquals(-1, TimestampFormat.parseIso8601("2023-11-02T24:15:30Z", -1));
+        assertEquals(-1, TimestampFormat.parseIso8601("2023-11-02T08:1x:30Z", -1));
+        assertEquals(-1, TimestampFormat.parseIso8601("2023-11-02T08:15:30.Z", -1));
+        assertEquals(-1, TimestampFormat.parseIso8601("2023-11-02T08:15:30ZZ", -1));
+        assertEquals(-1, TimestampFormat.parseIso8601("2023-11-02T08:15:30+0800", -1));
+        assertEquals(-1, TimestampFormat.parseIso8601("2023-11-02T08:15:30+08:x0", -1));
+    }
+
+    private static String format(long offsetMs) {
+        return TimestampFormat.appendOffset(new StringBuilder(), offsetMs).toString();
+    }
+
+    private static void assertParsed(String text) {
+        assertEquals(text, Instant.parse(text).toEpochMilli(),
+                TimestampFormat.parseIso8601(text, Long.MIN_VALUE));
+    }
+}
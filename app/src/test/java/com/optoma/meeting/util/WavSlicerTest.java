@@ -0,0 +1,102 @@
+package com.optoma.meeting.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class WavSlicerTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void open_compatibleWav() throws Exception {
+        File file = createWav(8000, 1, 16000);
+        try (WavSlicer slicer = WavSlicer.open(file)) {
+            assertNotNull(slicer);
+            assertEquals(8000, slicer.getSampleRate());
+            assertEquals(1000, slicer.getDurationMs());
+        }
+    }
+
+    @Test
+    public void open_stereoOrNotWav_isNull() throws Exception {
+        assertNull(WavSlicer.open(createWav(8000, 2, 16000)));
+        File text = mFolder.newFile("a.txt");
+        Files.write(text.toPath(), new byte[100]);
+        assertNull(WavSlicer.open(text));
+    }
+
+    @Test
+    public void open_keepsTheSampleRate() throws Exception {
+        try (WavSlicer slicer = WavSlicer.open(createWav(16000, 1, 32000))) {
+            assertNotNull(slicer);
+            assertEquals(16000, slicer.getSampleRate());
+            assertEquals(1000, slicer.getDurationMs());
+        }
+    }
+
+    @Test
+    public void writeSegment_copiesTheRange() throws Exception {
+        File file = createWav(8000, 1, 16000);
+        File segment = new File(mFolder.getRoot(), "segment.wav");
+        try (WavSlicer slicer = WavSlicer.open(file)) {
+            slicer.writeSegment(segment, 250, 500);
+        }
+
+        byte[] written = Files.readAllBytes(segment.toPath());
+        assertEquals(44 + 8000, written.length);
+        // The sample at 250 ms is the 2000th one of the input.
+        assertEquals((byte) 2000, written[44]);
+        try (WavSlicer slicer = WavSlicer.open(segment)) {
+            assertEquals(500, slicer.getDurationMs());
+        }
+    }
+
+    @Test
+    public void writeSegment_isClampedToTheEnd() throws Exception {
+        File segment = new File(mFolder.getRoot(), "segment.wav");
+        try (WavSlicer slicer = WavSlicer.open(createWav(8000, 1, 16000))) {
+            slicer.writeSegment(segment, 800, 1000);
+        }
+        assertEquals(44 + 3200, segment.length());
+    }
+
+    @Test
+    public void openPcmChannel_skipsTheHeader() throws Exception {
+        try (WavSlicer slicer = WavSlicer.open(createWav(8000, 1, 16000))) {
+            ReadableByteChannel channel = slicer.openPcmChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(20000).order(ByteOrder.LITTLE_ENDIAN);
+            while (channel.read(buffer) >= 0) {
+                // Read until the end.
+            }
+            assertEquals(16000, buffer.position());
+            assertEquals(1, buffer.getShort(2));
+        }
+    }
+
+    /**
+     * @return A WAV whose sample i is i, truncated to 16 bits.
+     */
+    private File createWav(int sampleRate, int channels, int dataSize) throws Exception {
+        ByteBuffer header = WavSlicer.createHeader(sampleRate, dataSize)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.putShort(22, (short) channels);
+        ByteBuffer content = ByteBuffer.allocate(44 + dataSize).order(ByteOrder.LITTLE_ENDIAN);
+        content.put(header);
+        for (int i = 0; content.remaining() >= 2; i++) {
+            content.putShort((short) i);
+        }
+        File file = mFolder.newFile();
+        Files.write(file.toPath(), content.array());
+        return file;
+    }
+}